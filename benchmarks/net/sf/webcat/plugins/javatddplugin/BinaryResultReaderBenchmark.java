@@ -0,0 +1,249 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//-------------------------------------------------------------------------
+/**
+ *  Reads back the binary result stream that
+ *  {@link CompactJUnitResultFormatter} writes for a synthetic suite (one
+ *  op = one suite of <code>tests</code> test cases).  Before measuring,
+ *  the setup checks that the records survive a write/read round trip
+ *  through {@link BinaryResultSerializer} unchanged, and fails the trial
+ *  if they do not.
+ *
+ *  @version $Id$
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BinaryResultReaderBenchmark
+{
+    //~ Benchmark parameters ..................................................
+
+    /** The number of test cases per suite. */
+    @Param({"1000"})
+    public int tests;
+
+    /** The fraction of test cases that fail. */
+    @Param({"0.5"})
+    public double failureRatio;
+
+    /** The approximate size of each failure message. */
+    @Param({"200"})
+    public int messageSize;
+
+    /** The number of frames in each failure's stack trace. */
+    @Param({"30"})
+    public int stackDepth;
+
+
+    //~ Setup .................................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Write the synthetic suite as a binary result stream, and check
+     * that it survives a round trip.
+     * @throws IOException if the stream cannot be read
+     */
+    @Setup(Level.Trial)
+    public void createStream()
+        throws IOException
+    {
+        SyntheticSuite suite =
+            new SyntheticSuite(tests, failureRatio, messageSize, stackDepth);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactJUnitResultFormatter formatter =
+            new CompactJUnitResultFormatter();
+        formatter.setOutput(bytes);
+        suite.replay(formatter);
+        stream = bytes.toByteArray();
+
+        Collector original = new Collector();
+        new BinaryResultReader(new ByteArrayInputStream(stream))
+            .replay(original);
+
+        bytes = new ByteArrayOutputStream();
+        BinaryResultSerializer writer = new BinaryResultSerializer();
+        writer.setOutput(bytes);
+        original.replayInto(writer);
+        writer.flush();
+        Collector copy = new Collector();
+        new BinaryResultReader(new ByteArrayInputStream(bytes.toByteArray()))
+            .replay(copy);
+
+        if (original.items.isEmpty() || !original.items.equals(copy.items))
+        {
+            throw new IllegalStateException(
+                "Binary result stream did not survive a round trip");
+        }
+    }
+
+
+    //~ Benchmarks ............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Read the whole stream, discarding the records.
+     * @return the number of records read
+     * @throws IOException if the stream cannot be read
+     */
+    @Benchmark
+    public int replay()
+        throws IOException
+    {
+        return new BinaryResultReader(new ByteArrayInputStream(stream))
+            .replay(DISCARD);
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * A serializer that just remembers everything written to it, in order.
+     */
+    private static class Collector
+        implements ResultSerializer
+    {
+        public void setOutput(OutputStream out)
+        {
+            // Not used
+        }
+
+        public void writeResult(ResultRecord result)
+        {
+            items.add(result);
+        }
+
+        public void writeSuiteSummary(
+            String suite, double executed, double failed)
+        {
+            items.add(new Summary(suite, executed, failed));
+        }
+
+        public void flush()
+        {
+            // Nothing to do
+        }
+
+        public void replayInto(ResultSerializer sink)
+            throws IOException
+        {
+            for (Object item : items)
+            {
+                if (item instanceof ResultRecord)
+                {
+                    sink.writeResult((ResultRecord)item);
+                }
+                else
+                {
+                    Summary summary = (Summary)item;
+                    sink.writeSuiteSummary(
+                        summary.suite, summary.executed, summary.failed);
+                }
+            }
+        }
+
+        private List<Object> items = new ArrayList<Object>();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The totals recorded for one suite.
+     */
+    private static class Summary
+    {
+        public Summary(String suite, double executed, double failed)
+        {
+            this.suite    = suite;
+            this.executed = executed;
+            this.failed   = failed;
+        }
+
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Summary))
+            {
+                return false;
+            }
+            Summary s = (Summary)other;
+            return (suite == null ? s.suite == null : suite.equals(s.suite))
+                && executed == s.executed
+                && failed == s.failed;
+        }
+
+        public int hashCode()
+        {
+            return suite == null ? 0 : suite.hashCode();
+        }
+
+        public String suite;
+        public double executed;
+        public double failed;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private static final ResultSerializer DISCARD = new Collector() {
+        public void writeResult(ResultRecord result)
+        {
+            // Discard
+        }
+
+        public void writeSuiteSummary(
+            String suite, double executed, double failed)
+        {
+            // Discard
+        }
+    };
+
+    private byte[] stream;
+}
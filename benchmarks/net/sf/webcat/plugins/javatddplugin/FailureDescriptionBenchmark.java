@@ -0,0 +1,149 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//-------------------------------------------------------------------------
+/**
+ *  Measures the per-failure work done by the plist and hinting
+ *  formatters: describe(), stackTraceMessage(), and codeOf().  Each op
+ *  handles one failure, cycling through a small set of failures of
+ *  different kinds (comparison failures, assertion failures raised by
+ *  different assertion classes, and unexpected exceptions).
+ *
+ *  @version $Id$
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FailureDescriptionBenchmark
+{
+    //~ Benchmark parameters ..................................................
+
+    /** The formatter to use. */
+    @Param({"Plist", "Hinting"})
+    public String formatter;
+
+    /** The approximate size of each failure message. */
+    @Param({"200", "4000"})
+    public int messageSize;
+
+    /** The number of frames in each failure's stack trace. */
+    @Param({"30"})
+    public int stackDepth;
+
+
+    //~ Setup .................................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Build the failures and start a suite on the formatter.
+     */
+    @Setup(Level.Trial)
+    public void createFailures()
+    {
+        suite = new SyntheticSuite(FAILURES, 1.0, messageSize, stackDepth);
+        plist = (PlistJUnitResultFormatter)
+            SyntheticSuite.newFormatter(formatter);
+        plist.startTestSuite(suite.suite());
+    }
+
+
+    //~ Benchmarks ............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Generate the full descriptor (and, for hinting, the hint) for
+     * one failure.
+     * @return the descriptor
+     */
+    @Benchmark
+    public Object describe()
+    {
+        int i = nextIndex();
+        return plist.describe(suite.test(i), suite.outcome(i));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produce the filtered stack trace for one failure.
+     * @return the trace
+     */
+    @Benchmark
+    public String stackTraceMessage()
+    {
+        return plist.stackTraceMessage(suite.outcome(nextIndex()), false);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Classify one failure.
+     * @return the error code
+     */
+    @Benchmark
+    public int codeOf()
+    {
+        return plist.codeOf(suite.outcome(nextIndex()));
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private int nextIndex()
+    {
+        int result = next;
+        next = (next + 1) % FAILURES;
+        return result;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private static final int FAILURES = 8;
+
+    private SyntheticSuite suite;
+    private PlistJUnitResultFormatter plist;
+    private int next;
+}
@@ -0,0 +1,160 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitResultFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//-------------------------------------------------------------------------
+/**
+ *  Replays synthetic test suites through the real JUnit result formatter
+ *  callbacks.  The <code>suite</code> benchmark measures a complete
+ *  suite (one op = one suite of <code>tests</code> test cases), while
+ *  <code>testCallbacks</code> measures the startTest/addFailure or
+ *  addError/endTest callbacks for a single test case (one op = one test
+ *  case).  Run with <code>-prof gc</code> to see allocation per op.
+ *
+ *  @version $Id$
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatterChainBenchmark
+{
+    //~ Benchmark parameters ..................................................
+
+    /** The formatter to drive. */
+    @Param({"PerlScoring", "Plist", "Hinting", "Basic"})
+    public String formatter;
+
+    /** The number of test cases per suite. */
+    @Param({"1000"})
+    public int tests;
+
+    /** The fraction of test cases that fail. */
+    @Param({"0.5"})
+    public double failureRatio;
+
+    /** The approximate size of each failure message. */
+    @Param({"200"})
+    public int messageSize;
+
+    /** The number of frames in each failure's stack trace. */
+    @Param({"30"})
+    public int stackDepth;
+
+
+    //~ Setup .................................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Build the synthetic suite.
+     */
+    @Setup(Level.Trial)
+    public void createSuite()
+    {
+        suite = new SyntheticSuite(tests, failureRatio, messageSize, stackDepth);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Start a suite on a fresh formatter for the per-test benchmark.
+     */
+    @Setup(Level.Iteration)
+    public void startSuite()
+    {
+        callbackFormatter = SyntheticSuite.newFormatter(formatter);
+        callbackFormatter.startTestSuite(suite.suite());
+        next = 0;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Finish the suite started for the per-test benchmark.
+     */
+    @TearDown(Level.Iteration)
+    public void endSuite()
+    {
+        callbackFormatter.endTestSuite(suite.suite());
+    }
+
+
+    //~ Benchmarks ............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Replay an entire suite through a new formatter.
+     */
+    @Benchmark
+    public void suite()
+    {
+        suite.replay(SyntheticSuite.newFormatter(formatter));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Replay the callbacks for a single test case.  Once every test in
+     * the suite has been replayed, the suite is ended and a new one is
+     * started, so that the formatters' per-suite buffers stay bounded;
+     * that cost is amortized across the suite's test cases.
+     */
+    @Benchmark
+    public void testCallbacks()
+    {
+        suite.replayTest(callbackFormatter, next);
+        if (++next == suite.size())
+        {
+            endSuite();
+            startSuite();
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private SyntheticSuite suite;
+    private JUnitResultFormatter callbackFormatter;
+    private int next;
+}
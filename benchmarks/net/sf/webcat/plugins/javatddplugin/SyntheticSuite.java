@@ -0,0 +1,361 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.OutputStream;
+import java.util.Random;
+import junit.framework.AssertionFailedError;
+import junit.framework.ComparisonFailure;
+import junit.framework.Test;
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitResultFormatter;
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitTest;
+
+//-------------------------------------------------------------------------
+/**
+ *  A reproducible, synthetic test suite for driving the JUnit result
+ *  formatters in benchmarks.  Every test case has a pre-built outcome:
+ *  either a pass, or a failure/error with a message of a given size and
+ *  a stack trace of a given depth, shaped like the traces produced by
+ *  real student submissions (assertion frames, code under test, the
+ *  test method, then JUnit/reflection frames).
+ *
+ *  @version $Id$
+ */
+public class SyntheticSuite
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new suite.
+     * @param testCount    the number of test cases
+     * @param failureRatio the fraction of test cases that fail (0.0-1.0)
+     * @param messageSize  the approximate length of each failure message
+     * @param stackDepth   the number of frames in each failure's trace
+     */
+    public SyntheticSuite(
+        int testCount, double failureRatio, int messageSize, int stackDepth)
+    {
+        Random random = new Random(42);
+        tests = new Test[testCount];
+        outcomes = new Throwable[testCount];
+        for (int i = 0; i < testCount; i++)
+        {
+            tests[i] = new SyntheticTestCase("testCase" + (i % METHODS));
+            if (random.nextDouble() < failureRatio)
+            {
+                outcomes[i] = failure(i, messageSize, stackDepth);
+            }
+        }
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create one of the formatters under test, writing to a stream that
+     * discards its output.
+     * @param name the formatter's name: PerlScoring, Plist, Hinting,
+     *             or Basic
+     * @return the new formatter
+     */
+    public static JUnitResultFormatter newFormatter(String name)
+    {
+        JUnitResultFormatter result;
+        if ("PerlScoring".equals(name))
+        {
+            result = new PerlScoringJUnitResultFormatter();
+        }
+        else if ("Plist".equals(name))
+        {
+            result = new PlistJUnitResultFormatter();
+        }
+        else if ("Hinting".equals(name))
+        {
+            result = new HintingJUnitResultFormatter();
+        }
+        else if ("Basic".equals(name))
+        {
+            result = new BasicJUnitResultFormatter();
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unknown formatter: " + name);
+        }
+        result.setOutput(NULL_OUTPUT);
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the JUnit suite descriptor for this suite.
+     * @return the suite
+     */
+    public JUnitTest suite()
+    {
+        return suite;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of test cases in this suite.
+     * @return the number of test cases
+     */
+    public int size()
+    {
+        return tests.length;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get a test case.
+     * @param i the index of the test case
+     * @return the test case
+     */
+    public Test test(int i)
+    {
+        return tests[i];
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the outcome of a test case.
+     * @param i the index of the test case
+     * @return the failure or error produced, or null if it passes
+     */
+    public Throwable outcome(int i)
+    {
+        return outcomes[i];
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the index of the first failing test case.
+     * @return the index, or -1 if every test passes
+     */
+    public int firstFailure()
+    {
+        for (int i = 0; i < outcomes.length; i++)
+        {
+            if (outcomes[i] != null)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Feed a single test case through a formatter's callbacks.
+     * @param formatter the formatter to drive
+     * @param i the index of the test case
+     */
+    public void replayTest(JUnitResultFormatter formatter, int i)
+    {
+        Test test = tests[i];
+        Throwable outcome = outcomes[i];
+        formatter.startTest(test);
+        if (outcome instanceof AssertionFailedError)
+        {
+            formatter.addFailure(test, (AssertionFailedError)outcome);
+        }
+        else if (outcome != null)
+        {
+            formatter.addError(test, outcome);
+        }
+        formatter.endTest(test);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Feed the whole suite through a formatter's callbacks.
+     * @param formatter the formatter to drive
+     */
+    public void replay(JUnitResultFormatter formatter)
+    {
+        formatter.startTestSuite(suite);
+        for (int i = 0; i < tests.length; i++)
+        {
+            replayTest(formatter, i);
+        }
+        formatter.endTestSuite(suite);
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private Throwable failure(int i, int messageSize, int stackDepth)
+    {
+        Throwable result;
+        String assertClass;
+        switch (i % 4)
+        {
+            case 0:
+                result = new ComparisonFailure(
+                    null, filler("expected ", messageSize / 2),
+                    filler("actual ", messageSize / 2));
+                assertClass = "junit.framework.Assert";
+                break;
+            case 1:
+                result = new AssertionFailedError(
+                    filler("hint: condition should hold ", messageSize));
+                assertClass = "junit.framework.Assert";
+                break;
+            case 2:
+                result = new AssertionFailedError(
+                    filler("value was wrong ", messageSize));
+                assertClass = "student.TestCase";
+                break;
+            default:
+                result = new NullPointerException(
+                    filler("null reference ", messageSize));
+                assertClass = null;
+        }
+        result.setStackTrace(trace(i, assertClass, stackDepth));
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    private StackTraceElement[] trace(
+        int i, String assertClass, int stackDepth)
+    {
+        StackTraceElement[] frames = new StackTraceElement[stackDepth];
+        int pos = 0;
+        if (assertClass != null && pos < stackDepth)
+        {
+            frames[pos++] = new StackTraceElement(
+                assertClass, "fail", assertClass + ".java", 89);
+            if (pos < stackDepth)
+            {
+                frames[pos++] = new StackTraceElement(
+                    assertClass, "assertTrue", assertClass + ".java", 41);
+            }
+        }
+
+        // code under test, then the test method itself
+        int codeFrames = Math.max(0, (stackDepth - pos) / 2 - 1);
+        for (int k = 0; k < codeFrames; k++)
+        {
+            frames[pos++] = new StackTraceElement(
+                "Student" + (k % 3), "method" + k, "Student" + (k % 3)
+                + ".java", 10 + k);
+        }
+        if (pos < stackDepth)
+        {
+            frames[pos++] = new StackTraceElement(
+                SyntheticTestCase.class.getName(),
+                "testCase" + (i % METHODS), "SyntheticTestCase.java", 20);
+        }
+
+        // Test framework frames below the test method
+        while (pos < stackDepth)
+        {
+            frames[pos] = new StackTraceElement(
+                FRAMEWORK_CLASSES[pos % FRAMEWORK_CLASSES.length],
+                "run", null, -1);
+            pos++;
+        }
+        return frames;
+    }
+
+
+    // ----------------------------------------------------------
+    private static String filler(String prefix, int size)
+    {
+        StringBuffer sb = new StringBuffer(size + prefix.length());
+        sb.append(prefix);
+        while (sb.length() < size)
+        {
+            sb.append("abc \"quoted\" $x, @y; ");
+        }
+        sb.setLength(Math.max(prefix.length(), size));
+        return sb.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * A JUnit 3 test class whose name the synthetic suite uses, so that
+     * the hinting formatter can load real suite and method options.
+     */
+    public static class SyntheticTestCase
+        extends junit.framework.TestCase
+    {
+        public SyntheticTestCase(String name)
+        {
+            super(name);
+        }
+
+        public void testCase0() { /* empty */ }
+        public void testCase1() { /* empty */ }
+        public void testCase2() { /* empty */ }
+        public void testCase3() { /* empty */ }
+        public void testCase4() { /* empty */ }
+        public void testCase5() { /* empty */ }
+        public void testCase6() { /* empty */ }
+        public void testCase7() { /* empty */ }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private static final int METHODS = 8;
+
+    private static final String[] FRAMEWORK_CLASSES = {
+        "sun.reflect.NativeMethodAccessorImpl",
+        "java.lang.reflect.Method",
+        "junit.framework.TestCase",
+        "junit.framework.TestResult",
+        "org.apache.tools.ant.taskdefs.optional.junit.JUnitTestRunner"
+    };
+
+    private static final OutputStream NULL_OUTPUT = new OutputStream() {
+        public void write(int b)
+        {
+            // Discard
+        }
+        public void write(byte[] b, int off, int len)
+        {
+            // Discard
+        }
+    };
+
+    private final JUnitTest suite =
+        new JUnitTest(SyntheticTestCase.class.getName());
+    private final Test[] tests;
+    private final Throwable[] outcomes;
+}
@@ -25,7 +25,17 @@
 
 package net.sf.webcat;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import static junit.framework.Assert.*;
 
 //-------------------------------------------------------------------------
@@ -104,6 +114,14 @@ import static junit.framework.Assert.*;
  *  be explicitly caught by the caller (they will turn into test case
  *  failures as well).
  *  </p>
+ *  <p>
+ *  The result of each method or constructor lookup, including a failed
+ *  lookup, is cached.  The cache is keyed by the target class, the
+ *  method name, and the parameter profile.  Repeated calls, such as
+ *  <code>invoke()</code> inside a loop, therefore skip the search.
+ *  Classes are held weakly and their cached lookups softly, so caching
+ *  does not prevent a class loader from being unloaded.
+ *  </p>
  *
  *  @author  stedwar2
  *  @version $Id: ReflectionSupport.java,v 1.8 2010/05/27 14:24:21 stedwar2 Exp $
@@ -387,11 +405,61 @@ public class ReflectionSupport
      */
     public static Method getMatchingMethod(
         Class<?> c, String name, Class<?> ... params)
+    {
+        if (params == null) { params = new Class[0]; }
+        Resolution resolution = cachedResolution(c, name, params);
+        if (resolution == null)
+        {
+            resolution = resolveMethod(c, name, params);
+            cacheResolution(c, name, params, resolution);
+        }
+        if (resolution.failure != null)
+        {
+            fail(resolution.failure);
+        }
+        return (Method)resolution.member;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of method and constructor lookups answered from
+     * the cache.
+     * @return The number of cache hits
+     */
+    public static long getResolutionCacheHits()
+    {
+        return resolutionHits.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of method and constructor lookups that required
+     * a search.
+     * @return The number of cache misses
+     */
+    public static long getResolutionCacheMisses()
+    {
+        return resolutionMisses.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Search for the method matching a parameter profile, as described
+     * in {@link #getMatchingMethod(Class, String, Class...)}.
+     * @param c The type of the receiver
+     * @param name The method name
+     * @param params The method's parameter profile (never null)
+     * @return The outcome of the search
+     */
+    private static Resolution resolveMethod(
+        Class<?> c, String name, Class<?> ... params)
     {
         Method result = null;
         Method methodWithSameName = null;
         Method methodWithSameParamCount = null;
-        if (params == null) { params = new Class[0]; }
         for (Method m : c.getMethods())
         {
             if (m.getName().equals(name))
@@ -464,13 +532,14 @@ public class ReflectionSupport
                 message = "" + c + " is missing public method "
                     + simpleMethodName(name, params);
             }
-            fail(message);
+            return new Resolution(null, message);
         }
         else if (!Modifier.isPublic(result.getModifiers()))
         {
-            fail(simpleMethodName(result) + " should be public");
+            return new Resolution(
+                null, simpleMethodName(result) + " should be public");
         }
-        return result;
+        return new Resolution(result, null);
     }
 
 
@@ -516,51 +585,10 @@ public class ReflectionSupport
         }
         Method m = getMatchingMethod(targetClass, methodName, paramProfile);
 
-        if (returnType == null || returnType == void.class)
-        {
-            Class<?> declaredReturnType = m.getReturnType();
-            assertTrue("method " + simpleMethodName(m)
-                + " should be a void method",
-                declaredReturnType == void.class ||
-                declaredReturnType == null);
-        }
-        else
-        {
-            Class<?> declaredReturnType = m.getReturnType();
-            assertTrue("method " + simpleMethodName(m)
-                + " should be declared with a return type of "
-                + simpleClassNameUsingPrimitives(returnType),
-                declaredReturnType != void.class &&
-                declaredReturnType != null &&
-                (actualMatchesFormal(declaredReturnType, returnType)
-                    // Had to add this second part in for legacy compatibility,
-                    // where tests written with Integer.class need to
-                    // work, even though they should have been written
-                    // with int.class
-                 || canAutoBoxFromActualToFormal(
-                     returnType, declaredReturnType)));
-        }
+        checkDeclaredReturnType(m, returnType);
 
         result = invoke(receiver, m, params);
-
-        if (result != null)
-        {
-            if (returnType != null)
-            {
-                assertTrue("method " + simpleMethodName(m)
-                    + " should be a void method",
-                    returnType != void.class);
-                assertTrue("method " + simpleMethodName(m)
-                    + " did not produce result of type "
-                    + simpleClassName(returnType),
-                    actualMatchesFormal(result.getClass(), returnType));
-            }
-            else
-            {
-                fail("method " + simpleMethodName(m)
-                    + " should be a void method");
-            }
-        }
+        checkResult(m, returnType, result, true);
         // The cast below is technically unsafe, according to the compiler,
         // but will never be violated, due to the assertion above.
         return (T)result;
@@ -605,24 +633,7 @@ public class ReflectionSupport
         }
         catch (InvocationTargetException e)
         {
-            Throwable cause = e;
-            while (cause.getCause() != null)
-            {
-                cause = cause.getCause();
-            }
-
-            if (cause instanceof Error)
-            {
-                throw (Error)cause;
-            }
-            else if (cause instanceof RuntimeException)
-            {
-                throw (RuntimeException)cause;
-            }
-            else
-            {
-                throw new RuntimeException(cause);
-            }
+            throw uncheckedCause(e);
         }
         catch (IllegalAccessException e)
         {
@@ -680,51 +691,10 @@ public class ReflectionSupport
         }
         Method m = getMatchingMethod(targetClass, methodName, paramProfile);
 
-        if (returnType == null || returnType == void.class)
-        {
-            Class<?> declaredReturnType = m.getReturnType();
-            assertTrue("method " + simpleMethodName(m)
-                + " should be a void method",
-                declaredReturnType == void.class ||
-                declaredReturnType == null);
-        }
-        else
-        {
-            Class<?> declaredReturnType = m.getReturnType();
-            assertTrue("method " + simpleMethodName(m)
-                + " should be declared with a return type of "
-                + simpleClassNameUsingPrimitives(returnType),
-                declaredReturnType != void.class &&
-                declaredReturnType != null &&
-                (actualMatchesFormal(declaredReturnType, returnType)
-                    // Had to add this second part in for legacy compatibility,
-                    // where tests written with Integer.class need to
-                    // work, even though they should have been written
-                    // with int.class
-                 || canAutoBoxFromActualToFormal(
-                     returnType, declaredReturnType)));
-        }
+        checkDeclaredReturnType(m, returnType);
 
         result = invokeEx(receiver, m, params);
-
-        if (result != null)
-        {
-            if (returnType != null)
-            {
-                assertTrue("method " + simpleMethodName(m)
-                    + " should be a void method",
-                    returnType != void.class);
-                assertTrue("method " + simpleMethodName(m)
-                    + " did not produce result of type "
-                    + simpleClassName(returnType),
-                    returnType.isAssignableFrom(result.getClass()));
-            }
-            else
-            {
-                fail("method " + simpleMethodName(m)
-                    + " should be a void method");
-            }
-        }
+        checkResult(m, returnType, result, false);
         // The cast below is technically unsafe, according to the compiler,
         // but will never be violated, due to the assertion above.
         return (T)result;
@@ -775,45 +745,242 @@ public class ReflectionSupport
         }
         catch (InvocationTargetException e)
         {
-            Throwable cause = e;
-            Exception ex = null;
-            Error     error = null;
-            if (cause instanceof Exception)
+            throw exceptionCause(e);
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Look up a method once and get a reusable invoker for it, with
+     * appropriate hints if the method cannot be found or has the wrong
+     * return type.  This is intended for tests that call the same method
+     * many times, such as in a loop, where repeating the lookup and checks
+     * made by {@link #invoke(Object, Class, String, Object...)} on every
+     * call would distort timing measurements:
+     * <pre>
+     * MethodInvoker&lt;Integer&gt; size =
+     *     getMethodInvoker(MyList.class, Integer.class, "size");
+     * for (int i = 0; i &lt; 10000; i++)
+     * {
+     *     total += size.invoke(list);
+     * }
+     * </pre>
+     * @param receiverClass The type of the receiver
+     * @param returnType The expected type of the method's return value.
+     *     Use null (or <code>void.class</code>) if the method that is
+     *     looked up is a void method.
+     * @param methodName The name of the method to invoke
+     * @param params The parameter profile the method should accept
+     * @param <T> The generic parameter T is deduced from the returnType
+     * @return An invoker for the method
+     */
+    public static <T> MethodInvoker<T> getMethodInvoker(
+        Class<?> receiverClass,
+        Class<T> returnType,
+        String methodName,
+        Class<?> ... params)
+    {
+        Method m = getMatchingMethod(receiverClass, methodName, params);
+        checkDeclaredReturnType(m, returnType);
+        return new MethodInvoker<T>(m, returnType);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * A method that has already been looked up and checked, ready to be
+     * called repeatedly.  Use
+     * {@link ReflectionSupport#getMethodInvoker(Class, Class, String, Class...)}
+     * to create one.  Calls to a public method of a public class go
+     * through a {@link MethodHandle}, with no per-call access check or
+     * reflective dispatch; any other method is called through reflection.
+     * @param <T> The method's return type
+     */
+    public static class MethodInvoker<T>
+    {
+        // ----------------------------------------------------------
+        private MethodInvoker(Method method, Class<T> returnType)
+        {
+            this.method = method;
+            this.returnType = returnType;
+            this.handle = handleFor(method);
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * If the method is public and so is its class, get a method handle
+         * for it, adapted to take the receiver and an array of arguments
+         * and to return an Object.  The handle comes from the public
+         * lookup, so it makes nothing callable that invoke() could not
+         * call.  Any other method gets no handle, and is called through
+         * reflection instead, so it fails just as it does through
+         * invoke().
+         */
+        private static MethodHandle handleFor(Method method)
+        {
+            if (!Modifier.isPublic(method.getModifiers())
+                || !Modifier.isPublic(method.getDeclaringClass().getModifiers()))
             {
-                ex = (Exception)cause;
+                return null;
             }
-            else if (cause instanceof Error)
+            try
             {
-                error = (Error)cause;
+                MethodHandle handle = MethodHandles.publicLookup()
+                    .unreflect(method).asFixedArity();
+                if (Modifier.isStatic(method.getModifiers()))
+                {
+                    // Take a receiver anyway, and ignore it
+                    handle = MethodHandles.dropArguments(
+                        handle, 0, Object.class);
+                }
+                int count = method.getParameterTypes().length;
+                return handle
+                    .asType(MethodType.genericMethodType(count + 1))
+                    .asSpreader(Object[].class, count);
             }
-            while (cause.getCause() != null)
+            catch (IllegalAccessException e)
             {
-                cause = cause.getCause();
-                if (cause instanceof Exception)
+                // Not accessible after all, so calls go through reflection
+                return null;
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the method this invoker calls.
+         * @return The method
+         */
+        public Method getMethod()
+        {
+            return method;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Call the method, just like
+         * {@link ReflectionSupport#invoke(Object, Class, String, Object...)}.
+         * @param receiver The object to invoke the method on
+         * @param params The parameters to pass to the method
+         * @return The results from invoking the method
+         */
+        @SuppressWarnings("unchecked")
+        public T invoke(Object receiver, Object ... params)
+        {
+            checkArguments(receiver, params);
+            Object result;
+            if (handle == null)
+            {
+                result = ReflectionSupport.invoke(receiver, method, params);
+            }
+            else
+            {
+                Object[] arguments = (params == null) ? NO_ARGUMENTS : params;
+                try
                 {
-                    ex = (Exception)cause;
+                    result = (Object)handle.invokeExact(receiver, arguments);
                 }
-                else if (cause instanceof Error)
+                catch (Throwable e)
                 {
-                    error = (Error)cause;
+                    throw uncheckedCause(e);
                 }
             }
-            if (error != null)
+            checkResult(method, returnType, result, true);
+            return (T)result;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Call the method, just like
+         * {@link ReflectionSupport#invokeEx(Object, Class, String, Object...)}.
+         * @param receiver The object to invoke the method on
+         * @param params The parameters to pass to the method
+         * @return The results from invoking the method
+         * @throws Exception if the underlying method throws one
+         */
+        @SuppressWarnings("unchecked")
+        public T invokeEx(Object receiver, Object ... params)
+            throws Exception
+        {
+            checkArguments(receiver, params);
+            Object result;
+            if (handle == null)
             {
-                throw error;
+                result = ReflectionSupport.invokeEx(receiver, method, params);
             }
-            else if (ex != null)
+            else
             {
-                throw ex;
+                Object[] arguments = (params == null) ? NO_ARGUMENTS : params;
+                try
+                {
+                    result = (Object)handle.invokeExact(receiver, arguments);
+                }
+                catch (Throwable e)
+                {
+                    throw exceptionCause(e);
+                }
             }
-            else
+            checkResult(method, returnType, result, false);
+            return (T)result;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Check that a receiver and arguments fit the method, reporting
+         * any mismatch with the same messages as getMatchingMethod().
+         */
+        private void checkArguments(Object receiver, Object ... params)
+        {
+            if (!Modifier.isStatic(method.getModifiers())
+                && !method.getDeclaringClass().isInstance(receiver))
             {
-                // the cause is a raw Throwable of some kind, rather than
-                // an Exception, so it needs to be wrapped anyway
-                throw new RuntimeException(cause);
+                fail(simpleMethodName(method) + " cannot be called on "
+                    + ((receiver == null)
+                        ? "null"
+                        : ("an object of type "
+                           + simpleClassName(receiver.getClass()))));
+            }
+            Class<?>[] formals = method.getParameterTypes();
+            int count = (params == null) ? 0 : params.length;
+            boolean matches = (count == formals.length);
+            for (int i = 0; matches && i < count; i++)
+            {
+                matches = (params[i] == null)
+                    ? !formals[i].isPrimitive()
+                    : actualMatchesFormal(params[i].getClass(), formals[i]);
+            }
+            if (matches)
+            {
+                return;
+            }
+
+            Class<?>[] profile = new Class<?>[count];
+            for (int i = 0; i < count; i++)
+            {
+                profile[i] = (params[i] == null) ? null : params[i].getClass();
             }
+            fail(simpleMethodName(method)
+                + " cannot be called with argument"
+                + ((profile.length == 1) ? "" : "s")
+                + " of type "
+                + simpleArgumentList(profile)
+                + ((count == formals.length)
+                    ? ": incorrect parameter type(s)"
+                    : ": incorrect number of parameters"));
         }
-        return result;
+
+
+        private final Method       method;
+        private final Class<T>     returnType;
+        private final MethodHandle handle;
+
+        private static final Object[] NO_ARGUMENTS = new Object[0];
     }
 
 
@@ -833,10 +1000,35 @@ public class ReflectionSupport
      */
     public static Constructor<?> getMatchingConstructor(
         Class<?> c, Class<?> ... params)
+    {
+        if (params == null) { params = new Class[0]; }
+        Resolution resolution = cachedResolution(c, CONSTRUCTOR, params);
+        if (resolution == null)
+        {
+            resolution = resolveConstructor(c, params);
+            cacheResolution(c, CONSTRUCTOR, params, resolution);
+        }
+        if (resolution.failure != null)
+        {
+            fail(resolution.failure);
+        }
+        return (Constructor<?>)resolution.member;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Search for the constructor matching a parameter profile, as
+     * described in {@link #getMatchingConstructor(Class, Class...)}.
+     * @param c The type of object to create
+     * @param params The constructor's parameter profile (never null)
+     * @return The outcome of the search
+     */
+    private static Resolution resolveConstructor(
+        Class<?> c, Class<?> ... params)
     {
         Constructor<?> result = null;
         Constructor<?> ctorWithSameParamCount = null;
-        if (params == null) { params = new Class[0]; }
         for (Constructor<?> m : c.getConstructors())
         {
             Class<?>[] paramTypes = m.getParameterTypes();
@@ -888,14 +1080,15 @@ public class ReflectionSupport
                 message = "" + c + " is missing public constructor "
                     + simpleMethodName(simpleClassName(c), params);
             }
-            fail(message);
+            return new Resolution(null, message);
         }
         else if (!Modifier.isPublic(result.getModifiers()))
         {
-            fail("constructor " + simpleMethodName(simpleClassName(c), params)
+            return new Resolution(null, "constructor "
+                + simpleMethodName(simpleClassName(c), params)
                 + " should be public");
         }
-        return result;
+        return new Resolution(result, null);
     }
 
 
@@ -1163,4 +1356,303 @@ public class ReflectionSupport
         }
     }
 
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Find the innermost cause of an exception thrown by an invoked
+     * method, so it can be rethrown.  Errors are thrown from here.
+     * @param thrown The exception that was thrown
+     * @return The cause, wrapped in a RuntimeException if it is checked
+     */
+    private static RuntimeException uncheckedCause(Throwable thrown)
+    {
+        Throwable cause = thrown;
+        while (cause.getCause() != null)
+        {
+            cause = cause.getCause();
+        }
+
+        if (cause instanceof Error)
+        {
+            throw (Error)cause;
+        }
+        else if (cause instanceof RuntimeException)
+        {
+            return (RuntimeException)cause;
+        }
+        else
+        {
+            return new RuntimeException(cause);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Find the innermost Exception among the causes of an exception
+     * thrown by an invoked method, so it can be rethrown.  If there is
+     * an Error among them instead, the innermost Error is thrown from
+     * here.
+     * @param thrown The exception that was thrown
+     * @return The exception to rethrow
+     */
+    private static Exception exceptionCause(Throwable thrown)
+    {
+        Throwable cause = thrown;
+        Exception ex = null;
+        Error     error = null;
+        if (cause instanceof Exception)
+        {
+            ex = (Exception)cause;
+        }
+        else if (cause instanceof Error)
+        {
+            error = (Error)cause;
+        }
+        while (cause.getCause() != null)
+        {
+            cause = cause.getCause();
+            if (cause instanceof Exception)
+            {
+                ex = (Exception)cause;
+            }
+            else if (cause instanceof Error)
+            {
+                error = (Error)cause;
+            }
+        }
+        if (error != null)
+        {
+            throw error;
+        }
+        else if (ex != null)
+        {
+            return ex;
+        }
+        else
+        {
+            // the cause is a raw Throwable of some kind, rather than
+            // an Exception, so it needs to be wrapped anyway
+            return new RuntimeException(cause);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Check that a method's declared return type is compatible with the
+     * return type expected by the caller.
+     * @param m The method
+     * @param returnType The expected return type, or null (or
+     *     <code>void.class</code>) for a void method
+     */
+    private static void checkDeclaredReturnType(Method m, Class<?> returnType)
+    {
+        if (returnType == null || returnType == void.class)
+        {
+            Class<?> declaredReturnType = m.getReturnType();
+            assertTrue("method " + simpleMethodName(m)
+                + " should be a void method",
+                declaredReturnType == void.class ||
+                declaredReturnType == null);
+        }
+        else
+        {
+            Class<?> declaredReturnType = m.getReturnType();
+            assertTrue("method " + simpleMethodName(m)
+                + " should be declared with a return type of "
+                + simpleClassNameUsingPrimitives(returnType),
+                declaredReturnType != void.class &&
+                declaredReturnType != null &&
+                (actualMatchesFormal(declaredReturnType, returnType)
+                    // Had to add this second part in for legacy compatibility,
+                    // where tests written with Integer.class need to
+                    // work, even though they should have been written
+                    // with int.class
+                 || canAutoBoxFromActualToFormal(
+                     returnType, declaredReturnType)));
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Check that the value returned by a method is compatible with the
+     * return type expected by the caller.
+     * @param m The method
+     * @param returnType The expected return type, or null (or
+     *     <code>void.class</code>) for a void method
+     * @param result The value returned
+     * @param allowAutoBox True if the result only needs to be passable
+     *     as a value of the expected type (including unboxing), false if
+     *     it must be an instance of the expected type
+     */
+    private static void checkResult(
+        Method m, Class<?> returnType, Object result, boolean allowAutoBox)
+    {
+        if (result != null)
+        {
+            if (returnType != null)
+            {
+                // Messages are only built on failure, since this runs on
+                // every call
+                if (returnType == void.class)
+                {
+                    fail("method " + simpleMethodName(m)
+                        + " should be a void method");
+                }
+                if (!(allowAutoBox
+                    ? actualMatchesFormal(result.getClass(), returnType)
+                    : returnType.isAssignableFrom(result.getClass())))
+                {
+                    fail("method " + simpleMethodName(m)
+                        + " did not produce result of type "
+                        + simpleClassName(returnType));
+                }
+            }
+            else
+            {
+                fail("method " + simpleMethodName(m)
+                    + " should be a void method");
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Look up a previous method or constructor search.
+     * @param c The class searched
+     * @param name The method name, or CONSTRUCTOR
+     * @param params The parameter profile
+     * @return The cached outcome, or null if there is none
+     */
+    private static Resolution cachedResolution(
+        Class<?> c, String name, Class<?>[] params)
+    {
+        ConcurrentMap<Signature, Resolution> table = resolutionTable(c, false);
+        Resolution result = (table == null)
+            ? null
+            : table.get(new Signature(name, params));
+        if (result == null)
+        {
+            resolutionMisses.incrementAndGet();
+        }
+        else
+        {
+            resolutionHits.incrementAndGet();
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Remember the outcome of a method or constructor search.
+     * @param c The class searched
+     * @param name The method name, or CONSTRUCTOR
+     * @param params The parameter profile
+     * @param resolution The outcome
+     */
+    private static void cacheResolution(
+        Class<?> c, String name, Class<?>[] params, Resolution resolution)
+    {
+        resolutionTable(c, true).put(
+            new Signature(name, params.clone()), resolution);
+    }
+
+
+    // ----------------------------------------------------------
+    private static ConcurrentMap<Signature, Resolution> resolutionTable(
+        Class<?> c, boolean create)
+    {
+        synchronized (resolutions)
+        {
+            SoftReference<ConcurrentMap<Signature, Resolution>> ref =
+                resolutions.get(c);
+            ConcurrentMap<Signature, Resolution> table =
+                (ref == null) ? null : ref.get();
+            if (table == null && create)
+            {
+                table = new ConcurrentHashMap<Signature, Resolution>();
+                resolutions.put(c,
+                    new SoftReference<ConcurrentMap<Signature, Resolution>>(
+                        table));
+            }
+            return table;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The method name and parameter profile used in a search.
+     */
+    private static class Signature
+    {
+        public Signature(String name, Class<?>[] params)
+        {
+            this.name = name;
+            this.params = params;
+            hash = name.hashCode() * 31 + Arrays.hashCode(params);
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Signature))
+            {
+                return false;
+            }
+            Signature sig = (Signature)other;
+            return hash == sig.hash
+                && name.equals(sig.name)
+                && Arrays.equals(params, sig.params);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        private final String     name;
+        private final Class<?>[] params;
+        private final int        hash;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The outcome of a search: either the member found, or the failure
+     * message to report.
+     */
+    private static class Resolution
+    {
+        public Resolution(Member member, String failure)
+        {
+            this.member = member;
+            this.failure = failure;
+        }
+
+        final Member member;
+        final String failure;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    /** The name used for constructors in the resolution cache. */
+    private static final String CONSTRUCTOR = "<init>";
+
+    /** Cached searches, by class.  Each class's table is held softly,
+     *  since its entries refer back to the class. */
+    private static final
+        Map<Class<?>, SoftReference<ConcurrentMap<Signature, Resolution>>>
+        resolutions = new WeakHashMap<Class<?>,
+            SoftReference<ConcurrentMap<Signature, Resolution>>>();
+    private static final AtomicLong resolutionHits = new AtomicLong();
+    private static final AtomicLong resolutionMisses = new AtomicLong();
 }
@@ -0,0 +1,167 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+//-------------------------------------------------------------------------
+/**
+ *  Reads a result stream produced by {@link BinaryResultSerializer} and
+ *  replays its contents into any other {@link ResultSerializer}.  Records
+ *  with unknown tags are skipped, and header records may appear more
+ *  than once (as happens when per-suite result files are concatenated).
+ *
+ *  @version $Id$
+ */
+public class BinaryResultReader
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a reader for the given stream.
+     * @param in the stream to read from
+     */
+    public BinaryResultReader(InputStream in)
+    {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Read all remaining records from the stream, passing each one on to
+     * the given serializer.
+     * @param sink the serializer to receive the records
+     * @return the number of result and suite summary records read
+     * @throws IOException if the stream cannot be read or is malformed
+     */
+    public int replay(ResultSerializer sink)
+        throws IOException
+    {
+        int count = 0;
+        int tag;
+        while ((tag = in.read()) >= 0)
+        {
+            int length = in.readInt();
+            switch (tag)
+            {
+                case BinaryResultSerializer.HEADER:
+                    if (in.readInt() != BinaryResultSerializer.MAGIC)
+                    {
+                        throw new IOException("Not a binary result stream");
+                    }
+                    short version = in.readShort();
+                    if (version > BinaryResultSerializer.VERSION)
+                    {
+                        throw new IOException(
+                            "Unsupported result stream version " + version);
+                    }
+                    skip(length - 6);
+                    break;
+
+                case BinaryResultSerializer.RESULT:
+                    ResultRecord result = new ResultRecord();
+                    result.suite         = readString();
+                    result.test          = readString();
+                    result.level         = in.readInt();
+                    result.code          = in.readInt();
+                    result.priority      = in.readInt();
+                    result.message       = readString();
+                    result.exception     = readString();
+                    result.trace         = readString();
+                    result.hintMandatory = in.readInt();
+                    result.hint          = readString();
+                    result.hintTrace     = readString();
+                    sink.writeResult(result);
+                    count++;
+                    break;
+
+                case BinaryResultSerializer.SUITE_SUMMARY:
+                    String suite = readString();
+                    double executed = in.readDouble();
+                    double failed = in.readDouble();
+                    sink.writeSuiteSummary(suite, executed, failed);
+                    count++;
+                    break;
+
+                default:
+                    // Unknown record type from a newer writer
+                    skip(length);
+            }
+        }
+        sink.flush();
+        return count;
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private String readString()
+        throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        if (buffer.length < length)
+        {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        in.readFully(buffer, 0, length);
+        return new String(buffer, 0, length, "UTF-8");
+    }
+
+
+    // ----------------------------------------------------------
+    private void skip(int length)
+        throws IOException
+    {
+        while (length > 0)
+        {
+            int skipped = in.skipBytes(length);
+            if (skipped <= 0)
+            {
+                throw new EOFException("Truncated result record");
+            }
+            length -= skipped;
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private DataInputStream in;
+    private byte[] buffer = new byte[256];
+}
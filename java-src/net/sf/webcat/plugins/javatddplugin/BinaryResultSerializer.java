@@ -0,0 +1,164 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+//-------------------------------------------------------------------------
+/**
+ *  A {@link ResultSerializer} that writes a compact, length-prefixed
+ *  binary stream.  Every record is framed as a one-byte tag, a four-byte
+ *  payload length, and the payload itself, so readers can skip records
+ *  they do not understand.  Strings are written as a four-byte byte count
+ *  (-1 for null) followed by UTF-8 bytes, so there is no size limit on
+ *  messages or stack traces.  Each stream starts with a header record,
+ *  which means result files from separate suites can simply be
+ *  concatenated.  Use {@link BinaryResultReader} to read the stream back.
+ *
+ *  @version $Id$
+ */
+public class BinaryResultSerializer
+    implements ResultSerializer
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Default constructor.
+     */
+    public BinaryResultSerializer()
+    {
+        // Nothing to construct
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    public void setOutput(OutputStream out)
+        throws IOException
+    {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        payload.writeInt(MAGIC);
+        payload.writeShort(VERSION);
+        writeRecord(HEADER);
+    }
+
+
+    // ----------------------------------------------------------
+    public void writeResult(ResultRecord result)
+        throws IOException
+    {
+        writeString(result.suite);
+        writeString(result.test);
+        payload.writeInt(result.level);
+        payload.writeInt(result.code);
+        payload.writeInt(result.priority);
+        writeString(result.message);
+        writeString(result.exception);
+        writeString(result.trace);
+        payload.writeInt(result.hintMandatory);
+        writeString(result.hint);
+        writeString(result.hintTrace);
+        writeRecord(RESULT);
+    }
+
+
+    // ----------------------------------------------------------
+    public void writeSuiteSummary(String suite, double executed, double failed)
+        throws IOException
+    {
+        writeString(suite);
+        payload.writeDouble(executed);
+        payload.writeDouble(failed);
+        writeRecord(SUITE_SUMMARY);
+    }
+
+
+    // ----------------------------------------------------------
+    public void flush()
+        throws IOException
+    {
+        if (out != null)
+        {
+            out.flush();
+        }
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private void writeString(String value)
+        throws IOException
+    {
+        if (value == null)
+        {
+            payload.writeInt(-1);
+        }
+        else
+        {
+            byte[] bytes = value.getBytes("UTF-8");
+            payload.writeInt(bytes.length);
+            payload.write(bytes);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void writeRecord(byte tag)
+        throws IOException
+    {
+        payload.flush();
+        out.writeByte(tag);
+        out.writeInt(payloadBytes.size());
+        payloadBytes.writeTo(out);
+        payloadBytes.reset();
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    /** Marks the start of a stream: "WCTR". */
+    static final int   MAGIC   = 0x57435452;
+    /** The current format version. */
+    static final short VERSION = 1;
+
+    /** Record tag for the stream header. */
+    static final byte HEADER        = 'H';
+    /** Record tag for a single test outcome. */
+    static final byte RESULT        = 'R';
+    /** Record tag for the totals at the end of a suite. */
+    static final byte SUITE_SUMMARY = 'S';
+
+    private DataOutputStream out;
+    private ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(256);
+    private DataOutputStream payload = new DataOutputStream(payloadBytes);
+}
@@ -0,0 +1,454 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+//-------------------------------------------------------------------------
+/**
+ *  The parts of a compiled class file that matter when deciding what has
+ *  to be recompiled: the class's name, the source file it came from, the
+ *  other classes it refers to, and its API.  The API covers the class's
+ *  modifiers, supertypes, and all of its non-private fields (including
+ *  constant values) and methods, but not method bodies, so two versions
+ *  of a class that differ only in their code have the same API.
+ *  <p>
+ *  Only the constant pool and member tables are read; everything else in
+ *  the class file is skipped.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class ClassFileSummary
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Read a summary from the contents of a class file.
+     * @param bytes the class file's contents
+     * @throws IOException if the contents are not a valid class file
+     */
+    public ClassFileSummary(byte[] bytes)
+        throws IOException
+    {
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC)
+        {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort();  // minor version
+        in.readUnsignedShort();  // major version
+        readConstantPool(in);
+
+        ByteArrayOutputStream apiBytes = new ByteArrayOutputStream();
+        DataOutputStream api = new DataOutputStream(apiBytes);
+
+        api.writeShort(in.readUnsignedShort() & ~ACC_SUPER);
+        name = className(in.readUnsignedShort());
+        api.writeUTF(name);
+        String superName = className(in.readUnsignedShort());
+        api.writeUTF(superName == null ? "" : superName);
+        int interfaces = in.readUnsignedShort();
+        for (int i = 0; i < interfaces; i++)
+        {
+            api.writeUTF(className(in.readUnsignedShort()));
+        }
+
+        api.writeUTF(readMembers(in, true));
+        api.writeUTF(readMembers(in, false));
+
+        String signature = "";
+        int attributes = in.readUnsignedShort();
+        for (int i = 0; i < attributes; i++)
+        {
+            String attribute = utf8(in.readUnsignedShort());
+            int length = in.readInt();
+            if ("SourceFile".equals(attribute))
+            {
+                sourceFile = utf8(in.readUnsignedShort());
+            }
+            else if ("Signature".equals(attribute))
+            {
+                signature = utf8(in.readUnsignedShort());
+            }
+            else
+            {
+                in.skipBytes(length);
+            }
+        }
+        api.writeUTF(signature);
+        api.flush();
+        this.api = apiBytes.toByteArray();
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Read a summary of a class file.
+     * @param file the class file
+     * @return the summary
+     * @throws IOException if the file cannot be read or is not a valid
+     *                     class file
+     */
+    public static ClassFileSummary read(File file)
+        throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            ByteArrayOutputStream bytes =
+                new ByteArrayOutputStream((int)file.length());
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0)
+            {
+                bytes.write(buffer, 0, count);
+            }
+            return new ClassFileSummary(bytes.toByteArray());
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the class's name, in internal form (like "java/lang/String").
+     * @return the class name
+     */
+    public String name()
+    {
+        return name;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the simple name of the source file the class was compiled from.
+     * @return the source file name, or null if the class file does not
+     *         record it
+     */
+    public String sourceFile()
+    {
+        return sourceFile;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the names of the classes this class refers to, either directly
+     * or in field and method descriptors, in internal form.
+     * @return the referenced class names
+     */
+    public Set<String> references()
+    {
+        return Collections.unmodifiableSet(references);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get an encoding of this class's API.  Two classes have equal
+     * encodings when code compiled against one would compile the same
+     * way against the other.
+     * @return the encoded API
+     */
+    public byte[] api()
+    {
+        return api.clone();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Find out whether this class declares any non-private constant
+     * fields.  javac copies the values of such fields into the classes
+     * that use them, so those classes may no longer refer to this one.
+     * @return true if any non-private field has a constant value
+     */
+    public boolean declaresConstants()
+    {
+        return declaresConstants;
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private void readConstantPool(DataInputStream in)
+        throws IOException
+    {
+        int count = in.readUnsignedShort();
+        constants = new Object[count];
+        tags = new int[count];
+        for (int i = 1; i < count; i++)
+        {
+            int tag = in.readUnsignedByte();
+            tags[i] = tag;
+            switch (tag)
+            {
+                case CONSTANT_Utf8:
+                    String value = in.readUTF();
+                    constants[i] = value;
+                    addDescriptorReferences(value);
+                    break;
+                case CONSTANT_Integer:
+                    constants[i] = Integer.valueOf(in.readInt());
+                    break;
+                case CONSTANT_Float:
+                    constants[i] = Float.valueOf(in.readFloat());
+                    break;
+                case CONSTANT_Long:
+                    constants[i] = Long.valueOf(in.readLong());
+                    i++;
+                    break;
+                case CONSTANT_Double:
+                    constants[i] = Double.valueOf(in.readDouble());
+                    i++;
+                    break;
+                case CONSTANT_Class:
+                case CONSTANT_String:
+                case CONSTANT_MethodType:
+                case CONSTANT_Module:
+                case CONSTANT_Package:
+                    constants[i] = Integer.valueOf(in.readUnsignedShort());
+                    break;
+                case CONSTANT_MethodHandle:
+                    in.skipBytes(3);
+                    break;
+                case CONSTANT_Fieldref:
+                case CONSTANT_Methodref:
+                case CONSTANT_InterfaceMethodref:
+                case CONSTANT_NameAndType:
+                case CONSTANT_Dynamic:
+                case CONSTANT_InvokeDynamic:
+                    in.skipBytes(4);
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        for (int i = 1; i < count; i++)
+        {
+            if (tags[i] == CONSTANT_Class)
+            {
+                String referenced = className(i);
+                if (referenced.startsWith("["))
+                {
+                    addDescriptorReferences(referenced);
+                }
+                else
+                {
+                    references.add(referenced);
+                }
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Read the field or method table, returning the API of the non-private
+     * members as a string that does not depend on member order.
+     */
+    private String readMembers(DataInputStream in, boolean fields)
+        throws IOException
+    {
+        List<String> members = new ArrayList<String>();
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++)
+        {
+            int access = in.readUnsignedShort();
+            StringBuffer member = new StringBuffer();
+            boolean constant = false;
+            member.append(access & ~IGNORED_MEMBER_FLAGS);
+            member.append(' ').append(utf8(in.readUnsignedShort()));
+            member.append(' ').append(utf8(in.readUnsignedShort()));
+
+            int attributes = in.readUnsignedShort();
+            for (int j = 0; j < attributes; j++)
+            {
+                String attribute = utf8(in.readUnsignedShort());
+                int length = in.readInt();
+                if (fields && "ConstantValue".equals(attribute))
+                {
+                    int index = in.readUnsignedShort();
+                    Object value = constants[index];
+                    if (tags[index] == CONSTANT_String)
+                    {
+                        value = "\"" + utf8(((Integer)value).intValue());
+                    }
+                    member.append(" = ").append(value);
+                    constant = true;
+                }
+                else if ("Signature".equals(attribute))
+                {
+                    member.append(" <")
+                        .append(utf8(in.readUnsignedShort())).append('>');
+                }
+                else if (!fields && "Exceptions".equals(attribute))
+                {
+                    int exceptions = in.readUnsignedShort();
+                    member.append(" throws");
+                    for (int k = 0; k < exceptions; k++)
+                    {
+                        member.append(' ')
+                            .append(className(in.readUnsignedShort()));
+                    }
+                }
+                else
+                {
+                    in.skipBytes(length);
+                }
+            }
+
+            if ((access & ACC_PRIVATE) == 0)
+            {
+                members.add(member.toString());
+                if (constant)
+                {
+                    declaresConstants = true;
+                }
+            }
+        }
+
+        Collections.sort(members);
+        StringBuffer result = new StringBuffer();
+        for (String member : members)
+        {
+            result.append(member).append('\n');
+        }
+        return result.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Add the class names that appear in a descriptor or signature (as
+     * "Lname;" or "Lname&lt;...") to the references.
+     */
+    private void addDescriptorReferences(String value)
+    {
+        int start = value.indexOf('L');
+        while (start >= 0)
+        {
+            int end = start + 1;
+            while (end < value.length()
+                && value.charAt(end) != ';'
+                && value.charAt(end) != '<')
+            {
+                end++;
+            }
+            if (end < value.length() && end > start + 1)
+            {
+                String referenced = value.substring(start + 1, end);
+                if (referenced.indexOf('.') < 0
+                    && referenced.indexOf(' ') < 0)
+                {
+                    references.add(referenced);
+                }
+            }
+            start = value.indexOf('L', end);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private String className(int index)
+    {
+        if (index == 0)
+        {
+            return null;
+        }
+        return utf8(((Integer)constants[index]).intValue());
+    }
+
+
+    // ----------------------------------------------------------
+    private String utf8(int index)
+    {
+        return (String)constants[index];
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private String name;
+    private String sourceFile;
+    private Set<String> references = new TreeSet<String>();
+    private byte[] api;
+    private boolean declaresConstants;
+
+    private Object[] constants;
+    private int[] tags;
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int ACC_PRIVATE      = 0x0002;
+    private static final int ACC_SUPER        = 0x0020;
+    private static final int ACC_SYNCHRONIZED = 0x0020;
+    private static final int ACC_NATIVE       = 0x0100;
+    private static final int ACC_STRICT       = 0x0800;
+    private static final int IGNORED_MEMBER_FLAGS =
+        ACC_SYNCHRONIZED | ACC_NATIVE | ACC_STRICT;
+
+    private static final int CONSTANT_Utf8               = 1;
+    private static final int CONSTANT_Integer            = 3;
+    private static final int CONSTANT_Float              = 4;
+    private static final int CONSTANT_Long               = 5;
+    private static final int CONSTANT_Double             = 6;
+    private static final int CONSTANT_Class              = 7;
+    private static final int CONSTANT_String             = 8;
+    private static final int CONSTANT_Fieldref           = 9;
+    private static final int CONSTANT_Methodref          = 10;
+    private static final int CONSTANT_InterfaceMethodref = 11;
+    private static final int CONSTANT_NameAndType        = 12;
+    private static final int CONSTANT_MethodHandle       = 15;
+    private static final int CONSTANT_MethodType         = 16;
+    private static final int CONSTANT_Dynamic            = 17;
+    private static final int CONSTANT_InvokeDynamic      = 18;
+    private static final int CONSTANT_Module             = 19;
+    private static final int CONSTANT_Package            = 20;
+}
@@ -0,0 +1,66 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.OutputStream;
+
+//-------------------------------------------------------------------------
+/**
+ *  A custom formatter for the ANT junit task that produces the same
+ *  test outcomes and hints as
+ *  {@link HintingJUnitResultFormatter}, but writes them through a
+ *  {@link ResultSerializer} (a {@link BinaryResultSerializer}, unless
+ *  configured otherwise) rather than as Perl source.
+ *
+ *  @version $Id$
+ */
+public class CompactHintingJUnitResultFormatter
+    extends HintingJUnitResultFormatter
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Default constructor.
+     */
+    public CompactHintingJUnitResultFormatter()
+    {
+        // Nothing to construct
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * @see JUnitResultFormatter#setOutput(OutputStream)
+     */
+    /** {@inheritDoc}. */
+    public void setOutput( OutputStream out )
+    {
+        setSerializedOutput( out );
+    }
+}
@@ -0,0 +1,1385 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.Path;
+import org.apache.tools.ant.types.Reference;
+
+//-------------------------------------------------------------------------
+/**
+ *  An ANT task that keeps a content-addressed cache of compiled classes,
+ *  so that sources that were compiled before (by an earlier submission,
+ *  or for an earlier student) do not have to be compiled again.  It is
+ *  used in pairs around a <code>&lt;javac&gt;</code> task:
+ *  <pre>
+ *  &lt;compilecache action="restore" name="student" .../&gt;
+ *  &lt;record name="${javacLog}" action="start" emacsmode="true"/&gt;
+ *  &lt;javac includesfile="${includesFile}" excludesfile="${excludesFile}"
+ *         .../&gt;
+ *  &lt;record name="${javacLog}" action="stop"/&gt;
+ *  &lt;compilecache action="save" name="student" .../&gt;
+ *  </pre>
+ *  <p>
+ *  Cache entries are keyed by the contents of the sources, the
+ *  compiler options, and the class path.  Jar files on the class path
+ *  count by their contents, but class directories only count by the API
+ *  of the classes in them (see {@link ClassFileSummary}), so code that is
+ *  compiled against a student's classes can be reused as long as the
+ *  student's API stays the same.
+ *  </p><p>
+ *  On <code>restore</code>, if there is an entry for the same key, its
+ *  classes are copied into the destination directory, the compiler
+ *  output that was recorded for it is logged again as
+ *  <code>[javac]</code> output (execute.pl reads it from the log), and
+ *  the includes/excludes files are written so that javac compiles
+ *  nothing.  Otherwise, if a <code>slot</code> is given (such as the
+ *  user name), the last entry saved for that slot compiled cleanly, and
+ *  the same source files are present with only some of them changed
+ *  (none of which declared constants that javac could have inlined
+ *  elsewhere), its classes are reused and only the changed sources, plus the
+ *  sources of any classes that refer to them, are listed for javac.
+ *  Otherwise, javac compiles everything.  On <code>save</code>, the
+ *  result is stored as a new entry.
+ *  </p><p>
+ *  If a <code>convertList</code> file is given, the task also remembers
+ *  what ensureUTF8.pl made of each source, so that the conversion is
+ *  only run on sources it has not seen before.  Their names are written
+ *  to the list file, one per line.
+ *  </p><p>
+ *  When <code>enabled</code> is false, restore just lists every source
+ *  for conversion and compilation, and save does nothing.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class CompileCache
+    extends Task
+{
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Set the action to perform.
+     * @param action "restore" (before compiling) or "save" (after)
+     */
+    public void setAction(String action)
+    {
+        this.action = action;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the name of this compilation, which pairs a save with the
+     * restore before it and keeps entries for different compilations
+     * apart.
+     * @param name the name
+     */
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set whether the cache is used at all.
+     * @param enabled true to use the cache
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the directory holding the cache.
+     * @param dir the cache directory
+     */
+    public void setDir(File dir)
+    {
+        this.dir = dir;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the directory holding the sources.
+     * @param srcdir the source directory
+     */
+    public void setSrcdir(File srcdir)
+    {
+        this.srcdir = srcdir;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the directory javac writes classes into.
+     * @param destdir the destination directory
+     */
+    public void setDestdir(File destdir)
+    {
+        this.destdir = destdir;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the patterns for the sources to include.
+     * @param includes comma- or space-separated patterns
+     */
+    public void setIncludes(String includes)
+    {
+        this.includes = includes;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the patterns for the sources to exclude.
+     * @param excludes comma- or space-separated patterns
+     */
+    public void setExcludes(String excludes)
+    {
+        this.excludes = excludes;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set whether source patterns are case sensitive.
+     * @param caseSensitive true if they are
+     */
+    public void setCaseSensitive(boolean caseSensitive)
+    {
+        this.caseSensitive = caseSensitive;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set a description of the compiler options, which becomes part of
+     * the cache key.
+     * @param options the options
+     */
+    public void setOptions(String options)
+    {
+        this.options = options;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the slot whose last entry can be reused when only some of the
+     * sources have changed.
+     * @param slot the slot name, such as the user name
+     */
+    public void setSlot(String slot)
+    {
+        this.slot = slot;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the file that javac's output is recorded in.
+     * @param javacLog the file
+     */
+    public void setJavacLog(File javacLog)
+    {
+        this.javacLog = javacLog;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the includes file to write for javac.
+     * @param includesFile the file
+     */
+    public void setIncludesFile(File includesFile)
+    {
+        this.includesFile = includesFile;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the excludes file to write for javac.
+     * @param excludesFile the file
+     */
+    public void setExcludesFile(File excludesFile)
+    {
+        this.excludesFile = excludesFile;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the file that lists the sources needing UTF-8 conversion.
+     * @param convertList the file
+     */
+    public void setConvertList(File convertList)
+    {
+        this.convertList = convertList;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the number of compiled entries to keep.  The least recently
+     * used ones are removed first.
+     * @param maxEntries the number of entries
+     */
+    public void setMaxEntries(int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the class path the sources are compiled against.
+     * @param classpath the class path
+     */
+    public void setClasspath(Path classpath)
+    {
+        createClasspath().append(classpath);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the class path by reference.
+     * @param ref a reference to a path
+     */
+    public void setClasspathRef(Reference ref)
+    {
+        createClasspath().setRefid(ref);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Add a nested class path.
+     * @return the class path
+     */
+    public Path createClasspath()
+    {
+        if (classpath == null)
+        {
+            classpath = new Path(getProject());
+        }
+        return classpath.createPath();
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public void execute()
+        throws BuildException
+    {
+        if (name == null || srcdir == null || destdir == null)
+        {
+            throw new BuildException(
+                "name, srcdir, and destdir are required", getLocation());
+        }
+        if (enabled && dir == null)
+        {
+            throw new BuildException(
+                "dir is required when enabled", getLocation());
+        }
+        if ("restore".equals(action))
+        {
+            restore();
+        }
+        else if ("save".equals(action))
+        {
+            save();
+        }
+        else
+        {
+            throw new BuildException(
+                "action must be restore or save", getLocation());
+        }
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private void restore()
+    {
+        State state = new State();
+        getProject().addReference(REFERENCE_PREFIX + name, state);
+        state.sources = scanSources();
+
+        if (!enabled)
+        {
+            state.pending = new ArrayList<String>(state.sources.keySet());
+            writeConvertList(state.pending);
+            writeJavacFiles(patterns(includes), false);
+            state.mode = DISABLED;
+            return;
+        }
+
+        try
+        {
+            MessageDigest group = sha1();
+            update(group, name);
+            update(group, options);
+            update(group, System.getProperty("java.vendor"));
+            update(group, System.getProperty("java.version"));
+            update(group, classpathDigest());
+            state.group = hex(group.digest());
+
+            MessageDigest key = sha1();
+            update(key, state.group);
+            for (Map.Entry<String, String> source : state.sources.entrySet())
+            {
+                update(key, source.getKey());
+                update(key, source.getValue());
+            }
+            state.key = hex(key.digest());
+
+            state.pending = restoreConverted(state.sources);
+            writeConvertList(state.pending);
+
+            File entry = entry(state.key);
+            if (isComplete(entry))
+            {
+                copyTree(new File(entry, CLASSES), destdir, null);
+                entry.setLastModified(System.currentTimeMillis());
+                replay(readFile(new File(entry, OUTPUT)));
+                writeJavacFiles(patterns(includes), true);
+                state.mode = HIT;
+                log("Reused compiled classes from " + entry,
+                    Project.MSG_VERBOSE);
+                return;
+            }
+            if (slot != null && restorePartial(state))
+            {
+                state.mode = PARTIAL;
+                return;
+            }
+        }
+        catch (IOException e)
+        {
+            log("Cannot use the compile cache: " + e, Project.MSG_WARN);
+        }
+
+        writeJavacFiles(patterns(includes), false);
+        state.mode = FULL;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Reuse the classes from the last clean entry for this slot, leaving
+     * out the classes that need recompiling.
+     * @return true if that was possible
+     */
+    private boolean restorePartial(State state)
+        throws IOException
+    {
+        String previous = readFile(slotFile(state)).trim();
+        File entry = entry(previous);
+        if (previous.length() == 0 || !isComplete(entry))
+        {
+            return false;
+        }
+        Properties manifest = loadProperties(new File(entry, MANIFEST));
+        if (!"true".equals(manifest.getProperty(CLEAN)))
+        {
+            return false;
+        }
+
+        // Find the changed sources.  If any were added or removed, names
+        // in the unchanged sources may now resolve differently, so
+        // compile everything.
+        Set<String> changed = new TreeSet<String>();
+        Set<String> staleNames = new TreeSet<String>();
+        int previousCount = 0;
+        for (Object key : manifest.keySet())
+        {
+            if (key.toString().startsWith(SOURCE_PREFIX))
+            {
+                previousCount++;
+            }
+        }
+        for (Map.Entry<String, String> source : state.sources.entrySet())
+        {
+            String previousHash =
+                manifest.getProperty(SOURCE_PREFIX + source.getKey());
+            if (previousHash == null)
+            {
+                return false;
+            }
+            if (!source.getValue().equals(previousHash))
+            {
+                changed.add(source.getKey());
+                staleNames.add(baseName(source.getKey()));
+            }
+        }
+        if (changed.isEmpty() || previousCount != state.sources.size())
+        {
+            return false;
+        }
+
+        // Find every class that came from one of them, or that depends
+        // on one that did.  javac copies constant values into the classes
+        // that use them, which then may not refer to the class at all, so
+        // if a changed source declared constants, compile everything.
+        File classes = new File(entry, CLASSES);
+        Map<String, ClassFileSummary> summaries =
+            new HashMap<String, ClassFileSummary>();
+        Map<String, String> classFiles = new HashMap<String, String>();
+        for (String file : scan(classes, new String[] { "**/*.class" }, null))
+        {
+            ClassFileSummary summary =
+                ClassFileSummary.read(new File(classes, file));
+            if (summary.sourceFile() == null)
+            {
+                return false;
+            }
+            summaries.put(summary.name(), summary);
+            classFiles.put(summary.name(), file);
+        }
+        Map<String, List<String>> dependents =
+            new HashMap<String, List<String>>();
+        LinkedList<String> queue = new LinkedList<String>();
+        for (ClassFileSummary summary : summaries.values())
+        {
+            for (String referenced : summary.references())
+            {
+                if (!referenced.equals(summary.name())
+                    && summaries.containsKey(referenced))
+                {
+                    List<String> list = dependents.get(referenced);
+                    if (list == null)
+                    {
+                        list = new ArrayList<String>();
+                        dependents.put(referenced, list);
+                    }
+                    list.add(summary.name());
+                }
+            }
+            if (staleNames.contains(summary.sourceFile()))
+            {
+                if (summary.declaresConstants())
+                {
+                    return false;
+                }
+                queue.add(summary.name());
+            }
+        }
+        Set<String> stale = new TreeSet<String>(queue);
+        while (!queue.isEmpty())
+        {
+            List<String> list = dependents.get(queue.removeFirst());
+            if (list != null)
+            {
+                for (String dependent : list)
+                {
+                    if (stale.add(dependent))
+                    {
+                        queue.add(dependent);
+                    }
+                }
+            }
+        }
+
+        // Copy the rest, and compile the sources of the stale classes
+        Set<String> staleFiles = new TreeSet<String>();
+        for (String className : stale)
+        {
+            staleFiles.add(classFiles.get(className));
+            staleNames.add(summaries.get(className).sourceFile());
+        }
+        copyTree(classes, destdir, staleFiles);
+        Set<String> compile = new TreeSet<String>(changed);
+        for (String source : state.sources.keySet())
+        {
+            if (staleNames.contains(baseName(source)))
+            {
+                compile.add(source);
+            }
+        }
+        writeJavacFiles(compile.toArray(new String[compile.size()]), false);
+        log("Reusing " + (summaries.size() - stale.size()) + " of "
+            + summaries.size() + " classes from " + entry + "; recompiling "
+            + compile.size() + " of " + state.sources.size() + " sources",
+            Project.MSG_VERBOSE);
+        return true;
+    }
+
+
+    // ----------------------------------------------------------
+    private void save()
+    {
+        Object reference = getProject().getReference(REFERENCE_PREFIX + name);
+        if (!(reference instanceof State))
+        {
+            throw new BuildException("save without a restore for " + name,
+                getLocation());
+        }
+        State state = (State)reference;
+
+        try
+        {
+            if (state.mode == DISABLED)
+            {
+                return;
+            }
+            saveConverted(state);
+            if (state.mode == HIT)
+            {
+                return;
+            }
+
+            String output = (javacLog == null || !javacLog.exists())
+                ? ""
+                : readFile(javacLog);
+            boolean clean = isClean(output);
+            if (state.mode == PARTIAL)
+            {
+                if (!clean)
+                {
+                    // Only diagnostics for the recompiled sources are
+                    // available, so this is not worth keeping
+                    return;
+                }
+                int count = state.sources.size();
+                output = "Compiling " + count + " source file"
+                    + (count == 1 ? "" : "s") + " to " + destdir
+                    + LINE_SEPARATOR;
+            }
+            saveEntry(state, output, clean);
+        }
+        catch (IOException e)
+        {
+            log("Cannot save to the compile cache: " + e, Project.MSG_WARN);
+        }
+        finally
+        {
+            delete(javacLog);
+            delete(includesFile);
+            delete(excludesFile);
+            delete(convertList);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void saveEntry(State state, String output, boolean clean)
+        throws IOException
+    {
+        File entries = new File(dir, ENTRIES);
+        entries.mkdirs();
+        File entry = entry(state.key);
+        if (!isComplete(entry))
+        {
+            File temp = new File(entries,
+                state.key + TEMP_SUFFIX + System.nanoTime());
+            new File(temp, CLASSES).mkdirs();
+            copyTree(destdir, new File(temp, CLASSES), null);
+            writeFile(new File(temp, OUTPUT), tokenize(output));
+
+            Properties manifest = new Properties();
+            manifest.setProperty(CLEAN, String.valueOf(clean));
+            for (Map.Entry<String, String> source : state.sources.entrySet())
+            {
+                manifest.setProperty(
+                    SOURCE_PREFIX + source.getKey(), source.getValue());
+            }
+            OutputStream out =
+                new FileOutputStream(new File(temp, MANIFEST));
+            try
+            {
+                manifest.store(out, null);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            if (!temp.renameTo(entry))
+            {
+                // Someone else saved the same entry first
+                deleteTree(temp);
+            }
+        }
+
+        if (slot != null)
+        {
+            File slotFile = slotFile(state);
+            slotFile.getParentFile().mkdirs();
+            File temp = new File(slotFile.getPath() + TEMP_SUFFIX
+                + System.nanoTime());
+            writeFile(temp, state.key);
+            if (!temp.renameTo(slotFile))
+            {
+                slotFile.delete();
+                if (!temp.renameTo(slotFile))
+                {
+                    temp.delete();
+                }
+            }
+        }
+
+        prune(entries);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Restore converted copies of the sources that ensureUTF8.pl has seen
+     * before, and return the ones it has not.
+     */
+    private List<String> restoreConverted(Map<String, String> sources)
+        throws IOException
+    {
+        List<String> result = new ArrayList<String>();
+        if (convertList == null)
+        {
+            return result;
+        }
+        File converted = new File(dir, CONVERTED);
+        for (Map.Entry<String, String> source : sources.entrySet())
+        {
+            File cached = new File(converted, source.getValue());
+            if (new File(converted, source.getValue() + UNCHANGED).exists())
+            {
+                continue;
+            }
+            else if (cached.exists())
+            {
+                File file = new File(srcdir, source.getKey());
+                long modified = file.lastModified();
+                copyFile(cached, file);
+                file.setLastModified(modified);
+            }
+            else
+            {
+                result.add(source.getKey());
+            }
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Remember what ensureUTF8.pl made of the sources it converted.
+     */
+    private void saveConverted(State state)
+        throws IOException
+    {
+        if (convertList == null || state.pending.isEmpty())
+        {
+            return;
+        }
+        File converted = new File(dir, CONVERTED);
+        converted.mkdirs();
+        for (String source : state.pending)
+        {
+            File file = new File(srcdir, source);
+            String hash = state.sources.get(source);
+            if (!file.exists())
+            {
+                continue;
+            }
+            if (hash.equals(hex(fileDigest(file))))
+            {
+                new FileOutputStream(
+                    new File(converted, hash + UNCHANGED)).close();
+            }
+            else
+            {
+                File temp = new File(converted,
+                    hash + TEMP_SUFFIX + System.nanoTime());
+                copyFile(file, temp);
+                if (!temp.renameTo(new File(converted, hash)))
+                {
+                    temp.delete();
+                }
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Compute a digest of the class path, leaving out the destination
+     * directory.
+     */
+    private String classpathDigest()
+        throws IOException
+    {
+        MessageDigest digest = sha1();
+        if (classpath == null)
+        {
+            return hex(digest.digest());
+        }
+        String destPath = destdir.getAbsolutePath();
+        for (String element : classpath.list())
+        {
+            File file = new File(element).getAbsoluteFile();
+            if (isWithin(file.getPath(), destPath))
+            {
+                continue;
+            }
+            if (file.isDirectory())
+            {
+                update(digest, "dir");
+                String[] excluded = null;
+                if (isWithin(destPath, file.getPath()))
+                {
+                    excluded = new String[] {
+                        destPath.substring(file.getPath().length() + 1)
+                        + "/**"
+                    };
+                }
+                for (String classFile :
+                    scan(file, new String[] { "**/*.class" }, excluded))
+                {
+                    update(digest, classFile);
+                    try
+                    {
+                        digest.update(ClassFileSummary.read(
+                            new File(file, classFile)).api());
+                    }
+                    catch (IOException e)
+                    {
+                        digest.update(fileDigest(new File(file, classFile)));
+                    }
+                }
+            }
+            else if (file.isFile())
+            {
+                update(digest, "file");
+                digest.update(fileDigest(file));
+            }
+            else
+            {
+                update(digest, "missing");
+            }
+        }
+        return hex(digest.digest());
+    }
+
+
+    // ----------------------------------------------------------
+    private Map<String, String> scanSources()
+    {
+        Map<String, String> result = new TreeMap<String, String>();
+        try
+        {
+            for (String file :
+                scan(srcdir, patterns(includes), patterns(excludes)))
+            {
+                result.put(file, hex(fileDigest(new File(srcdir, file))));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BuildException(e, getLocation());
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Find the files under a directory that match some patterns, using
+     * forward slashes.
+     */
+    private String[] scan(File base, String[] include, String[] exclude)
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(base);
+        scanner.setIncludes(include);
+        scanner.setExcludes(exclude);
+        scanner.setCaseSensitive(caseSensitive);
+        scanner.scan();
+        String[] result = scanner.getIncludedFiles();
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = result[i].replace(File.separatorChar, '/');
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Log recorded javac output again, as if javac had produced it.
+     */
+    private void replay(String output)
+    {
+        String taskName = getTaskName();
+        setTaskName("javac");
+        try
+        {
+            for (String line : untokenize(output).split("\r?\n"))
+            {
+                if (line.length() > 0)
+                {
+                    log(line, line.startsWith("Compiling ")
+                        ? Project.MSG_INFO
+                        : Project.MSG_WARN);
+                }
+            }
+        }
+        finally
+        {
+            setTaskName(taskName);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static boolean isClean(String output)
+    {
+        for (String line : output.split("\r?\n"))
+        {
+            if (line.trim().length() > 0 && !line.startsWith("Compiling "))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    // ----------------------------------------------------------
+    private String tokenize(String output)
+    {
+        String result = output;
+        for (String[] token : tokens())
+        {
+            result = result.replace(token[1], token[0]);
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    private String untokenize(String output)
+    {
+        String result = output;
+        for (String[] token : tokens())
+        {
+            result = result.replace(token[0], token[1]);
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The directory names that are replaced by tokens in recorded output,
+     * longest first.
+     */
+    private List<String[]> tokens()
+    {
+        List<String[]> result = new ArrayList<String[]>();
+        result.add(new String[] { "@DESTDIR@", destdir.getAbsolutePath() });
+        result.add(new String[] { "@SRCDIR@", srcdir.getAbsolutePath() });
+        result.add(new String[] {
+            "@BASEDIR@", getProject().getBaseDir().getAbsolutePath() });
+        Collections.sort(result, new Comparator<String[]>() {
+            public int compare(String[] left, String[] right)
+            {
+                return right[1].length() - left[1].length();
+            }
+        });
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    private void writeJavacFiles(String[] sources, boolean none)
+    {
+        try
+        {
+            if (includesFile != null)
+            {
+                writeFile(includesFile, lines(Arrays.asList(sources)));
+            }
+            if (excludesFile != null)
+            {
+                writeFile(excludesFile, none ? "**/*" : "");
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BuildException(e, getLocation());
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void writeConvertList(List<String> sources)
+    {
+        if (convertList == null)
+        {
+            return;
+        }
+        List<String> paths = new ArrayList<String>();
+        for (String source : sources)
+        {
+            paths.add(new File(srcdir, source).getAbsolutePath());
+        }
+        try
+        {
+            writeFile(convertList, lines(paths));
+        }
+        catch (IOException e)
+        {
+            throw new BuildException(e, getLocation());
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Remove the least recently used entries, and any abandoned
+     * temporary ones, once there are more than maxEntries.
+     */
+    private void prune(File entries)
+    {
+        File[] files = entries.listFiles();
+        if (files == null || files.length <= maxEntries)
+        {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<File> complete = new ArrayList<File>();
+        for (File file : files)
+        {
+            if (file.getName().indexOf(TEMP_SUFFIX) >= 0)
+            {
+                if (now - file.lastModified() > STALE_TEMP_AGE)
+                {
+                    deleteTree(file);
+                }
+            }
+            else
+            {
+                complete.add(file);
+            }
+        }
+        Collections.sort(complete, new Comparator<File>() {
+            public int compare(File left, File right)
+            {
+                long difference = left.lastModified() - right.lastModified();
+                return (difference < 0) ? -1 : ((difference > 0) ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < complete.size() - maxEntries; i++)
+        {
+            deleteTree(complete.get(i));
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private File entry(String key)
+    {
+        return new File(new File(dir, ENTRIES), key);
+    }
+
+
+    // ----------------------------------------------------------
+    private static boolean isComplete(File entry)
+    {
+        return new File(entry, MANIFEST).exists();
+    }
+
+
+    // ----------------------------------------------------------
+    private File slotFile(State state)
+    {
+        MessageDigest digest = sha1();
+        update(digest, slot);
+        return new File(new File(new File(dir, SLOTS), state.group),
+            hex(digest.digest()));
+    }
+
+
+    // ----------------------------------------------------------
+    private static String[] patterns(String patterns)
+    {
+        String trimmed = (patterns == null) ? "" : patterns.trim();
+        return (trimmed.length() == 0)
+            ? new String[0]
+            : trimmed.split("[,\\s]+");
+    }
+
+
+    // ----------------------------------------------------------
+    private static String baseName(String path)
+    {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+
+    // ----------------------------------------------------------
+    private static boolean isWithin(String path, String dirPath)
+    {
+        return path.equals(dirPath)
+            || path.startsWith(dirPath + File.separator);
+    }
+
+
+    // ----------------------------------------------------------
+    static String lines(Collection<String> lines)
+    {
+        StringBuffer result = new StringBuffer();
+        for (String line : lines)
+        {
+            result.append(line).append(LINE_SEPARATOR);
+        }
+        return result.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the SHA-1 digest of a file, remembering the digests of files
+     * (like jars) that are seen more than once in the same build.
+     */
+    static byte[] fileDigest(File file)
+        throws IOException
+    {
+        String key = file.getAbsolutePath() + '\0' + file.length() + '\0'
+            + file.lastModified();
+        synchronized (fileDigests)
+        {
+            byte[] result = fileDigests.get(key);
+            if (result != null)
+            {
+                return result;
+            }
+        }
+
+        MessageDigest digest = sha1();
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) > 0)
+            {
+                digest.update(buffer, 0, count);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        byte[] result = digest.digest();
+        synchronized (fileDigests)
+        {
+            fileDigests.put(key, result);
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    static MessageDigest sha1()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new BuildException(e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    static void update(MessageDigest digest, String value)
+    {
+        try
+        {
+            digest.update(String.valueOf(value).getBytes("UTF-8"));
+            digest.update((byte)0);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new BuildException(e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    static String hex(byte[] bytes)
+    {
+        StringBuffer result = new StringBuffer(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            result.append(HEX_DIGITS[(b >> 4) & 0xf]);
+            result.append(HEX_DIGITS[b & 0xf]);
+        }
+        return result.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    private static Properties loadProperties(File file)
+        throws IOException
+    {
+        Properties result = new Properties();
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            result.load(in);
+        }
+        finally
+        {
+            in.close();
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    private static String readFile(File file)
+        throws IOException
+    {
+        if (!file.exists())
+        {
+            return "";
+        }
+        StringBuffer result = new StringBuffer();
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try
+        {
+            char[] buffer = new char[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) > 0)
+            {
+                result.append(buffer, 0, count);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return result.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    static void writeFile(File file, String contents)
+        throws IOException
+    {
+        PrintWriter out = new PrintWriter(
+            new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try
+        {
+            out.print(contents);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    static void copyFile(File from, File to)
+        throws IOException
+    {
+        InputStream in = new FileInputStream(from);
+        try
+        {
+            OutputStream out = new FileOutputStream(to);
+            try
+            {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = in.read(buffer)) > 0)
+                {
+                    out.write(buffer, 0, count);
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copy every file under one directory to another, except for the
+     * given relative paths (using forward slashes).
+     */
+    private void copyTree(File from, File to, Set<String> except)
+        throws IOException
+    {
+        for (String file : scan(from, new String[] { "**" }, null))
+        {
+            if (except == null || !except.contains(file))
+            {
+                File target = new File(to, file);
+                target.getParentFile().mkdirs();
+                copyFile(new File(from, file), target);
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static void deleteTree(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+
+
+    // ----------------------------------------------------------
+    private static void delete(File file)
+    {
+        if (file != null)
+        {
+            file.delete();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * What a restore found out, for the save that follows it.
+     */
+    private static class State
+    {
+        int mode;
+        String group;
+        String key;
+        Map<String, String> sources;
+        List<String> pending;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private String action;
+    private String name;
+    private boolean enabled = true;
+    private File dir;
+    private File srcdir;
+    private File destdir;
+    private String includes = "**/*.java";
+    private String excludes;
+    private boolean caseSensitive = true;
+    private String options = "";
+    private String slot;
+    private File javacLog;
+    private File includesFile;
+    private File excludesFile;
+    private File convertList;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private Path classpath;
+
+    private static final Map<String, byte[]> fileDigests =
+        new HashMap<String, byte[]>();
+
+    private static final int DISABLED = 0;
+    private static final int FULL     = 1;
+    private static final int PARTIAL  = 2;
+    private static final int HIT      = 3;
+
+    private static final String REFERENCE_PREFIX = "compilecache.";
+    private static final String ENTRIES       = "entries";
+    private static final String SLOTS         = "slots";
+    private static final String CONVERTED     = "utf8";
+    private static final String CLASSES       = "classes";
+    private static final String OUTPUT        = "javac.log";
+    private static final String MANIFEST      = "manifest.properties";
+    private static final String CLEAN         = "clean";
+    private static final String SOURCE_PREFIX = "source.";
+    private static final String UNCHANGED     = ".unchanged";
+    private static final String TEMP_SUFFIX   = ".tmp";
+
+    private static final String LINE_SEPARATOR =
+        System.getProperty("line.separator");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 8192;
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+    private static final long STALE_TEMP_AGE = 24 * 60 * 60 * 1000L;
+}
@@ -0,0 +1,355 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Task;
+
+//-------------------------------------------------------------------------
+/**
+ *  An ANT task that reads a JaCoCo XML report in a single streaming pass
+ *  and writes a compact digest of it, so that execute.pl does not have
+ *  to load the whole report into memory.  The digest is a text file
+ *  with one tab-separated record per line:
+ *  <pre>
+ *  package     name
+ *  class       name  sourcefilename  counters...
+ *  method      name  desc  line  counters...
+ *  sourcefile  name  counters...
+ *  line        nr  mi  ci  mb  cb
+ *  report      counters...
+ *  </pre>
+ *  <p>
+ *  Each class and source file comes right after its package, and is
+ *  followed by its methods or lines.  The report totals come last.  The
+ *  counters are six columns, each holding <code>missed/covered</code>,
+ *  for the INSTRUCTION, BRANCH, LINE, COMPLEXITY, METHOD, and CLASS
+ *  counters, in that order (counters missing from the report are 0/0).
+ *  Only one class or source file is held in memory at a time.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class CoverageDigest
+    extends Task
+{
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Set the JaCoCo XML report to read.
+     * @param xmlFile the report
+     */
+    public void setXmlFile(File xmlFile)
+    {
+        this.xmlFile = xmlFile;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the file to write the digest to.
+     * @param destFile the digest file
+     */
+    public void setDestFile(File destFile)
+    {
+        this.destFile = destFile;
+    }
+
+
+    // ----------------------------------------------------------
+    public void execute()
+        throws BuildException
+    {
+        if (xmlFile == null || destFile == null)
+        {
+            throw new BuildException(
+                "xmlfile and destfile are required", getLocation());
+        }
+        if (!xmlFile.exists())
+        {
+            log("No coverage report in " + xmlFile);
+            return;
+        }
+        try
+        {
+            InputStream in =
+                new BufferedInputStream(new FileInputStream(xmlFile));
+            try
+            {
+                PrintWriter out = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(
+                        new FileOutputStream(destFile), "UTF-8")));
+                try
+                {
+                    digest(in, out);
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BuildException(e, getLocation());
+        }
+        catch (XMLStreamException e)
+        {
+            throw new BuildException(
+                "Cannot read " + xmlFile + ": " + e, e, getLocation());
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Write the digest of a JaCoCo XML report.
+     * @param in the report
+     * @param out where to write the digest
+     * @throws XMLStreamException if the report cannot be parsed
+     */
+    public static void digest(InputStream in, PrintWriter out)
+        throws XMLStreamException
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // JaCoCo's DOCTYPE names a DTD that is not available, and not
+        // needed
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(
+            XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        XMLStreamReader reader = factory.createXMLStreamReader(in);
+
+        // The records for the open elements, innermost first (null for
+        // elements whose counters are not wanted)
+        LinkedList<Record> open = new LinkedList<Record>();
+        Record classRecord = null;
+        Record fileRecord = null;
+        try
+        {
+            while (reader.hasNext())
+            {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT)
+                {
+                    String element = reader.getLocalName();
+                    Record record = null;
+                    if ("report".equals(element))
+                    {
+                        record = new Record("report");
+                    }
+                    else if ("package".equals(element))
+                    {
+                        out.print("package\t");
+                        out.print(attribute(reader, "name"));
+                        out.print('\n');
+                    }
+                    else if ("class".equals(element))
+                    {
+                        record = new Record("class\t"
+                            + attribute(reader, "name") + '\t'
+                            + attribute(reader, "sourcefilename"));
+                        classRecord = record;
+                    }
+                    else if ("method".equals(element))
+                    {
+                        record = new Record("method\t"
+                            + attribute(reader, "name") + '\t'
+                            + attribute(reader, "desc") + '\t'
+                            + attribute(reader, "line"));
+                    }
+                    else if ("sourcefile".equals(element))
+                    {
+                        record = new Record(
+                            "sourcefile\t" + attribute(reader, "name"));
+                        fileRecord = record;
+                    }
+                    else if ("line".equals(element) && fileRecord != null)
+                    {
+                        fileRecord.children.add("line\t"
+                            + attribute(reader, "nr") + '\t'
+                            + attribute(reader, "mi") + '\t'
+                            + attribute(reader, "ci") + '\t'
+                            + attribute(reader, "mb") + '\t'
+                            + attribute(reader, "cb"));
+                    }
+                    else if ("counter".equals(element)
+                        && !open.isEmpty() && open.getFirst() != null)
+                    {
+                        open.getFirst().count(attribute(reader, "type"),
+                            number(attribute(reader, "missed")),
+                            number(attribute(reader, "covered")));
+                    }
+                    open.addFirst(record);
+                }
+                else if (event == XMLStreamConstants.END_ELEMENT)
+                {
+                    Record record = open.removeFirst();
+                    String element = reader.getLocalName();
+                    if ("method".equals(element) && classRecord != null)
+                    {
+                        classRecord.children.add(record.toString());
+                    }
+                    else if ("class".equals(element))
+                    {
+                        record.write(out);
+                        classRecord = null;
+                    }
+                    else if ("sourcefile".equals(element))
+                    {
+                        record.write(out);
+                        fileRecord = null;
+                    }
+                    else if ("report".equals(element))
+                    {
+                        record.write(out);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private static String attribute(XMLStreamReader reader, String name)
+    {
+        String value = reader.getAttributeValue(null, name);
+        return (value == null) ? "" : value;
+    }
+
+
+    // ----------------------------------------------------------
+    private static long number(String value)
+    {
+        try
+        {
+            return Long.parseLong(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * A class, method, source file, or the report, with its counters and
+     * the records that follow it.
+     */
+    private static class Record
+    {
+        // ----------------------------------------------------------
+        public Record(String prefix)
+        {
+            this.prefix = prefix;
+        }
+
+
+        // ----------------------------------------------------------
+        public void count(String type, long missed, long covered)
+        {
+            for (int i = 0; i < COUNTER_TYPES.length; i++)
+            {
+                if (COUNTER_TYPES[i].equals(type))
+                {
+                    counters[2 * i] += missed;
+                    counters[2 * i + 1] += covered;
+                    return;
+                }
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        public void write(PrintWriter out)
+        {
+            out.print(toString());
+            out.print('\n');
+            for (String child : children)
+            {
+                out.print(child);
+                out.print('\n');
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        public String toString()
+        {
+            StringBuilder result = new StringBuilder(prefix);
+            for (int i = 0; i < counters.length; i += 2)
+            {
+                result.append('\t');
+                result.append(counters[i]);
+                result.append('/');
+                result.append(counters[i + 1]);
+            }
+            return result.toString();
+        }
+
+
+        private String prefix;
+        private long[] counters = new long[2 * COUNTER_TYPES.length];
+        private List<String> children = new ArrayList<String>();
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private File xmlFile;
+    private File destFile;
+
+    private static final String[] COUNTER_TYPES = {
+        "INSTRUCTION", "BRANCH", "LINE", "COMPLEXITY", "METHOD", "CLASS"
+    };
+}
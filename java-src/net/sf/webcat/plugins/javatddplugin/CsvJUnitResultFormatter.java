@@ -63,6 +63,13 @@ public class CsvJUnitResultFormatter
 
     // ----------------------------------------------------------
     protected void outputForSuite(StringBuffer buffer, JUnitTest suite)
+    {
+        appendStagedResults(buffer);
+    }
+
+
+    // ----------------------------------------------------------
+    protected void appendStagedResults(StringBuffer buffer)
     {
         buffer.append(testResultsPlist.toString());
         testResultsPlist.setLength(0);
@@ -218,6 +218,59 @@ public class HintOptions
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Copy every option that is set locally in another object into this
+     * one.  Options the other object does not set itself (i.e., those it
+     * would inherit from its parent) are left unchanged here.  The parent
+     * is never copied.
+     * @param other the object to copy options from
+     */
+    public void copyLocalOptionsFrom( HintOptions other )
+    {
+        if ( other.filterFromStackTraces != null )
+        {
+            filterFromStackTraces = other.filterFromStackTraces;
+        }
+        if ( other.hint != null )
+        {
+            hint = other.hint;
+        }
+        if ( other.hintPrefix != null )
+        {
+            hintPrefix = other.hintPrefix;
+        }
+        if ( other.noStackTraces != null )
+        {
+            noStackTraces = other.noStackTraces;
+        }
+        if ( other.noStackTracesForAsserts != null )
+        {
+            noStackTracesForAsserts = other.noStackTracesForAsserts;
+        }
+        if ( other.onlyExplicitHints != null )
+        {
+            onlyExplicitHints = other.onlyExplicitHints;
+        }
+        if ( other.scoringWeight != null )
+        {
+            scoringWeight = other.scoringWeight;
+        }
+        if ( other.defaultMethodScoringWeight != null )
+        {
+            defaultMethodScoringWeight = other.defaultMethodScoringWeight;
+        }
+        if ( other.hintPriority != null )
+        {
+            hintPriority = other.hintPriority;
+        }
+        if ( other.stackTraceStopFilters != null )
+        {
+            stackTraceStopFilters = other.stackTraceStopFilters;
+        }
+    }
+
+
     //~ Public Accessor Methods ...............................................
 
     // ----------------------------------------------------------
@@ -0,0 +1,276 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//-------------------------------------------------------------------------
+/**
+ *  A shared cache of the hint options declared through annotations on
+ *  test classes and test methods.  The annotations on each class or
+ *  method are read once and kept as a snapshot.  A snapshot is never
+ *  handed out; its values are copied into the options object being
+ *  built.  This means snapshots can be shared between formatters, suites,
+ *  and repeated runs of the same suite in one JVM, such as the second
+ *  pass used for fault localization.
+ *  <p>
+ *  Entries are keyed weakly on the {@link Class} objects (and on the
+ *  class loaders used for name lookups), so caching does not keep
+ *  test classes or their loaders from being unloaded.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class HintOptionsCache
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * This class only provides static methods.
+     */
+    private HintOptionsCache()
+    {
+        // Nothing to construct
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Look up a class by name, as {@link Class#forName(String)} would
+     * from code loaded by the given class loader.
+     * @param name   the fully qualified class name
+     * @param loader the class loader to use
+     * @return the class, or null if it cannot be found
+     */
+    public static Class<?> classForName( String name, ClassLoader loader )
+    {
+        Map<String, WeakReference<Class<?>>> classes;
+        synchronized ( classesByLoader )
+        {
+            classes = classesByLoader.get( loader );
+            if ( classes == null )
+            {
+                classes =
+                    new ConcurrentHashMap<String, WeakReference<Class<?>>>();
+                classesByLoader.put( loader, classes );
+            }
+        }
+
+        WeakReference<Class<?>> ref = classes.get( name );
+        Class<?> result = ( ref == null ) ? null : ref.get();
+        if ( result != null )
+        {
+            hits.incrementAndGet();
+            return result;
+        }
+
+        misses.incrementAndGet();
+        try
+        {
+            result = Class.forName( name, true, loader );
+            classes.put( name, new WeakReference<Class<?>>( result ) );
+        }
+        catch ( ClassNotFoundException e )
+        {
+            // Ignore this one; not cached, in case the class shows up later
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copy the options declared by annotations on a class into an
+     * options object.
+     * @param target the options object to populate
+     * @param aClass the class whose annotations should be used
+     */
+    public static void loadFromAnnotations(
+        HintOptions target, Class<?> aClass )
+    {
+        ClassEntry entry = entryFor( aClass );
+        HintOptions snapshot = entry.classOptions;
+        if ( snapshot == null )
+        {
+            misses.incrementAndGet();
+            snapshot = new HintOptions();
+            snapshot.loadFromAnnotations( aClass );
+            entry.classOptions = snapshot;
+        }
+        else
+        {
+            hits.incrementAndGet();
+        }
+        target.copyLocalOptionsFrom( snapshot );
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copy the options declared by annotations on a public, no-argument
+     * method into an options object.  Nothing is copied if the class
+     * has no such method.
+     * @param target     the options object to populate
+     * @param aClass     the class declaring or inheriting the method
+     * @param methodName the name of the method
+     */
+    public static void loadFromAnnotations(
+        HintOptions target, Class<?> aClass, String methodName )
+    {
+        ConcurrentMap<String, HintOptions> methods =
+            entryFor( aClass ).methodOptions;
+        HintOptions snapshot = methods.get( methodName );
+        if ( snapshot == null )
+        {
+            misses.incrementAndGet();
+            snapshot = NO_METHOD;
+            try
+            {
+                java.lang.reflect.Method method =
+                    aClass.getMethod( methodName, (Class[])null );
+                snapshot = new HintOptions();
+                snapshot.loadFromAnnotations( method );
+            }
+            catch ( NoSuchMethodException e )
+            {
+                // Remembered as NO_METHOD
+            }
+            methods.putIfAbsent( methodName, snapshot );
+        }
+        else
+        {
+            hits.incrementAndGet();
+        }
+        if ( snapshot != NO_METHOD )
+        {
+            target.copyLocalOptionsFrom( snapshot );
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of lookups answered from the cache.
+     * @return the number of hits
+     */
+    public static long hits()
+    {
+        return hits.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of lookups that required reflection.
+     * @return the number of misses
+     */
+    public static long misses()
+    {
+        return misses.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the fraction of lookups answered from the cache.
+     * @return the hit rate, from 0.0 to 1.0 (0.0 if there have been no
+     * lookups)
+     */
+    public static double hitRate()
+    {
+        long h = hits.get();
+        long total = h + misses.get();
+        return ( total == 0 ) ? 0.0 : ( (double)h ) / total;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get a printable summary of the cache's hit rate.
+     * @return the summary
+     */
+    public static String statistics()
+    {
+        return "hits=" + hits() + ", misses=" + misses()
+            + ", hitRate=" + hitRate();
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private static ClassEntry entryFor( Class<?> aClass )
+    {
+        synchronized ( entries )
+        {
+            ClassEntry entry = entries.get( aClass );
+            if ( entry == null )
+            {
+                entry = new ClassEntry();
+                entries.put( aClass, entry );
+            }
+            return entry;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The snapshots for one class.  Values only hold annotation data
+     * (strings and numbers), never the class or its methods, so they
+     * do not keep the weak key alive.
+     */
+    private static class ClassEntry
+    {
+        volatile HintOptions classOptions;
+        final ConcurrentMap<String, HintOptions> methodOptions =
+            new ConcurrentHashMap<String, HintOptions>();
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    /** Marks methods that could not be found. */
+    private static final HintOptions NO_METHOD = new HintOptions();
+
+    private static final Map<Class<?>, ClassEntry> entries =
+        new WeakHashMap<Class<?>, ClassEntry>();
+    private static final
+        Map<ClassLoader, Map<String, WeakReference<Class<?>>>>
+        classesByLoader =
+        new WeakHashMap<ClassLoader, Map<String, WeakReference<Class<?>>>>();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+}
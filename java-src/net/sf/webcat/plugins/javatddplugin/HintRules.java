@@ -0,0 +1,284 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//-------------------------------------------------------------------------
+/**
+ *  The table of regular-expression rules used to turn test failure
+ *  messages into hints.  All patterns are compiled once, when the class
+ *  is loaded, and each engine instance reuses its matchers from one
+ *  failure to the next.  A single call to
+ *  {@link #evaluate(String,int,int,boolean)} applies every rule that is
+ *  relevant to a message.  The number of times each rule has matched is
+ *  counted across all engine instances in the JVM.
+ *  <p>
+ *  An engine instance is not thread-safe; each formatter uses its own.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class HintRules
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a new engine.
+     */
+    public HintRules()
+    {
+        missingMethod = MISSING_METHOD.matcher("");
+        sourceLocation = SOURCE_LOCATION.matcher("");
+        assertionError = ASSERTION_ERROR.matcher("");
+        expectedOutput = new Matcher[EXPECTED_OUTPUT.length];
+        for (int i = 0; i < EXPECTED_OUTPUT.length; i++)
+        {
+            if (EXPECTED_OUTPUT[i] != null)
+            {
+                expectedOutput[i] = EXPECTED_OUTPUT[i].matcher("");
+            }
+        }
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * The rules in this table.
+     */
+    public static enum Rule
+    {
+        /** JUnit's "Method ... not found/should be public" errors. */
+        MISSING_METHOD,
+        /** Messages that quote the student's source location, which
+         *  are never used as explicit hints. */
+        SOURCE_LOCATION,
+        /** The "java.lang.AssertionError:" prefix, which is rewritten. */
+        ASSERTION_ERROR,
+        /** Trailing "expected ... but was ..." text, which is removed
+         *  from the hints for test case failures. */
+        EXPECTED_OUTPUT
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The outcome of applying the rules to one message.
+     */
+    public static class Match
+    {
+        /** True if the message is a mandatory JUnit missing/non-public
+         *  method error. */
+        public boolean missingMethod;
+        /** The explicit hint extracted from the message, or null if the
+         *  message does not provide one. */
+        public String  explicitHint;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Apply all relevant rules to a failure message.
+     * @param message the failure message (may be null)
+     * @param code    the failure's error code
+     * @param level   the failure's error level
+     * @param hinted  true if a hint has already been chosen for this
+     *                failure, in which case no explicit hint is extracted
+     * @return the outcome
+     */
+    public Match evaluate(String message, int code, int level, boolean hinted)
+    {
+        Match result = new Match();
+        if (message == null)
+        {
+            return result;
+        }
+
+        if (code == 13)
+        {
+            result.missingMethod = matches(
+                Rule.MISSING_METHOD, missingMethod.reset(message).matches());
+            hinted = hinted || result.missingMethod;
+        }
+        else if (code == 10)
+        {
+            // The message itself is always used as the hint
+            hinted = true;
+        }
+
+        if (!hinted
+            && (code == 29
+                || code == 30
+                || level == 2
+                || message.regionMatches(true, 0, HINT_MARKER, 0,
+                    HINT_MARKER.length()))
+            && !matches(
+                Rule.SOURCE_LOCATION, sourceLocation.reset(message).find()))
+        {
+            String hint = message;
+            assertionError.reset(hint);
+            if (matches(Rule.ASSERTION_ERROR, assertionError.lookingAt()))
+            {
+                hint = assertionError.replaceFirst("assertion failed:");
+            }
+
+            // remove trailing "expected" fragments
+            if (level == 2
+                && code >= 0
+                && code < expectedOutput.length
+                && expectedOutput[code] != null)
+            {
+                Matcher m = expectedOutput[code].reset(hint);
+                if (matches(Rule.EXPECTED_OUTPUT, m.find()))
+                {
+                    hint = m.replaceFirst("");
+                }
+            }
+
+            if (!"null".equals(hint) && !"".equals(hint))
+            {
+                result.explicitHint = hint;
+            }
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of times a rule has matched, across all engines
+     * in this JVM.
+     * @param rule the rule
+     * @return the number of matches
+     */
+    public static long hits(Rule rule)
+    {
+        return hits.get(rule.ordinal());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get a printable summary of the hit counts for all rules.
+     * @return the summary
+     */
+    public static String statistics()
+    {
+        StringBuffer sb = new StringBuffer();
+        for (Rule rule : Rule.values())
+        {
+            if (sb.length() > 0)
+            {
+                sb.append(", ");
+            }
+            sb.append(rule);
+            sb.append('=');
+            sb.append(hits(rule));
+        }
+        return sb.toString();
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private static boolean matches(Rule rule, boolean matched)
+    {
+        if (matched)
+        {
+            hits.incrementAndGet(rule.ordinal());
+        }
+        return matched;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private static final String HINT_MARKER = "hint:";
+
+    private static final Pattern MISSING_METHOD =
+        Pattern.compile("Method .* (not found|should be public)");
+
+    private static final Pattern SOURCE_LOCATION =
+        Pattern.compile("In file .*( which reads|on this line):");
+
+    private static final Pattern ASSERTION_ERROR =
+        Pattern.compile("^java.lang.AssertionError:");
+
+    /** Used for assertEquals/False/True and custom asserts. */
+    private static final Pattern EXPECTED_OR_COMPARED = Pattern.compile(
+        "(?is)(((\\s*expected:.*but was:.*)"
+        + "|(<.*> was the same as:\\s*<.*>)"
+        + "|(<.*> matches regex:\\s*<.*>)"
+        + "|(<.*> does not match regex:\\s*<.*>)"
+        + "|(<.*> contains:)"
+        + "|(<.*> does not contain:\\s*<.*>)"
+        + "|(<.*> contains regex:\\s*<.*>)"
+        + "|(<.*> contains regexes:)"
+        + "|(<.*> does not contain regex:\\s*<.*>)"
+        + "|(: (expected|actual) array was null)"
+        + "|(array lengths differed)"
+        + "|(arrays firsts differed)).*)$",
+        Pattern.DOTALL);
+
+    /** Trailing "expected" fragments to remove, indexed by error code. */
+    private static final Pattern[] EXPECTED_OUTPUT = {
+        null,                               // 0: not used
+        null,                               // 1: not used
+        Pattern.compile("(?is)\\s*"
+            + "(\\(after normalizing strings\\)\\s*)?"
+            + "expected:.*but was:.*$", Pattern.DOTALL),// 2: CompFailure
+        EXPECTED_OR_COMPARED,               // 3: assertEquals (including
+                                            //    JUnit 4.x array version)
+        EXPECTED_OR_COMPARED,               // 4: assertFalse
+        null,                               // 5: assertNotNull
+        Pattern.compile("(?i)\\s*expected not same$",
+            Pattern.DOTALL),                // 6: assertNotSame
+        null,                               // 7: assertNull
+        Pattern.compile("(?is)\\s*expected same:.*was not:.*$",
+            Pattern.DOTALL),                // 8: assertSame
+        EXPECTED_OR_COMPARED,               // 9: assertTrue
+        null,                               // 10: not used
+        EXPECTED_OR_COMPARED,               // 11: custom assert helper
+                                            //     method in test case,
+                                            //     so still apply these
+        null,                               // 12: not used
+        null                                // 13: not used
+    };
+
+    private static final AtomicLongArray hits =
+        new AtomicLongArray(Rule.values().length);
+
+    private final Matcher   missingMethod;
+    private final Matcher   sourceLocation;
+    private final Matcher   assertionError;
+    private final Matcher[] expectedOutput;
+}
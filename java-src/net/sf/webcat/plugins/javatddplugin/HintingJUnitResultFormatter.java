@@ -25,7 +25,6 @@
 
 package net.sf.webcat.plugins.javatddplugin;
 
-import java.util.regex.Pattern;
 import junit.framework.Test;
 import org.apache.tools.ant.taskdefs.optional.junit.*;
 import org.apache.tools.ant.util.*;
@@ -227,14 +226,12 @@ public class HintingJUnitResultFormatter
             // Look for mandatory JUnit errors
             //     Method "fName" not found
             //     Method "fName" should be public
-            if (result.code == 13 && result.message != null)
+            HintRules.Match match = hintRules.evaluate(
+                result.message, result.code, result.level, hint != null);
+            if (match.missingMethod)
             {
-                if (result.message.matches(
-                    "Method .* (not found|should be public)"))
-                {
-                    mandatory = 2;
-                    hint = result.message;
-                }
+                mandatory = 2;
+                hint = result.message;
             }
             else if (result.code == 10)
             {
@@ -243,50 +240,14 @@ public class HintingJUnitResultFormatter
             }
 
 
-            // Look for explicit hint first
-            if (hint == null
-                && result.message != null
-                && (result.code == 29
-                    || result.code == 30
-                    || result.level == 2
-                    || result.message.toLowerCase().startsWith("hint:"))
-                && !Pattern.compile("In file .*( which reads|on this line):")
-                    .matcher(result.message).find()
-                /* && result.message.matches(HINT_MARKER_PLUS_ALL_RE) */)
+            // Look for explicit hint first, with any trailing "expected"
+            // fragments already removed
+            if (match.explicitHint != null)
             {
-                hint = result.message.replaceFirst(HINT_MARKER_RE, "");
-                hint = result.message.replaceFirst(
-                    "^java.lang.AssertionError:", "assertion failed:");
-
-                // remove trailing "expected" fragments
-//                output.write(
-//                     "explicit hint, before trimming: " + hint + "\n");
-//                output.write(
-//                    "    hint level: " + result.level + "\n");
-//                output.write(
-//                    "    hint code: " + result.code + "\n");
-                if (result.level == 2)
-                {
-                    Pattern regex = expectedOutputRegExps[result.code];
-                    if (regex != null)
-                    {
-                        hint = regex.matcher(hint).replaceFirst("");
-                    }
-                }
-
-                if ("null".equals(hint) || "".equals(hint))
-                {
-                    hint = null;
-                }
-                else
-                {
-                    // Add the required prefix, if any, by pushing the message
-                    // back through the options object
-                    describeOptions.setHint(hint);
-                    hint = describeOptions.fullHintText();
-                }
-//                output.write(
-//                     "explicit hint, after trimming: " + hint + "\n");
+                // Add the required prefix, if any, by pushing the message
+                // back through the options object
+                describeOptions.setHint(match.explicitHint);
+                hint = describeOptions.fullHintText();
             }
 
             // if none, generate default hint
@@ -324,6 +285,9 @@ public class HintingJUnitResultFormatter
             if (hint != null)
             {
                 result.message = hint;
+                result.hint = hint;
+                result.hintMandatory = mandatory;
+                result.hintTrace = traceMsg;
             }
 
             // Generate output for hint feedback
@@ -511,81 +475,7 @@ public class HintingJUnitResultFormatter
 
     //~ Instance/static variables .............................................
 
-    private static final String HINT_MARKER_RE = "^(?i)hint:\\s*";
-
-    private static final Pattern[] expectedOutputRegExps = {
-        null,                               // 0: not used
-        null,                               // 1: not used
-        Pattern.compile("(?is)\\s*"
-            + "(\\(after normalizing strings\\)\\s*)?"
-            + "expected:.*but was:.*$", Pattern.DOTALL),// 2: CompFailure
-        Pattern.compile("(?is)(((\\s*expected:.*but was:.*)"
-            + "|(<.*> was the same as:\\s*<.*>)"
-            + "|(<.*> matches regex:\\s*<.*>)"
-            + "|(<.*> does not match regex:\\s*<.*>)"
-            + "|(<.*> contains:)"
-            + "|(<.*> does not contain:\\s*<.*>)"
-            + "|(<.*> contains regex:\\s*<.*>)"
-            + "|(<.*> contains regexes:)"
-            + "|(<.*> does not contain regex:\\s*<.*>)"
-            + "|(: (expected|actual) array was null)"
-            +"|(array lengths differed)"
-            +"|(arrays firsts differed)).*)$",
-            Pattern.DOTALL
-            ),// 3: assertEquals (including JUnit 4.x array version
-        Pattern.compile("(?is)(((\\s*expected:.*but was:.*)"
-            + "|(<.*> was the same as:\\s*<.*>)"
-            + "|(<.*> matches regex:\\s*<.*>)"
-            + "|(<.*> does not match regex:\\s*<.*>)"
-            + "|(<.*> contains:)"
-            + "|(<.*> does not contain:\\s*<.*>)"
-            + "|(<.*> contains regex:\\s*<.*>)"
-            + "|(<.*> contains regexes:)"
-            + "|(<.*> does not contain regex:\\s*<.*>)"
-            + "|(: (expected|actual) array was null)"
-            +"|(array lengths differed)"
-            +"|(arrays firsts differed)).*)$",
-            Pattern.DOTALL
-            ),// 4: assertFalse
-        null,                               // 5: assertNotNull
-        Pattern.compile("(?i)\\s*expected not same$",
-            Pattern.DOTALL),                // 6: assertNotSame
-        null,                               // 7: assertNull
-        Pattern.compile("(?is)\\s*expected same:.*was not:.*$",
-            Pattern.DOTALL),                //8:assertSame
-        Pattern.compile("(?is)(((\\s*expected:.*but was:.*)"
-            + "|(<.*> was the same as:\\s*<.*>)"
-            + "|(<.*> matches regex:\\s*<.*>)"
-            + "|(<.*> does not match regex:\\s*<.*>)"
-            + "|(<.*> contains:)"
-            + "|(<.*> does not contain:\\s*<.*>)"
-            + "|(<.*> contains regex:\\s*<.*>)"
-            + "|(<.*> contains regexes:)"
-            + "|(<.*> does not contain regex:\\s*<.*>)"
-            + "|(: (expected|actual) array was null)"
-            +"|(array lengths differed)"
-            +"|(arrays firsts differed)).*)$",
-            Pattern.DOTALL
-            ),// 9: assertTrue
-        null,                               // 10: not used
-        Pattern.compile("(?is)(((\\s*expected:.*but was:.*)"
-            + "|(<.*> was the same as:\\s*<.*>)"
-            + "|(<.*> matches regex:\\s*<.*>)"
-            + "|(<.*> does not match regex:\\s*<.*>)"
-            + "|(<.*> contains:)"
-            + "|(<.*> does not contain:\\s*<.*>)"
-            + "|(<.*> contains regex:\\s*<.*>)"
-            + "|(<.*> contains regexes:)"
-            + "|(<.*> does not contain regex:\\s*<.*>)"
-            + "|(: (expected|actual) array was null)"
-            +"|(array lengths differed)"
-            +"|(arrays firsts differed)).*)$",
-            Pattern.DOTALL
-            ),// 11: custom assert helper method in test case, so still apply these
-        null,                               // 12: not used
-        null                                // 13: not used
-    };
-
+    private final HintRules hintRules = new HintRules();
     private TestSuiteOptions suiteOptions;
     private TestOptions testOptions;
     private TestOptions describeOptions;
@@ -0,0 +1,499 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+
+//-------------------------------------------------------------------------
+/**
+ *  An ANT task that keeps a cache of instrumented class files, keyed by
+ *  the bytes of the original class file, so that classes that were
+ *  instrumented before (in an earlier submission, or because several
+ *  students share the same helper classes) do not have to be
+ *  instrumented again.  It is used in pairs around JaCoCo's
+ *  <code>&lt;instrument&gt;</code> task:
+ *  <pre>
+ *  &lt;instrumentcache action="restore" srcdir="${raw}" destdir="${out}"
+ *         includesfile="${includesFile}" excludesfile="${excludesFile}"
+ *         .../&gt;
+ *  &lt;instrument destdir="${out}"&gt;
+ *    &lt;fileset dir="${raw}" includesfile="${includesFile}"
+ *             excludesfile="${excludesFile}"/&gt;
+ *  &lt;/instrument&gt;
+ *  &lt;instrumentcache action="save" srcdir="${raw}" destdir="${out}"
+ *         .../&gt;
+ *  </pre>
+ *  <p>
+ *  On <code>restore</code>, each class file in the source directory is
+ *  either copied as it is (if it matches <code>excludes</code>), copied
+ *  from the cache (if the same bytes were instrumented before), or
+ *  listed in the includes file for instrumentation.  If nothing is
+ *  left to instrument, the excludes file excludes everything.  On
+ *  <code>save</code>, the newly instrumented classes are added to the
+ *  cache.  The key also covers the contents of the
+ *  <code>instrumenter</code> file (the JaCoCo jar), so a new JaCoCo
+ *  version starts over.
+ *  </p><p>
+ *  When <code>enabled</code> is false, restore still copies the
+ *  excluded classes and lists the others, and save does nothing.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class InstrumentCache
+    extends Task
+{
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Set the action to perform.
+     * @param action "restore" (before instrumenting) or "save" (after)
+     */
+    public void setAction(String action)
+    {
+        this.action = action;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set whether the cache is used at all.
+     * @param enabled true to use the cache
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the directory holding the cache.
+     * @param dir the cache directory
+     */
+    public void setDir(File dir)
+    {
+        this.dir = dir;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the directory containing the original class files.
+     * @param srcdir the directory
+     */
+    public void setSrcdir(File srcdir)
+    {
+        this.srcdir = srcdir;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the directory the instrumented class files go in.
+     * @param destdir the directory
+     */
+    public void setDestdir(File destdir)
+    {
+        this.destdir = destdir;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the patterns for class files that are copied without being
+     * instrumented.
+     * @param excludes comma- or space-separated patterns
+     */
+    public void setExcludes(String excludes)
+    {
+        this.excludes = excludes;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set whether patterns are case-sensitive.
+     * @param caseSensitive true if they are
+     */
+    public void setCaseSensitive(boolean caseSensitive)
+    {
+        this.caseSensitive = caseSensitive;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the file whose contents identify the instrumenter, such as
+     * the JaCoCo jar.
+     * @param instrumenter the file
+     */
+    public void setInstrumenter(File instrumenter)
+    {
+        this.instrumenter = instrumenter;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the file to write the class files to instrument to.
+     * @param includesFile the file
+     */
+    public void setIncludesFile(File includesFile)
+    {
+        this.includesFile = includesFile;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the file to write "exclude everything" to, when there is
+     * nothing to instrument.
+     * @param excludesFile the file
+     */
+    public void setExcludesFile(File excludesFile)
+    {
+        this.excludesFile = excludesFile;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the most instrumented classes to keep.
+     * @param maxEntries the limit
+     */
+    public void setMaxEntries(int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+    }
+
+
+    // ----------------------------------------------------------
+    public void execute()
+        throws BuildException
+    {
+        if (srcdir == null || destdir == null)
+        {
+            throw new BuildException(
+                "srcdir and destdir are required", getLocation());
+        }
+        if (enabled && dir == null)
+        {
+            throw new BuildException(
+                "dir is required when enabled", getLocation());
+        }
+        if ("restore".equals(action))
+        {
+            restore();
+        }
+        else if ("save".equals(action))
+        {
+            save();
+        }
+        else
+        {
+            throw new BuildException(
+                "action must be restore or save", getLocation());
+        }
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private void restore()
+    {
+        // Class files to instrument, with their keys (or null, when the
+        // cache is not used)
+        Map<String, String> pending = new TreeMap<String, String>();
+        getProject().addReference(referenceName(), pending);
+        destdir.mkdirs();
+
+        String[] classes = scan(new String[] { "**/*.class" });
+        Set<String> excluded = new HashSet<String>();
+        if (excludes != null)
+        {
+            excluded.addAll(
+                Arrays.asList(scan(excludes.trim().split("[,\\s]+"))));
+        }
+        File entries = new File(dir, ENTRIES);
+        int reused = 0;
+        try
+        {
+            String group = enabled ? group() : null;
+            for (String file : classes)
+            {
+                File source = new File(srcdir, file);
+                File target = new File(destdir, file);
+                if (excluded.contains(file))
+                {
+                    target.getParentFile().mkdirs();
+                    CompileCache.copyFile(source, target);
+                    continue;
+                }
+                if (group == null)
+                {
+                    pending.put(file, null);
+                    continue;
+                }
+
+                String key = CompileCache.hex(
+                    digest(group, CompileCache.fileDigest(source)));
+                File entry = new File(entries, key);
+                if (entry.exists())
+                {
+                    target.getParentFile().mkdirs();
+                    CompileCache.copyFile(entry, target);
+                    entry.setLastModified(System.currentTimeMillis());
+                    reused++;
+                }
+                else
+                {
+                    pending.put(file, key);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            log("Cannot use the instrumentation cache: " + e,
+                Project.MSG_WARN);
+            for (String file : classes)
+            {
+                if (!excluded.contains(file))
+                {
+                    pending.put(file, null);
+                }
+            }
+        }
+        if (enabled)
+        {
+            log("Reusing " + reused + " of " + (reused + pending.size())
+                + " instrumented classes", Project.MSG_VERBOSE);
+        }
+
+        try
+        {
+            if (includesFile != null)
+            {
+                CompileCache.writeFile(includesFile,
+                    CompileCache.lines(pending.keySet()));
+            }
+            if (excludesFile != null)
+            {
+                CompileCache.writeFile(
+                    excludesFile, pending.isEmpty() ? "**/*" : "");
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BuildException(e, getLocation());
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void save()
+    {
+        Object reference = getProject().getReference(referenceName());
+        if (!(reference instanceof Map))
+        {
+            throw new BuildException("save without a restore for "
+                + destdir, getLocation());
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> pending = (Map<String, String>)reference;
+
+        try
+        {
+            if (!enabled)
+            {
+                return;
+            }
+            File entries = new File(dir, ENTRIES);
+            entries.mkdirs();
+            for (Map.Entry<String, String> file : pending.entrySet())
+            {
+                File instrumented = new File(destdir, file.getKey());
+                if (file.getValue() == null || !instrumented.exists())
+                {
+                    continue;
+                }
+                // Write a temporary file and rename it, so that a
+                // concurrent build never sees a partial entry
+                File temp = File.createTempFile(
+                    file.getValue(), TEMP_SUFFIX, entries);
+                CompileCache.copyFile(instrumented, temp);
+                if (!temp.renameTo(new File(entries, file.getValue())))
+                {
+                    temp.delete();
+                }
+            }
+            prune(entries);
+        }
+        catch (IOException e)
+        {
+            log("Cannot save to the instrumentation cache: " + e,
+                Project.MSG_WARN);
+        }
+        finally
+        {
+            if (includesFile != null)
+            {
+                includesFile.delete();
+            }
+            if (excludesFile != null)
+            {
+                excludesFile.delete();
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private String group()
+        throws IOException
+    {
+        return CompileCache.hex(digest("instrument",
+            instrumenter == null
+                ? new byte[0]
+                : CompileCache.fileDigest(instrumenter)));
+    }
+
+
+    // ----------------------------------------------------------
+    private static byte[] digest(String prefix, byte[] bytes)
+    {
+        MessageDigest digest = CompileCache.sha1();
+        CompileCache.update(digest, prefix);
+        digest.update(bytes);
+        return digest.digest();
+    }
+
+
+    // ----------------------------------------------------------
+    private String referenceName()
+    {
+        return REFERENCE_PREFIX + destdir.getAbsolutePath();
+    }
+
+
+    // ----------------------------------------------------------
+    private String[] scan(String[] include)
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(srcdir);
+        scanner.setIncludes(include);
+        scanner.setCaseSensitive(caseSensitive);
+        scanner.scan();
+        String[] result = scanner.getIncludedFiles();
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = result[i].replace(File.separatorChar, '/');
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Remove the least recently used entries, and any abandoned
+     * temporary ones, once there are more than maxEntries.
+     */
+    private void prune(File entries)
+    {
+        File[] files = entries.listFiles();
+        if (files == null || files.length <= maxEntries)
+        {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<File> complete = new ArrayList<File>();
+        for (File file : files)
+        {
+            if (file.getName().endsWith(TEMP_SUFFIX))
+            {
+                if (now - file.lastModified() > STALE_TEMP_AGE)
+                {
+                    file.delete();
+                }
+            }
+            else
+            {
+                complete.add(file);
+            }
+        }
+        Collections.sort(complete, new Comparator<File>() {
+            public int compare(File left, File right)
+            {
+                long difference = left.lastModified() - right.lastModified();
+                return (difference < 0) ? -1 : ((difference > 0) ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < complete.size() - maxEntries; i++)
+        {
+            complete.get(i).delete();
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private String action;
+    private boolean enabled = true;
+    private File dir;
+    private File srcdir;
+    private File destdir;
+    private String excludes;
+    private boolean caseSensitive = true;
+    private File instrumenter;
+    private File includesFile;
+    private File excludesFile;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private static final String REFERENCE_PREFIX = "instrumentcache.";
+    private static final String ENTRIES     = "classes";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int DEFAULT_MAX_ENTRIES = 20000;
+    private static final long STALE_TEMP_AGE = 24 * 60 * 60 * 1000L;
+}
@@ -0,0 +1,647 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.compilers.CompilerAdapter;
+import org.apache.tools.ant.taskdefs.compilers.CompilerAdapterFactory;
+import org.apache.tools.ant.taskdefs.compilers.DefaultCompilerAdapter;
+import org.apache.tools.ant.types.Commandline;
+
+//-------------------------------------------------------------------------
+/**
+ *  An ANT compiler adapter that runs javac in-process through
+ *  <code>javax.tools</code>, and also writes the compiler's diagnostics
+ *  to a file as structured records.  It is declared with a
+ *  <code>&lt;typedef&gt;</code> and nested inside a
+ *  <code>&lt;javac&gt;</code> task:
+ *  <pre>
+ *  &lt;javac srcdir="..." destdir="..." ...&gt;
+ *    &lt;javaxtoolscompiler enabled="${useInProcessCompiler}"
+ *        diagnostics="${resultDir}/student-diagnostics.txt"/&gt;
+ *  &lt;/javac&gt;
+ *  </pre>
+ *  <p>
+ *  The compiler and its file managers are kept in static fields, so
+ *  every compilation in the same VM reuses the same warm compiler, along
+ *  with the file manager's index of the jars on the class path.  Class
+ *  files are collected in memory and only written to the destination
+ *  directory once compilation is over.
+ *  </p><p>
+ *  Messages are logged in the same layout javac itself uses (file and
+ *  line, message, source line, caret, and the error and warning counts),
+ *  so the build log reads the same either way.  Types in messages are
+ *  shown by their simple names wherever that is not ambiguous, as javac
+ *  does, but javac's "where" clauses describing type variables are not
+ *  reproduced.  The diagnostics file is tab-separated, with escaped
+ *  tabs, newlines, and backslashes.  Its first line names the columns:
+ *  kind, file, line, column, code, and message.
+ *  </p><p>
+ *  When <code>enabled</code> is false, or when no system compiler is
+ *  available, the compilation is handed to ANT's own compiler adapter
+ *  for the <code>&lt;javac&gt;</code> task's <code>compiler</code>
+ *  setting, and no diagnostics file is written.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class JavaxToolsCompilerAdapter
+    extends DefaultCompilerAdapter
+{
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Set whether to compile through javax.tools at all.
+     * @param enabled true to compile in-process through javax.tools
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the file to write the structured diagnostics to.
+     * @param diagnostics the diagnostics file
+     */
+    public void setDiagnostics(File diagnostics)
+    {
+        this.diagnostics = diagnostics;
+    }
+
+
+    // ----------------------------------------------------------
+    public boolean execute()
+        throws BuildException
+    {
+        JavaCompiler compiler = null;
+        if (enabled && destDir != null)
+        {
+            compiler = systemCompiler();
+        }
+        if (compiler == null)
+        {
+            CompilerAdapter fallback = CompilerAdapterFactory.getCompiler(
+                attributes.getCompiler(), attributes);
+            fallback.setJavac(attributes);
+            return fallback.execute();
+        }
+
+        attributes.log("Using javax.tools compiler", Project.MSG_VERBOSE);
+        String[] options =
+            setupModernJavacCommandlineSwitches(new Commandline())
+            .getArguments();
+        attributes.log("Compilation options: " + Arrays.asList(options),
+            Project.MSG_VERBOSE);
+
+        synchronized (LOCK)
+        {
+            try
+            {
+                return compile(compiler, Arrays.asList(options));
+            }
+            catch (IOException e)
+            {
+                throw new BuildException(
+                    "Error running javax.tools compiler", e, location);
+            }
+        }
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private boolean compile(JavaCompiler compiler, List<String> options)
+        throws IOException
+    {
+        StandardJavaFileManager standard = fileManager(compiler);
+        MemoryFileManager fileManager = new MemoryFileManager(standard);
+        DiagnosticCollector<JavaFileObject> collector =
+            new DiagnosticCollector<JavaFileObject>();
+        Iterable<? extends JavaFileObject> sources =
+            standard.getJavaFileObjects(compileList);
+
+        boolean succeeded;
+        try
+        {
+            succeeded = compiler.getTask(null, fileManager, collector,
+                options, null, sources).call();
+        }
+        catch (RuntimeException e)
+        {
+            throw new BuildException(
+                "Error running javax.tools compiler", e, location);
+        }
+        finally
+        {
+            standard.flush();
+        }
+
+        fileManager.writeClasses(destDir);
+        return report(collector.getDiagnostics()) && succeeded;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Log the diagnostics the way javac prints them, and write them to
+     * the diagnostics file, if there is one.
+     * @param list the diagnostics, in the order they were reported
+     * @return true if there were no errors
+     */
+    private boolean report(List<Diagnostic<? extends JavaFileObject>> list)
+        throws IOException
+    {
+        PrintWriter out = null;
+        if (diagnostics != null)
+        {
+            out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(diagnostics), "UTF-8"));
+            out.print("kind\tfile\tline\tcolumn\tcode\tmessage\n");
+        }
+
+        int errors = 0;
+        int warnings = 0;
+        Map<JavaFileObject, String> contents =
+            new HashMap<JavaFileObject, String>();
+        try
+        {
+            for (Diagnostic<? extends JavaFileObject> diagnostic : list)
+            {
+                String message = simpleNames(diagnostic.getMessage(null));
+                JavaFileObject source = diagnostic.getSource();
+                switch (diagnostic.getKind())
+                {
+                    case ERROR:
+                        errors++;
+                        break;
+                    case WARNING:
+                    case MANDATORY_WARNING:
+                        warnings++;
+                        String category = lintCategory(diagnostic.getCode());
+                        if (category != null)
+                        {
+                            message = "[" + category + "] " + message;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                log(diagnostic, source, message, contents);
+
+                if (out != null)
+                {
+                    out.print(diagnostic.getKind());
+                    out.print('\t');
+                    out.print(tsv(source == null ? null : source.getName()));
+                    out.print('\t');
+                    out.print(diagnostic.getLineNumber());
+                    out.print('\t');
+                    out.print(diagnostic.getColumnNumber());
+                    out.print('\t');
+                    out.print(tsv(diagnostic.getCode()));
+                    out.print('\t');
+                    out.print(tsv(message));
+                    out.print('\n');
+                }
+            }
+        }
+        finally
+        {
+            if (out != null)
+            {
+                out.close();
+            }
+        }
+
+        if (errors > 0)
+        {
+            attributes.log(errors + (errors == 1 ? " error" : " errors"),
+                Project.MSG_WARN);
+        }
+        if (warnings > 0)
+        {
+            attributes.log(
+                warnings + (warnings == 1 ? " warning" : " warnings"),
+                Project.MSG_WARN);
+        }
+        return errors == 0;
+    }
+
+
+    // ----------------------------------------------------------
+    private void log(
+        Diagnostic<? extends JavaFileObject> diagnostic,
+        JavaFileObject source,
+        String message,
+        Map<JavaFileObject, String> contents)
+    {
+        String[] lines = message.split("\n", -1);
+        StringBuilder first = new StringBuilder();
+        String kind = prefix(diagnostic.getKind());
+        if (source != null && diagnostic.getLineNumber() > 0)
+        {
+            first.append(source.getName());
+            first.append(':');
+            first.append(diagnostic.getLineNumber());
+            first.append(": ");
+        }
+        else if (diagnostic.getKind() == Diagnostic.Kind.NOTE)
+        {
+            kind = "Note: ";
+        }
+        first.append(kind);
+        first.append(lines[0]);
+        attributes.log(first.toString(), Project.MSG_WARN);
+
+        // Like javac, show the source line right after the first line
+        // of the message, with a caret under the position
+        long position = diagnostic.getPosition();
+        if (source != null && position != Diagnostic.NOPOS)
+        {
+            String text = contents.get(source);
+            if (text == null)
+            {
+                try
+                {
+                    text = source.getCharContent(true).toString();
+                }
+                catch (IOException e)
+                {
+                    text = "";
+                }
+                contents.put(source, text);
+            }
+            if (position <= text.length())
+            {
+                int pos = (int)position;
+                int start = pos;
+                while (start > 0
+                    && text.charAt(start - 1) != '\n'
+                    && text.charAt(start - 1) != '\r')
+                {
+                    start--;
+                }
+                int end = pos;
+                while (end < text.length()
+                    && text.charAt(end) != '\n'
+                    && text.charAt(end) != '\r')
+                {
+                    end++;
+                }
+                StringBuilder caret = new StringBuilder();
+                for (int i = start; i < pos; i++)
+                {
+                    caret.append(text.charAt(i) == '\t' ? '\t' : ' ');
+                }
+                caret.append('^');
+                attributes.log(text.substring(start, end), Project.MSG_WARN);
+                attributes.log(caret.toString(), Project.MSG_WARN);
+            }
+        }
+
+        for (int i = 1; i < lines.length; i++)
+        {
+            attributes.log(lines[i], Project.MSG_WARN);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static String prefix(Diagnostic.Kind kind)
+    {
+        switch (kind)
+        {
+            case ERROR:
+                return "error: ";
+            case WARNING:
+            case MANDATORY_WARNING:
+                return "warning: ";
+            case NOTE:
+                return "note: ";
+            default:
+                return "";
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Find the -Xlint category javac names in front of a warning.  The
+     * category is not part of the javax.tools API, so it is looked up by
+     * the diagnostic's code, for the common categories only.
+     * @param code the diagnostic's code
+     * @return the category, or null if it is not known
+     */
+    private static String lintCategory(String code)
+    {
+        if (code != null)
+        {
+            for (Map.Entry<String, String> entry : LINT_CATEGORIES.entrySet())
+            {
+                if (code.startsWith(entry.getKey()))
+                {
+                    return entry.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Replace fully qualified class names in a message with their simple
+     * names, except where two different classes in the same message
+     * share a simple name.
+     * @param message the message
+     * @return the message, with simple names
+     */
+    private static String simpleNames(String message)
+    {
+        if (message == null)
+        {
+            return "";
+        }
+        Map<String, Set<String>> qualified =
+            new HashMap<String, Set<String>>();
+        Matcher matcher = QUALIFIED_NAME.matcher(message);
+        while (matcher.find())
+        {
+            Set<String> names = qualified.get(matcher.group(2));
+            if (names == null)
+            {
+                names = new HashSet<String>();
+                qualified.put(matcher.group(2), names);
+            }
+            names.add(matcher.group());
+        }
+        if (qualified.isEmpty())
+        {
+            return message;
+        }
+
+        StringBuffer result = new StringBuffer(message.length());
+        matcher.reset();
+        while (matcher.find())
+        {
+            String replacement = matcher.group();
+            if (qualified.get(matcher.group(2)).size() == 1)
+            {
+                replacement = matcher.group(2);
+            }
+            matcher.appendReplacement(
+                result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    private static String tsv(String value)
+    {
+        if (value == null)
+        {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t")
+            .replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+
+    // ----------------------------------------------------------
+    private static synchronized JavaCompiler systemCompiler()
+    {
+        if (!compilerLookedUp)
+        {
+            compilerLookedUp = true;
+            try
+            {
+                systemCompiler = ToolProvider.getSystemJavaCompiler();
+            }
+            catch (RuntimeException e)
+            {
+                systemCompiler = null;
+            }
+        }
+        return systemCompiler;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the standard file manager for this task's source encoding.
+     * File managers are kept per encoding, since the encoding sticks to
+     * a file manager once it has been given.  The locations set by the
+     * previous compilation are cleared.
+     */
+    private StandardJavaFileManager fileManager(JavaCompiler compiler)
+        throws IOException
+    {
+        String key = (encoding == null) ? "" : encoding;
+        StandardJavaFileManager result = FILE_MANAGERS.get(key);
+        if (result == null)
+        {
+            result = compiler.getStandardFileManager(null, null,
+                encoding == null ? null : Charset.forName(encoding));
+            FILE_MANAGERS.put(key, result);
+        }
+        for (StandardLocation loc : RESET_LOCATIONS)
+        {
+            result.setLocation(loc, null);
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * A file manager that keeps the class files the compiler produces
+     * in memory.
+     */
+    private static class MemoryFileManager
+        extends ForwardingJavaFileManager<StandardJavaFileManager>
+    {
+        // ----------------------------------------------------------
+        public MemoryFileManager(StandardJavaFileManager fileManager)
+        {
+            super(fileManager);
+        }
+
+
+        // ----------------------------------------------------------
+        public JavaFileObject getJavaFileForOutput(
+            Location location,
+            String className,
+            JavaFileObject.Kind kind,
+            FileObject sibling)
+            throws IOException
+        {
+            if (location != StandardLocation.CLASS_OUTPUT
+                || kind != JavaFileObject.Kind.CLASS)
+            {
+                return super.getJavaFileForOutput(
+                    location, className, kind, sibling);
+            }
+            ClassFile result = new ClassFile(className);
+            classes.put(className, result);
+            return result;
+        }
+
+
+        // ----------------------------------------------------------
+        public void writeClasses(File destDir)
+            throws IOException
+        {
+            for (ClassFile classFile : classes.values())
+            {
+                File file = new File(destDir,
+                    classFile.className.replace('.', File.separatorChar)
+                    + JavaFileObject.Kind.CLASS.extension);
+                file.getParentFile().mkdirs();
+                OutputStream out = new FileOutputStream(file);
+                try
+                {
+                    classFile.bytes.writeTo(out);
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+            classes.clear();
+        }
+
+
+        private Map<String, ClassFile> classes =
+            new LinkedHashMap<String, ClassFile>();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * A class file held in memory.
+     */
+    private static class ClassFile
+        extends SimpleJavaFileObject
+    {
+        // ----------------------------------------------------------
+        public ClassFile(String className)
+        {
+            super(URI.create("mem:///" + className.replace('.', '/')
+                + Kind.CLASS.extension), Kind.CLASS);
+            this.className = className;
+        }
+
+
+        // ----------------------------------------------------------
+        public OutputStream openOutputStream()
+        {
+            bytes.reset();
+            return bytes;
+        }
+
+
+        private String className;
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private boolean enabled = true;
+    private File    diagnostics;
+
+    private static final Object LOCK = new Object();
+    private static boolean compilerLookedUp;
+    private static JavaCompiler systemCompiler;
+    private static final Map<String, StandardJavaFileManager> FILE_MANAGERS =
+        new HashMap<String, StandardJavaFileManager>();
+    private static final StandardLocation[] RESET_LOCATIONS = {
+        StandardLocation.CLASS_OUTPUT,
+        StandardLocation.SOURCE_PATH,
+        StandardLocation.CLASS_PATH,
+        StandardLocation.ANNOTATION_PROCESSOR_PATH
+    };
+    private static final Map<String, String> LINT_CATEGORIES =
+        new LinkedHashMap<String, String>();
+    static
+    {
+        // Longer codes come before the codes they start with
+        LINT_CATEGORIES.put(
+            "compiler.warn.has.been.deprecated.for.removal", "removal");
+        LINT_CATEGORIES.put("compiler.warn.has.been.deprecated", "deprecation");
+        LINT_CATEGORIES.put("compiler.warn.unchecked.", "unchecked");
+        LINT_CATEGORIES.put("compiler.warn.prob.found.req", "unchecked");
+        LINT_CATEGORIES.put("compiler.warn.raw.class.use", "rawtypes");
+        LINT_CATEGORIES.put("compiler.warn.missing.SVUID", "serial");
+        LINT_CATEGORIES.put(
+            "compiler.warn.possible.fall-through.into.case", "fallthrough");
+        LINT_CATEGORIES.put("compiler.warn.redundant.cast", "cast");
+        LINT_CATEGORIES.put("compiler.warn.div.zero", "divzero");
+        LINT_CATEGORIES.put("compiler.warn.empty.if", "empty");
+        LINT_CATEGORIES.put("compiler.warn.finally.cannot.complete", "finally");
+        LINT_CATEGORIES.put(
+            "compiler.warn.static.not.qualified.by.type", "static");
+        LINT_CATEGORIES.put("compiler.warn.source.no.bootclasspath", "options");
+        LINT_CATEGORIES.put("compiler.warn.option.obsolete", "options");
+    }
+    private static final Pattern QUALIFIED_NAME = Pattern.compile(
+        "\\b((?:[a-z_][A-Za-z0-9_]*\\.)+)([A-Z][A-Za-z0-9_$]*)");
+}
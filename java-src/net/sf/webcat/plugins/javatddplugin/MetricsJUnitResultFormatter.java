@@ -0,0 +1,194 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitResultFormatter;
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitTest;
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitVersionHelper;
+import org.apache.tools.ant.util.FileUtils;
+
+//-------------------------------------------------------------------------
+/**
+ *  A custom formatter for the ANT junit task that records how long each
+ *  test takes, and the wall clock time, CPU time, and garbage collection
+ *  time of each test suite, along with the peak RSS of the test VM.
+ *  The results are written as Prometheus text format samples, which
+ *  {@link MetricsListener} gathers into the submission's metrics file.
+ *  <p>
+ *  When the suite runs in a {@link TestRunnerDaemon} instead of a forked
+ *  VM, the peak RSS is left out, since it is the daemon's peak over all
+ *  of its runs, and the CPU time is labelled <code>runner="daemon"</code>,
+ *  since it also counts the daemon's own threads.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class MetricsJUnitResultFormatter
+    implements JUnitResultFormatter
+{
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /** {@inheritDoc}. */
+    public void setOutput(OutputStream out)
+    {
+        this.out = out;
+        output = new PrintWriter(out);
+    }
+
+
+    // ----------------------------------------------------------
+    /** {@inheritDoc}. */
+    public void setSystemOutput(String out)
+    {
+        // Not needed
+    }
+
+
+    // ----------------------------------------------------------
+    /** {@inheritDoc}. */
+    public void setSystemError(String err)
+    {
+        // Not needed
+    }
+
+
+    // ----------------------------------------------------------
+    /** {@inheritDoc}. */
+    public void startTestSuite(JUnitTest suite)
+    {
+        suiteStart = new ResourceUsage();
+        testTimes.setLength(0);
+    }
+
+
+    // ----------------------------------------------------------
+    /** {@inheritDoc}. */
+    public void endTestSuite(JUnitTest suite)
+    {
+        if (output == null)
+        {
+            return;
+        }
+        ResourceUsage end = new ResourceUsage();
+        if (suiteStart == null)
+        {
+            suiteStart = end;
+        }
+        String[] labels = { "suite", suite.getName() };
+        try
+        {
+            output.print(testTimes);
+            output.print(MetricsListener.sample("webcat_test_suite_wall_seconds",
+                labels, end.wallSecondsSince(suiteStart)));
+            boolean forked = !TestRunnerDaemon.isServing();
+            double cpu = end.cpuSecondsSince(suiteStart);
+            if (cpu >= 0)
+            {
+                output.print(MetricsListener.sample(
+                    "webcat_test_suite_cpu_seconds",
+                    forked
+                        ? labels
+                        : new String[] {
+                            "suite", suite.getName(), "runner", "daemon" },
+                    cpu));
+            }
+            output.print(MetricsListener.sample("webcat_test_suite_gc_seconds",
+                labels, end.gcSecondsSince(suiteStart)));
+            long rss = forked ? ResourceUsage.peakRssBytes() : -1;
+            if (rss >= 0)
+            {
+                output.print(MetricsListener.sample(
+                    "webcat_test_vm_peak_rss_bytes", labels, rss));
+            }
+            output.flush();
+        }
+        finally
+        {
+            if (out != System.out  &&  out != System.err)
+            {
+                FileUtils.close(out);
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /** {@inheritDoc}. */
+    public void startTest(Test test)
+    {
+        testStarts.put(test, System.nanoTime());
+    }
+
+
+    // ----------------------------------------------------------
+    /** {@inheritDoc}. */
+    public void endTest(Test test)
+    {
+        Long start = testStarts.remove(test);
+        if (start != null)
+        {
+            testTimes.append(MetricsListener.sample(
+                "webcat_test_duration_seconds",
+                new String[] {
+                    "suite", JUnitVersionHelper.getTestCaseClassName(test),
+                    "test",  JUnitVersionHelper.getTestCaseName(test)
+                },
+                (System.nanoTime() - start.longValue()) / 1e9));
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /** {@inheritDoc}. */
+    public void addFailure(Test test, AssertionFailedError t)
+    {
+        // Not needed
+    }
+
+
+    // ----------------------------------------------------------
+    /** {@inheritDoc}. */
+    public void addError(Test test, Throwable error)
+    {
+        // Not needed
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private OutputStream  out;
+    private PrintWriter   output;
+    private ResourceUsage suiteStart;
+    private StringBuilder testTimes = new StringBuilder();
+    private Map<Test, Long> testStarts = new IdentityHashMap<Test, Long>();
+}
@@ -0,0 +1,414 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.tools.ant.BuildEvent;
+import org.apache.tools.ant.BuildListener;
+import org.apache.tools.ant.Project;
+
+//-------------------------------------------------------------------------
+/**
+ *  An ANT build listener that measures each stage of the grading build
+ *  and writes the results to <code>${resultDir}/metrics.prom</code>, in
+ *  Prometheus text format, when the build finishes.  execute.pl adds it
+ *  to the ANT command line when the <code>collectMetrics</code> option is
+ *  on:
+ *  <pre>
+ *  ant -lib JavaTddPluginSupport.jar
+ *      -listener net.sf.webcat.plugins.javatddplugin.MetricsListener ...
+ *  </pre>
+ *  <p>
+ *  Every target is a stage.  A stage that runs more than once (say,
+ *  through several <code>antcall</code>s) has its times added up.  CPU
+ *  and garbage collection times are for the build VM as a whole while
+ *  the stage ran, so stages that run in parallel are each charged for
+ *  the other's work, and the peak RSS is the build VM's high-water mark
+ *  when the stage ended.  Work done in forked test VMs is reported
+ *  separately, per test suite and per test, by
+ *  {@link MetricsJUnitResultFormatter}; this
+ *  listener copies those samples from <code>instr-metrics.prom</code> and
+ *  <code>student-metrics.prom</code>, adding a <code>tests</code> label.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class MetricsListener
+    implements BuildListener
+{
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    public void buildStarted(BuildEvent event)
+    {
+        buildStart = new ResourceUsage();
+    }
+
+
+    // ----------------------------------------------------------
+    public void buildFinished(BuildEvent event)
+    {
+        Project project = event.getProject();
+        String resultDir = project.getProperty("resultDir");
+        if (resultDir == null)
+        {
+            return;
+        }
+        if (buildStart != null)
+        {
+            record("build", buildStart, new ResourceUsage());
+        }
+        try
+        {
+            write(new File(resultDir));
+        }
+        catch (IOException e)
+        {
+            project.log("Unable to write metrics: " + e, Project.MSG_WARN);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    public void targetStarted(BuildEvent event)
+    {
+        synchronized (starts)
+        {
+            starts.put(event.getTarget(), new ResourceUsage());
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    public void targetFinished(BuildEvent event)
+    {
+        finish(event.getTarget(), event.getTarget().getName());
+    }
+
+
+    // ----------------------------------------------------------
+    public void taskStarted(BuildEvent event)
+    {
+        // Not needed
+    }
+
+
+    // ----------------------------------------------------------
+    public void taskFinished(BuildEvent event)
+    {
+        // Not needed
+    }
+
+
+    // ----------------------------------------------------------
+    public void messageLogged(BuildEvent event)
+    {
+        // Not needed
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Format one Prometheus text format sample.
+     * @param name the metric name
+     * @param labels alternating label names and values
+     * @param value the sample value
+     * @return the sample, as one line ending in a newline
+     */
+    public static String sample(String name, String[] labels, double value)
+    {
+        StringBuilder result = new StringBuilder(name);
+        if (labels.length > 0)
+        {
+            result.append('{');
+            for (int i = 0; i < labels.length; i += 2)
+            {
+                if (i > 0)
+                {
+                    result.append(',');
+                }
+                result.append(labels[i]);
+                result.append("=\"");
+                String label = labels[i + 1];
+                if (label == null)
+                {
+                    label = "";
+                }
+                result.append(label.replace("\\", "\\\\")
+                    .replace("\"", "\\\"").replace("\n", "\\n"));
+                result.append('"');
+            }
+            result.append('}');
+        }
+        result.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+        {
+            result.append((long)value);
+        }
+        else
+        {
+            result.append(String.format(Locale.US, "%.6f", value));
+        }
+        result.append('\n');
+        return result.toString();
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private void finish(Object key, String stage)
+    {
+        ResourceUsage start;
+        synchronized (starts)
+        {
+            start = starts.remove(key);
+        }
+        if (start != null)
+        {
+            record(stage, start, new ResourceUsage());
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void record(String stage, ResourceUsage start, ResourceUsage end)
+    {
+        synchronized (stages)
+        {
+            Stage totals = stages.get(stage);
+            if (totals == null)
+            {
+                totals = new Stage();
+                stages.put(stage, totals);
+            }
+            totals.runs++;
+            totals.wall += end.wallSecondsSince(start);
+            double cpu = end.cpuSecondsSince(start);
+            if (cpu >= 0)
+            {
+                totals.cpu += cpu;
+            }
+            else
+            {
+                totals.cpu = -1;
+            }
+            totals.gc += end.gcSecondsSince(start);
+            totals.peakRss =
+                Math.max(totals.peakRss, ResourceUsage.peakRssBytes());
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void write(File resultDir)
+        throws IOException
+    {
+        // Samples by metric name, so that each metric's samples stay
+        // together, as the format requires
+        Map<String, List<String>> families =
+            new LinkedHashMap<String, List<String>>();
+        synchronized (stages)
+        {
+            for (Map.Entry<String, Stage> entry : stages.entrySet())
+            {
+                String[] labels = { "stage", entry.getKey() };
+                Stage stage = entry.getValue();
+                add(families, "webcat_stage_runs", labels, stage.runs);
+                add(families, "webcat_stage_wall_seconds", labels,
+                    stage.wall);
+                if (stage.cpu >= 0)
+                {
+                    add(families, "webcat_stage_cpu_seconds", labels,
+                        stage.cpu);
+                }
+                add(families, "webcat_stage_gc_seconds", labels, stage.gc);
+                if (stage.peakRss >= 0)
+                {
+                    add(families, "webcat_stage_peak_rss_bytes", labels,
+                        stage.peakRss);
+                }
+            }
+        }
+        addTestSamples(families,
+            new File(resultDir, "instr-metrics.prom"), "instructor");
+        addTestSamples(families,
+            new File(resultDir, "student-metrics.prom"), "student");
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(
+                new File(resultDir, "metrics.prom")), "UTF-8")));
+        try
+        {
+            for (Map.Entry<String, List<String>> family
+                : families.entrySet())
+            {
+                String help = HELP.get(family.getKey());
+                if (help != null)
+                {
+                    out.print("# HELP " + family.getKey() + " " + help + "\n");
+                }
+                out.print("# TYPE " + family.getKey() + " gauge\n");
+                for (String sample : family.getValue())
+                {
+                    out.print(sample);
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void add(
+        Map<String, List<String>> families,
+        String name,
+        String[] labels,
+        double value)
+    {
+        family(families, name).add(sample(name, labels, value));
+    }
+
+
+    // ----------------------------------------------------------
+    private List<String> family(
+        Map<String, List<String>> families, String name)
+    {
+        List<String> result = families.get(name);
+        if (result == null)
+        {
+            result = new ArrayList<String>();
+            families.put(name, result);
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copy the samples written by {@link MetricsJUnitResultFormatter},
+     * adding a <code>tests</code> label to each one.
+     * @param families the samples so far, by metric name
+     * @param file the concatenated formatter output
+     * @param tests the value for the <code>tests</code> label
+     * @throws IOException if the file cannot be read
+     */
+    private void addTestSamples(
+        Map<String, List<String>> families, File file, String tests)
+        throws IOException
+    {
+        if (!file.exists())
+        {
+            return;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+            new FileInputStream(file), "UTF-8"));
+        try
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                int brace = line.indexOf('{');
+                if (line.length() == 0 || line.startsWith("#") || brace < 0)
+                {
+                    continue;
+                }
+                family(families, line.substring(0, brace)).add(
+                    line.substring(0, brace + 1) + "tests=\"" + tests
+                    + "\"," + line.substring(brace + 1) + "\n");
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The measurements for one stage, added up over all its runs.
+     */
+    private static class Stage
+    {
+        private int    runs;
+        private double wall;
+        private double cpu;
+        private double gc;
+        private long   peakRss = -1;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private ResourceUsage buildStart;
+    private Map<Object, ResourceUsage> starts =
+        new IdentityHashMap<Object, ResourceUsage>();
+    private Map<String, Stage> stages = new LinkedHashMap<String, Stage>();
+
+    private static final Map<String, String> HELP =
+        new LinkedHashMap<String, String>();
+    static
+    {
+        HELP.put("webcat_stage_runs",
+            "Number of times the build stage ran");
+        HELP.put("webcat_stage_wall_seconds",
+            "Wall clock time spent in the build stage");
+        HELP.put("webcat_stage_cpu_seconds",
+            "CPU time used by the build VM while the stage ran");
+        HELP.put("webcat_stage_gc_seconds",
+            "Garbage collection time in the build VM while the stage ran");
+        HELP.put("webcat_stage_peak_rss_bytes",
+            "Peak resident set size of the build VM when the stage ended");
+        HELP.put("webcat_test_duration_seconds",
+            "Wall clock time of one test");
+        HELP.put("webcat_test_suite_wall_seconds",
+            "Wall clock time of one test suite");
+        HELP.put("webcat_test_suite_cpu_seconds",
+            "CPU time used by the test VM while the suite ran");
+        HELP.put("webcat_test_suite_gc_seconds",
+            "Garbage collection time in the test VM while the suite ran");
+        HELP.put("webcat_test_vm_peak_rss_bytes",
+            "Peak resident set size of the test VM when the suite ended");
+    }
+}
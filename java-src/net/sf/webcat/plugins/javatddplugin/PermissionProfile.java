@@ -0,0 +1,596 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//-------------------------------------------------------------------------
+/**
+ *  An in-memory aggregation of the permissions requested during a
+ *  {@link ProfilingSecurityManager} run.  Requests are grouped by code base,
+ *  permission class, permission name, and actions.  Each group records how
+ *  many times it was requested and when it was first seen.
+ *  <p>
+ *  When the run is over, the profile can be written as a merged policy
+ *  file, with one grant block per code base and the actions for each
+ *  permission name combined.  It can also be written as a tab-separated
+ *  summary, sorted with the most frequently requested permissions first.
+ *  Each file is written with a single write.
+ *  </p>
+ *  <p>
+ *  Several JVMs (for example, parallel test shards) may dump to the same
+ *  files.  The summary file is locked while it is updated, and any entries
+ *  already in it are merged into this profile before both files are
+ *  rewritten.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class PermissionProfile
+{
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * One aggregated permission request.
+     */
+    public static class Entry
+    {
+        // ----------------------------------------------------------
+        private Entry(
+            String codeBase, String permissionClass, String name,
+            String actions)
+        {
+            this.codeBase = codeBase;
+            this.permissionClass = permissionClass;
+            this.name = name;
+            this.actions = actions;
+            firstSeen = System.currentTimeMillis();
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Record another request for this permission.
+         */
+        public void hit()
+        {
+            count.incrementAndGet();
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the code base requesting the permission.
+         * @return the code base URL
+         */
+        public String codeBase()
+        {
+            return codeBase;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the name of the permission's class.
+         * @return the class name
+         */
+        public String permissionClass()
+        {
+            return permissionClass;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the permission's name.
+         * @return the name, or null
+         */
+        public String name()
+        {
+            return name;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the permission's actions.
+         * @return the actions, or null
+         */
+        public String actions()
+        {
+            return actions;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the number of times this permission was requested.
+         * @return the count
+         */
+        public long count()
+        {
+            return count.get();
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the time this permission was first requested.
+         * @return the time, in milliseconds since the epoch
+         */
+        public long firstSeen()
+        {
+            return firstSeen;
+        }
+
+
+        private final String     codeBase;
+        private final String     permissionClass;
+        private final String     name;
+        private final String     actions;
+        private long             firstSeen;
+        private final AtomicLong count = new AtomicLong();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Record one request for a permission.
+     * @param codeBase   the code base requesting the permission
+     * @param permission the permission requested
+     * @return the entry for this code base and permission, which can be
+     *         used to count later requests for the same permission
+     *         without another lookup
+     */
+    public Entry record(String codeBase, Permission permission)
+    {
+        String permissionClass = permission.getClass().getName();
+        // A null name or action list is written to the summary as an
+        // empty one, so treat them the same here, or a merged summary
+        // would add a second entry for the same permission
+        String name = emptyIfNull(permission.getName());
+        String actions = emptyIfNull(permission.getActions());
+        List<String> key = new ArrayList<String>(4);
+        key.add(codeBase);
+        key.add(permissionClass);
+        key.add(name);
+        key.add(actions);
+
+        Entry entry = entries.get(key);
+        if (entry == null)
+        {
+            entry = new Entry(codeBase, permissionClass, name, actions);
+            Entry existing = entries.putIfAbsent(key, entry);
+            if (existing != null)
+            {
+                entry = existing;
+            }
+        }
+        entry.hit();
+        return entry;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get a snapshot of all entries, ordered by code base, permission
+     * class, name, and actions.
+     * @return the entries
+     */
+    public List<Entry> entries()
+    {
+        List<Entry> result = new ArrayList<Entry>(entries.values());
+        Collections.sort(result, BY_KEY);
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Generate a policy file granting every recorded permission.  The
+     * actions requested for the same permission name are merged.
+     * @return the policy file contents
+     */
+    public String toPolicy()
+    {
+        // codeBase -> permission class -> name -> actions
+        Map<String, Map<String, Map<String, Set<String>>>> grants =
+            new TreeMap<String, Map<String, Map<String, Set<String>>>>();
+        for (Entry entry : entries())
+        {
+            Map<String, Map<String, Set<String>>> classes =
+                grants.get(entry.codeBase);
+            if (classes == null)
+            {
+                classes = new TreeMap<String, Map<String, Set<String>>>();
+                grants.put(entry.codeBase, classes);
+            }
+            Map<String, Set<String>> names =
+                classes.get(entry.permissionClass);
+            if (names == null)
+            {
+                names = new TreeMap<String, Set<String>>();
+                classes.put(entry.permissionClass, names);
+            }
+            String name = (entry.name == null) ? "" : entry.name;
+            Set<String> actions = names.get(name);
+            if (actions == null)
+            {
+                actions = new LinkedHashSet<String>();
+                names.put(name, actions);
+            }
+            if (entry.actions != null)
+            {
+                for (String action : entry.actions.split(","))
+                {
+                    action = action.trim();
+                    if (action.length() > 0)
+                    {
+                        actions.add(action);
+                    }
+                }
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Map<String, Map<String, Set<String>>>> grant
+            : grants.entrySet())
+        {
+            sb.append("grant codeBase \"");
+            sb.append(escape(grant.getKey()));
+            sb.append("\" {\n");
+            for (Map.Entry<String, Map<String, Set<String>>> permClass
+                : grant.getValue().entrySet())
+            {
+                for (Map.Entry<String, Set<String>> name
+                    : permClass.getValue().entrySet())
+                {
+                    sb.append("    permission ");
+                    sb.append(permClass.getKey());
+                    if (name.getKey().length() > 0
+                        || !name.getValue().isEmpty())
+                    {
+                        sb.append(" \"");
+                        sb.append(escape(name.getKey()));
+                        sb.append('"');
+                    }
+                    if (!name.getValue().isEmpty())
+                    {
+                        sb.append(", \"");
+                        boolean first = true;
+                        for (String action : name.getValue())
+                        {
+                            if (!first)
+                            {
+                                sb.append(',');
+                            }
+                            sb.append(action);
+                            first = false;
+                        }
+                        sb.append('"');
+                    }
+                    sb.append(";\n");
+                }
+            }
+            sb.append("};\n\n");
+        }
+        return sb.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Generate a tab-separated summary of every entry, most frequently
+     * requested first.  The first line names the columns: codeBase,
+     * permission, name, actions, count, and firstSeen (milliseconds since
+     * the epoch).
+     * @return the summary
+     */
+    public String toSummary()
+    {
+        List<Entry> list = entries();
+        Collections.sort(list, BY_COUNT);
+        StringBuilder sb = new StringBuilder();
+        sb.append("codeBase\tpermission\tname\tactions\tcount\tfirstSeen\n");
+        for (Entry entry : list)
+        {
+            sb.append(tsv(entry.codeBase));
+            sb.append('\t');
+            sb.append(tsv(entry.permissionClass));
+            sb.append('\t');
+            sb.append(tsv(entry.name));
+            sb.append('\t');
+            sb.append(tsv(entry.actions));
+            sb.append('\t');
+            sb.append(entry.count());
+            sb.append('\t');
+            sb.append(entry.firstSeen);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Write the merged policy file and the summary.  If the summary file
+     * already exists, its entries are merged into this profile first,
+     * while holding a lock on the summary file.
+     * @param policyFileName  the policy file to write, or null to skip it
+     * @param summaryFileName the summary file to write, or null to skip it
+     */
+    public void dump(String policyFileName, String summaryFileName)
+    {
+        if (summaryFileName == null)
+        {
+            if (policyFileName != null)
+            {
+                write(policyFileName, toPolicy());
+            }
+            return;
+        }
+
+        try
+        {
+            RandomAccessFile file =
+                new RandomAccessFile(new File(summaryFileName), "rw");
+            try
+            {
+                FileLock lock = file.getChannel().lock();
+                try
+                {
+                    byte[] existing = new byte[(int)file.length()];
+                    file.readFully(existing);
+                    mergeSummary(new String(existing, "UTF-8"));
+                    file.seek(0);
+                    file.setLength(0);
+                    file.write(toSummary().getBytes("UTF-8"));
+                    if (policyFileName != null)
+                    {
+                        write(policyFileName, toPolicy());
+                    }
+                }
+                finally
+                {
+                    lock.release();
+                }
+            }
+            finally
+            {
+                file.close();
+            }
+        }
+        catch (IOException e)
+        {
+            System.out.println(e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Add the entries from a summary produced by {@link #toSummary()}
+     * into this profile.  Counts are added, and the earliest first-seen
+     * time is kept.
+     * @param summary the summary text
+     */
+    public void mergeSummary(String summary)
+    {
+        String[] lines = summary.split("\n");
+        // The first line holds the column names
+        for (int i = 1; i < lines.length; i++)
+        {
+            String[] fields = lines[i].split("\t", -1);
+            if (fields.length != 6)
+            {
+                continue;
+            }
+            List<String> key = new ArrayList<String>(4);
+            for (int j = 0; j < 4; j++)
+            {
+                key.add(untsv(fields[j]));
+            }
+            long count;
+            long firstSeen;
+            try
+            {
+                count = Long.parseLong(fields[4]);
+                firstSeen = Long.parseLong(fields[5]);
+            }
+            catch (NumberFormatException e)
+            {
+                continue;
+            }
+
+            Entry entry = entries.get(key);
+            if (entry == null)
+            {
+                entry = new Entry(key.get(0), key.get(1), key.get(2),
+                    key.get(3));
+                entry.firstSeen = firstSeen;
+                entries.put(key, entry);
+            }
+            else if (firstSeen < entry.firstSeen)
+            {
+                entry.firstSeen = firstSeen;
+            }
+            entry.count.addAndGet(count);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Escape a string for use inside a quoted string in a policy file.
+     * @param value the string to escape, which may be null
+     * @return the escaped string, which is empty if value is null
+     */
+    public static String escape(String value)
+    {
+        return emptyIfNull(value).replace("\"", "\\\"").replace("\r", "\\\r");
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private static String tsv(String value)
+    {
+        if (value == null)
+        {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t")
+            .replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+
+    // ----------------------------------------------------------
+    private static String emptyIfNull(String value)
+    {
+        return (value == null) ? "" : value;
+    }
+
+
+    // ----------------------------------------------------------
+    private static String untsv(String value)
+    {
+        if (value.indexOf('\\') < 0)
+        {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length())
+            {
+                c = value.charAt(++i);
+                switch (c)
+                {
+                    case 't': c = '\t'; break;
+                    case 'n': c = '\n'; break;
+                    case 'r': c = '\r'; break;
+                    default:  break;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    private static int compare(String a, String b)
+    {
+        if (a == null)
+        {
+            return (b == null) ? 0 : -1;
+        }
+        return (b == null) ? 1 : a.compareTo(b);
+    }
+
+
+    // ----------------------------------------------------------
+    private static void write(String fileName, String contents)
+    {
+        try
+        {
+            FileOutputStream out = new FileOutputStream(new File(fileName));
+            try
+            {
+                out.write(contents.getBytes("UTF-8"));
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            System.out.println(e);
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final ConcurrentMap<List<String>, Entry> entries =
+        new ConcurrentHashMap<List<String>, Entry>();
+
+    private static final Comparator<Entry> BY_KEY = new Comparator<Entry>()
+    {
+        public int compare(Entry a, Entry b)
+        {
+            int result = PermissionProfile.compare(a.codeBase, b.codeBase);
+            if (result == 0)
+            {
+                result = PermissionProfile.compare(
+                    a.permissionClass, b.permissionClass);
+            }
+            if (result == 0)
+            {
+                result = PermissionProfile.compare(a.name, b.name);
+            }
+            if (result == 0)
+            {
+                result = PermissionProfile.compare(a.actions, b.actions);
+            }
+            return result;
+        }
+    };
+
+    private static final Comparator<Entry> BY_COUNT = new Comparator<Entry>()
+    {
+        public int compare(Entry a, Entry b)
+        {
+            long ca = a.count();
+            long cb = b.count();
+            if (ca != cb)
+            {
+                return (ca > cb) ? -1 : 1;
+            }
+            return BY_KEY.compare(a, b);
+        }
+    };
+}
@@ -25,11 +25,23 @@
 
 package net.sf.webcat.plugins.javatddplugin;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import junit.framework.AssertionFailedError;
 import junit.framework.Test;
+import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.taskdefs.optional.junit.JUnitTest;
+import org.apache.tools.ant.util.FileUtils;
 import org.apache.tools.ant.util.StringUtils;
 
 //-------------------------------------------------------------------------
@@ -70,6 +82,37 @@ public class PlistJUnitResultFormatter
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * @see JUnitResultFormatter#endTestSuite(JUnitTest)
+     */
+    /** {@inheritDoc}. */
+    public void endTestSuite( JUnitTest suite )
+    {
+        if ( output != null || serializer == null )
+        {
+            super.endTestSuite( suite );
+            return;
+        }
+
+        // Serializer-only output: outputForSuite() still computes the
+        // totals and writes them to the serializer, but the Perl text
+        // it produces is discarded.
+        try
+        {
+            outputForSuite( outBuffer, suite );
+        }
+        finally
+        {
+            outBuffer.setLength( 0 );
+            if ( out != System.out  &&  out != System.err )
+            {
+                FileUtils.close( out );
+            }
+        }
+    }
+
+
     // ----------------------------------------------------------
     /**
      * @see TestListener#startTest(Test)
@@ -155,6 +198,93 @@ public class PlistJUnitResultFormatter
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Get the serializer that receives a copy of each test outcome, in
+     * addition to the Perl-formatted output.
+     * @return the serializer, or null if there is none
+     */
+    public ResultSerializer resultSerializer()
+    {
+        return serializer;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the serializer that receives a copy of each test outcome, in
+     * addition to the Perl-formatted output.
+     * @param value the serializer to use, or null for none
+     */
+    public void setResultSerializer(ResultSerializer value)
+    {
+        serializer = value;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Send all output for this formatter through a result serializer
+     * instead of as Perl source.  The Perl-style output writer is left
+     * unset, so no Perl text (including hints) is produced.  Subclasses
+     * call this from setOutput() to produce a compact result format.
+     * The serializer is created by {@link #createResultSerializer()}.
+     * @param out the output stream
+     */
+    protected void setSerializedOutput(OutputStream out)
+    {
+        this.out = out;
+        output = null;
+        ResultSerializer value = createResultSerializer();
+        try
+        {
+            value.setOutput(out);
+        }
+        catch (IOException e)
+        {
+            throw new BuildException("Unable to write output", e);
+        }
+        setResultSerializer(value);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a serializer for {@link #setSerializedOutput(OutputStream)}.
+     * By default, a {@link BinaryResultSerializer} is used.  A different
+     * serializer can be chosen by setting the
+     * <code>net.sf.webcat.plugins.javatddplugin.PlistJUnitResultFormatter.serializer</code>
+     * system property to the name of a class implementing
+     * {@link ResultSerializer}.
+     * @return the new serializer
+     */
+    protected ResultSerializer createResultSerializer()
+    {
+        String className = System.getProperty(
+            PlistJUnitResultFormatter.class.getName() + ".serializer");
+        if (className == null || className.length() == 0)
+        {
+            return new BinaryResultSerializer();
+        }
+        try
+        {
+            return (ResultSerializer)Class.forName(className)
+                .getDeclaredConstructor().newInstance();
+        }
+        catch (InvocationTargetException e)
+        {
+            throw new BuildException(
+                "Unable to create result serializer " + className,
+                e.getCause());
+        }
+        catch (Exception e)
+        {
+            throw new BuildException(
+                "Unable to create result serializer " + className, e);
+        }
+    }
+
+
     //~ Protected Methods .....................................................
 
     /** A simple record storing information about a test outcome. */
@@ -176,6 +306,12 @@ public class PlistJUnitResultFormatter
         public String    message;
         /** A stack trace associated with the exception object, if any. */
         public String    stackTrace;
+        /** The hint generated for this outcome, if any. */
+        public String    hint;
+        /** How mandatory the hint is (0, 1, or 2). */
+        public int       hintMandatory = 0;
+        /** A student-visible stack trace to accompany the hint, if any. */
+        public String    hintTrace;
 
         /**
          * Create a new descriptor.
@@ -320,7 +456,76 @@ public class PlistJUnitResultFormatter
      */
     protected void formatTestResultAsPlist(Test test, Throwable error)
     {
-        formatTestResultAsPlist(describe(test, error));
+        TestResultDescriptor result = describe(test, error);
+        if (output != null || serializer == null)
+        {
+            formatTestResultAsPlist(result);
+        }
+        if (serializer != null)
+        {
+            serializeResult(result);
+        }
+        if (streaming
+            && testResultsPlist.length() + testResultsPerlList.length()
+                >= stagingLimit)
+        {
+            flushStagedResults();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Pass a test result on to the current result serializer.
+     * @param result the test result
+     */
+    protected void serializeResult(TestResultDescriptor result)
+    {
+        ResultRecord record = new ResultRecord();
+        record.suite         = result.suite.getName();
+        record.test          = testNameOf(result.test);
+        record.level         = result.level;
+        record.code          = result.code;
+        record.priority      = result.priority;
+        record.message       = result.message;
+        record.exception     = (result.error == null)
+            ? null
+            : result.error.getClass().getName();
+        record.trace         = result.stackTrace;
+        record.hint          = result.hint;
+        record.hintMandatory = result.hintMandatory;
+        record.hintTrace     = result.hintTrace;
+        try
+        {
+            serializer.writeResult(record);
+        }
+        catch (IOException e)
+        {
+            throw new BuildException("Unable to write output", e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the method name of a test case, without the class name that
+     * JUnit appends in parentheses.
+     * @param test the test case
+     * @return the test case's name, or the empty string if test is null
+     */
+    protected String testNameOf(Test test)
+    {
+        String testName = "";
+        if ( test != null )
+        {
+            testName = test.toString();
+            int pos = testName.indexOf( "(" );
+            if ( pos >= 0 )
+            {
+                testName = testName.substring( 0, pos );
+            }
+        }
+        return testName;
     }
 
 
@@ -405,17 +610,7 @@ public class PlistJUnitResultFormatter
         appendResultsValueSeparator();
 
         appendResultsLabel("test");
-        String testName = "";
-        if ( result.test != null )
-        {
-            testName = result.test.toString();
-            int pos = testName.indexOf( "(" );
-            if ( pos >= 0 )
-            {
-                testName = testName.substring( 0, pos );
-            }
-        }
-        appendResultsQuotedValue(testName);
+        appendResultsQuotedValue(testNameOf(result.test));
         appendResultsValueSeparator();
 
         appendResultsLabel("level");
@@ -464,6 +659,33 @@ public class PlistJUnitResultFormatter
         buffer.append( "# Suite: " );
         buffer.append( currentSuite.getName() );
         buffer.append( StringUtils.LINE_SEP );
+        appendStagedResults( buffer );
+        if ( serializer != null )
+        {
+            try
+            {
+                serializer.writeSuiteSummary(
+                    suite.getName(), numExecuted, numFailed );
+                serializer.flush();
+            }
+            catch ( IOException e )
+            {
+                throw new BuildException( "Unable to write output", e );
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Append the test results staged so far to the given buffer, and
+     * then clear the staging buffers.  Since the Perl-side addToPlist()
+     * and addToPerlList() calls accumulate, the staged results for a
+     * suite can be emitted in several consecutive chunks.
+     * @param buffer the string buffer where output should be placed
+     */
+    protected void appendStagedResults( StringBuffer buffer )
+    {
         buffer.append( "$results->addToPlist( <<PLIST );");
         buffer.append( StringUtils.LINE_SEP );
         buffer.append( perlEscape( testResultsPlist.toString() ) );
@@ -477,6 +699,27 @@ public class PlistJUnitResultFormatter
         buffer.append( "PERLLIST");
         buffer.append( StringUtils.LINE_SEP );
         testResultsPlist.setLength( 0 );
+        testResultsPerlList.setLength( 0 );
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * In streaming mode, write the currently staged test results
+     * straight to the output stream, so that memory use stays bounded
+     * by the staging limit rather than growing with the number of tests
+     * in the suite.  The suite totals are still written by
+     * {@link #outputForSuite(StringBuffer,JUnitTest)} at the end.
+     */
+    protected void flushStagedResults()
+    {
+        if ( output == null ) return;
+        synchronized ( output )
+        {
+            appendStagedResults( outBuffer );
+            output.write( outBuffer.toString() );
+            outBuffer.setLength( 0 );
+        }
     }
 
 
@@ -491,20 +734,14 @@ public class PlistJUnitResultFormatter
         if ( error == null ) return 1;
 
         // First-pass code assignment is made by the code table
-        int code = 0;
-        for ( int i = 0; i < codeTable.length; i++ )
+        Class<?> errorClass = error.getClass();
+        Integer cachedCode = codeByClass.get( errorClass );
+        if ( cachedCode == null )
         {
-            if ( codeTable[i] != null )
-            {
-                if (codeTable[i].isAssignableFrom(error.getClass())
-                    || codeTable[i].getName().equals(error.getClass().getName()))
-                {
-                    // error instanceof codeTable[i]
-                    code = i;
-                    break;
-                }
-            }
+            cachedCode = codeFromTable( errorClass );
+            codeByClass.put( errorClass, cachedCode );
         }
+        int code = cachedCode.intValue();
 
         // If it is a test case failure, we cannot use the exception type
         // alone, so we must break down the message to refine the code
@@ -533,33 +770,19 @@ public class PlistJUnitResultFormatter
                     trace = error.getCause().getStackTrace();
                 }
 
-                pos = findLast( trace, 0, "junit.framework.Assert" );
-                if ( pos < trace.length
-                     && trace[pos].getClassName().equals(
-                         "junit.framework.Assert" ) )
+                // Was the failure raised inside one of the known assertion
+                // classes (junit.framework.Assert, student.TestCase, or
+                // org.junit.Assert)?  Only the top frame needs checking,
+                // since the assertion must be the innermost call.
+                String topClass = ( trace.length > 0 )
+                    ? trace[0].getClassName()
+                    : null;
+                if ( topClass != null
+                     && assertClassTable.contains( topClass ) )
                 {
+                    pos = findLast( trace, 0, topClass );
                     methodName = trace[pos].getMethodName();
                 }
-                else
-                {
-                    pos = findLast( trace, 0, "student.TestCase" );
-                    if ( pos < trace.length
-                         && trace[pos].getClassName().equals(
-                              "student.TestCase" ) )
-                    {
-                        methodName = trace[pos].getMethodName();
-                    }
-                    else
-                    {
-                        pos = findLast( trace, 0, "org.junit.Assert" );
-                        if ( pos < trace.length
-                             && trace[pos].getClassName().equals(
-                                 "org.junit.Assert" ) )
-                        {
-                            methodName = trace[pos].getMethodName();
-                        }
-                    }
-                }
                 if ( methodName != null )
                 {
                     code = assertFailCodeOf( methodName );
@@ -595,6 +818,31 @@ public class PlistJUnitResultFormatter
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Search the code table for the first-pass error code of a given
+     * exception class.
+     * @param errorClass the class of the exception to code
+     * @return the code
+     */
+    private static int codeFromTable( Class<?> errorClass )
+    {
+        for ( int i = 0; i < codeTable.length; i++ )
+        {
+            if ( codeTable[i] != null )
+            {
+                if (codeTable[i].isAssignableFrom(errorClass)
+                    || codeTable[i].getName().equals(errorClass.getName()))
+                {
+                    // error instanceof codeTable[i]
+                    return i;
+                }
+            }
+        }
+        return 0;
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Look up the error level for a given error code.
@@ -672,14 +920,10 @@ public class PlistJUnitResultFormatter
      */
     protected int assertFailCodeOf( String name )
     {
-        for ( int i = 0; i < assertMethodTable.length; i++ )
-        {
-            if ( assertMethodTable[i].equals( name ) )
-            {
-                return i + 3;
-            }
-        }
-        return assertMethodTable.length + 2;
+        Integer code = assertMethodCodes.get( name );
+        return ( code == null )
+            ? assertMethodTable.length + 2
+            : code.intValue();
     }
 
 
@@ -816,6 +1060,22 @@ public class PlistJUnitResultFormatter
     /** Records the status of the current test. */
     protected StringBuffer testResultsPerlList = new StringBuffer();
 
+    /** An optional serializer that also receives each test outcome. */
+    protected ResultSerializer serializer = null;
+
+    /**
+     * If true, staged results are written to the output stream as soon
+     * as they exceed {@link #stagingLimit} characters, instead of being
+     * held until the end of the suite.
+     */
+    protected boolean streaming = Boolean.getBoolean(
+        PlistJUnitResultFormatter.class.getName() + ".streaming");
+
+    /** The staging buffer size (in chars) that triggers a flush. */
+    protected int stagingLimit = Integer.getInteger(
+        PlistJUnitResultFormatter.class.getName() + ".stagingLimit",
+        16 * 1024);
+
     /**
      * If true, extra newlines and tabs will be produced in the plist output.
      * */
@@ -835,6 +1095,24 @@ public class PlistJUnitResultFormatter
         "fail"
     };
 
+    /** The error codes from assertMethodTable, indexed by method name. */
+    private static final Map<String, Integer> assertMethodCodes =
+        new HashMap<String, Integer>();
+    static
+    {
+        for ( int i = 0; i < assertMethodTable.length; i++ )
+        {
+            assertMethodCodes.put( assertMethodTable[i], i + 3 );
+        }
+    }
+
+    /** The classes whose methods are recognized as JUnit assertions. */
+    private static final Set<String> assertClassTable = new HashSet<String>(
+        Arrays.asList(
+            "junit.framework.Assert",
+            "student.TestCase",
+            "org.junit.Assert"));
+
     /** A lookup table for determining error codes. */
     private static final Class<?>[] codeTable = {
         // Nothing matches the zero case, EVER!
@@ -895,6 +1173,16 @@ public class PlistJUnitResultFormatter
         Throwable.class                                     //   43
     };
 
+    /**
+     * Caches the first-pass error code for each exception class, so the
+     * code table is only searched once per class, rather than once per
+     * failure.  Classes are held weakly, so a cached student exception
+     * class does not keep its class loader alive in a long-lived test
+     * runner.
+     */
+    private static final Map<Class<?>, Integer> codeByClass =
+        Collections.synchronizedMap(new WeakHashMap<Class<?>, Integer>());
+
     private static final String[] defaultStackFilters = {
         // JUnit 4 support:
         "org.junit.",
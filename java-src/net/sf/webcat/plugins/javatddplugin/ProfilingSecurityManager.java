@@ -33,7 +33,7 @@ package net.sf.webcat.plugins.javatddplugin;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.security.AccessController;
@@ -41,8 +41,12 @@ import java.security.AccessControlContext;
 import java.security.CodeSource;
 import java.security.Permission;
 import java.security.ProtectionDomain;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
 
 
 //-------------------------------------------------------------------------
@@ -69,6 +73,22 @@ import java.util.Set;
  * The implementation here does some very simple rule caching.  If a rule has
  * been seen previously, it is not output to System.out.  The caching cannot
  * prevent a security check, but it can reduce I/O during profiling.
+ * New rules are handed to a single background writer thread, which keeps
+ * the output file named by the <code>ProfilingSecurityManager.output</code>
+ * system property open and writes rules in batches, so threads performing
+ * permission checks never wait on I/O.  Any pending rules are written
+ * when the JVM shuts down.  Unless the
+ * <code>ProfilingSecurityManager.fastPath</code> system property is set to
+ * false, a permission already seen for a given protection domain is
+ * skipped before its rule text is even built.
+ * <p>
+ * Every request is also counted in a {@link PermissionProfile}.  At
+ * shutdown (or when {@link #switchProfile(String, String, String)} starts
+ * a new profile), a merged policy file is written to the file named by the
+ * <code>ProfilingSecurityManager.policy</code> system property, and a
+ * tab-separated summary of request counts is written to the file named by
+ * <code>ProfilingSecurityManager.summary</code>, if these are set.
+ * </p>
  *
  * @author Mark S. Petrovic, with modifications by Stephen Edwards
  * @version $Id: ProfilingSecurityManager.java,v 1.1 2007/09/15 01:58:39 stedwar2 Exp $
@@ -84,15 +104,55 @@ public class ProfilingSecurityManager
      */
     public ProfilingSecurityManager()
     {
-        thisClassName=this.getClass().getName();
         CodeSource thisCodeSource =
             this.getClass().getProtectionDomain().getCodeSource();
         thisCodeSourceURLString = thisCodeSource.getLocation().toString();
+
+        policyFileName = System.getProperty("ProfilingSecurityManager.policy");
+        summaryFileName =
+            System.getProperty("ProfilingSecurityManager.summary");
+        writer = new RuleWriter(
+            System.getProperty("ProfilingSecurityManager.output"));
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread()
+        {
+            @Override
+            public void run()
+            {
+                finishProfile();
+            }
+        });
     }
 
 
     //~ Public Methods ........................................................
 
+    // ----------------------------------------------------------
+    /**
+     * Write out everything profiled so far, as happens at shutdown, and
+     * start a new profile with the given files.  Rules already written
+     * are forgotten, so the new output file gets a complete set.  This
+     * lets a long-lived JVM (see {@link TestRunnerDaemon}) write each
+     * run's permissions to that run's own files.
+     * @param outputFileName  the new rule output file, or null
+     * @param policyFileName  the new merged policy file, or null
+     * @param summaryFileName the new summary file, or null
+     */
+    public synchronized void switchProfile(
+        String outputFileName, String policyFileName, String summaryFileName)
+    {
+        finishProfile();
+        cache.clear();
+        seen.clear();
+        profile = new PermissionProfile();
+        this.policyFileName = policyFileName;
+        this.summaryFileName = summaryFileName;
+        RuleWriter newWriter = new RuleWriter(outputFileName);
+        newWriter.start();
+        writer = newWriter;
+    }
+
+
     // ----------------------------------------------------------
     @Override
     public void checkPermission(final Permission permission)
@@ -103,11 +163,14 @@ public class ProfilingSecurityManager
         }
         catch (SecurityException e)
         {
-            final Throwable t = new Throwable("Profiler stack probe");
-            final StackTraceElement[] stack = t.getStackTrace();
+            if (Thread.currentThread() == writer)
+            {
+                // The writer's own file access is never profiled
+                return;
+            }
             // Avoid recursion owing to actions in this class itself inducing
             // callbacks
-            if( !isRecur(stack) )
+            if (!inBuildRules.get())
             {
                 buildRules(permission, AccessController.getContext());
             }
@@ -126,6 +189,10 @@ public class ProfilingSecurityManager
         }
         catch (SecurityException e)
         {
+            if (Thread.currentThread() == writer || inBuildRules.get())
+            {
+                return;
+            }
             buildRules(permission, (AccessControlContext)context);
         }
     }
@@ -141,6 +208,17 @@ public class ProfilingSecurityManager
 
     //~ Private Methods .......................................................
 
+    // ----------------------------------------------------------
+    /**
+     * Write any pending rules, then the merged policy and summary.
+     */
+    private synchronized void finishProfile()
+    {
+        writer.shutdown();
+        profile.dump(policyFileName, summaryFileName);
+    }
+
+
     // ----------------------------------------------------------
     /**
      *  With a Permission and an AccessControlContext, we can build and print
@@ -149,6 +227,7 @@ public class ProfilingSecurityManager
     private void buildRules(
         final Permission permission, final AccessControlContext ctx)
     {
+        inBuildRules.set(Boolean.TRUE);
         try
         {
            final ProtectionDomain[] protectionDomain =
@@ -157,11 +236,43 @@ public class ProfilingSecurityManager
            {
               for (int i = 0; i < protectionDomain.length; ++i)
               {
-                 final String grant =
-                     formatRule(permission, protectionDomain[i]);
-                 if (null != grant && !isCached(grant))
+                 // Skip formatting entirely for pairs already handled
+                 SeenKey key = null;
+                 if (fastPath)
+                 {
+                    key = new SeenKey(permission, protectionDomain[i]);
+                    final Object entry = seen.get(key);
+                    if (entry instanceof PermissionProfile.Entry)
+                    {
+                       ((PermissionProfile.Entry)entry).hit();
+                       continue;
+                    }
+                    else if (null != entry)
+                    {
+                       continue;
+                    }
+                 }
+
+                 final String codeBase = codeBaseOf(protectionDomain[i]);
+                 if (null == codeBase)
                  {
-                    println(grant);
+                    if (fastPath)
+                    {
+                       seen.putIfAbsent(key, IGNORED);
+                    }
+                    continue;
+                 }
+                 final PermissionProfile.Entry entry =
+                     profile.record(codeBase, permission);
+                 if (fastPath)
+                 {
+                    seen.putIfAbsent(key, entry);
+                 }
+
+                 final String grant = formatRule(permission, codeBase);
+                 if (!isCached(grant))
+                 {
+                    writer.add(grant);
                  }
               }
            }
@@ -170,28 +281,10 @@ public class ProfilingSecurityManager
         {
            e.printStackTrace();
         }
-    }
-
-
-    // ----------------------------------------------------------
-    /**
-     * Traverse the stack, returning true if the stack indicates we called
-     * ourself.
-     */
-    private boolean isRecur(final StackTraceElement[] st)
-    {
-        boolean v = false;
-        for (int i = st.length - 1; i >= 1; --i)
+        finally
         {
-            final boolean c = st[i].getClassName().equals(thisClassName);
-            final boolean m = st[i].getMethodName().equals("buildRules");
-            if (c && m)
-            {
-                v = true;
-                break;
-            }
+            inBuildRules.set(Boolean.FALSE);
         }
-        return v;
     }
 
 
@@ -209,21 +302,10 @@ public class ProfilingSecurityManager
         ProtectionDomain[] pda = null;
         try
         {
-            final Field[] fields =
-                AccessControlContext.class.getDeclaredFields();
-            if (null == fields)
+            final Field field = contextField();
+            if (null != field)
             {
-               throw new IllegalStateException("No fields");
-            }
-            for (int i = 0; i < fields.length; ++i)
-            {
-                if (fields[i].getName().equals("context"))
-                {  // Warning:  JVM-dependent
-                    fields[i].setAccessible(true);
-                    final Object o = fields[i].get(context);
-                    pda = (ProtectionDomain[])o;
-                    break;
-                }
+                pda = (ProtectionDomain[])field.get(context);
             }
 
             // No 'context' field found, throw exception.
@@ -242,8 +324,45 @@ public class ProfilingSecurityManager
 
 
     // ----------------------------------------------------------
-    private String formatRule(
-        final Permission permission, final ProtectionDomain pd)
+    /**
+     * Find the private "context" field of AccessControlContext, making it
+     * accessible.  The search is done only once.
+     * @return the field, or null if there is none
+     */
+    private static Field contextField()
+    {
+        if (!contextFieldResolved)
+        {
+            Field result = null;
+            final Field[] fields =
+                AccessControlContext.class.getDeclaredFields();
+            if (null == fields)
+            {
+               throw new IllegalStateException("No fields");
+            }
+            for (int i = 0; i < fields.length; ++i)
+            {
+                if (fields[i].getName().equals("context"))
+                {  // Warning:  JVM-dependent
+                    fields[i].setAccessible(true);
+                    result = fields[i];
+                    break;
+                }
+            }
+            contextField = result;
+            contextFieldResolved = true;
+        }
+        return contextField;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the code base URL for a protection domain.
+     * @return the URL, or null if the domain has no code base or is
+     *         this class's own code base
+     */
+    private String codeBaseOf(final ProtectionDomain pd)
     {
         final CodeSource cs = pd.getCodeSource();
 
@@ -259,14 +378,22 @@ public class ProfilingSecurityManager
 
         // Remove ProfilingSecurityManager.class codebase from output rule
         // consideration
-        if (url.toString().equals(thisCodeSourceURLString))
+        final String codeBase = url.toString();
+        if (codeBase.equals(thisCodeSourceURLString))
         {
             return null;
         }
+        return codeBase;
+    }
+
 
+    // ----------------------------------------------------------
+    private String formatRule(
+        final Permission permission, final String codeBase)
+    {
         final StringBuilder sb = new StringBuilder();
         sb.append("grant codeBase \"");
-        sb.append(url.toString());
+        sb.append(codeBase);
         sb.append("\" {");
         sb.append("permission ");
         sb.append(" ");
@@ -279,12 +406,13 @@ public class ProfilingSecurityManager
 
         final String permissionName = permission.getName();
         final String escapedPermissionName =
-            permissionName.replace("\"","\\\"").replace("\r","\\\r");
+            PermissionProfile.escape(permissionName);
 
         sb.append(escapedPermissionName);
         sb.append("\", ");
         sb.append("\"");
-        sb.append(permission.getActions());
+        final String actions = permission.getActions();
+        sb.append((actions == null) ? "" : actions);
         sb.append("\";");
         sb.append("};");
         return sb.toString();
@@ -298,49 +426,247 @@ public class ProfilingSecurityManager
      */
     private boolean isCached(final String candidate)
     {
-        synchronized (cache)
+        return cache.putIfAbsent(candidate, Boolean.TRUE) != null;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Identifies a permission requested by a protection domain, so that
+     * repeated requests can be recognized before any rule text is built.
+     * Domains are compared by identity, since the JVM shares one domain
+     * per code source and class loader.
+     */
+    private static class SeenKey
+    {
+        // ----------------------------------------------------------
+        public SeenKey(Permission permission, ProtectionDomain domain)
         {
-            if (cache.contains(candidate))
-            {
-                return true;
-            }
-            else
+            this.permission = permission;
+            this.domain = domain;
+            hash = permission.hashCode() * 31
+                + System.identityHashCode(domain);
+        }
+
+
+        // ----------------------------------------------------------
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof SeenKey))
             {
-                cache.add(candidate);
                 return false;
             }
+            SeenKey key = (SeenKey)other;
+            return domain == key.domain
+                && permission.getClass() == key.permission.getClass()
+                && permission.equals(key.permission);
+        }
+
+
+        // ----------------------------------------------------------
+        @Override
+        public int hashCode()
+        {
+            return hash;
         }
+
+
+        private final Permission       permission;
+        private final ProtectionDomain domain;
+        private final int              hash;
     }
 
 
     // ----------------------------------------------------------
-    private void println(final String value)
+    /**
+     * The background thread that writes rules to System.out and to the
+     * output file, if any.  Rules are queued by {@link #add(String)} and
+     * written in batches, with one flush per batch.
+     */
+    private static class RuleWriter
+        extends Thread
     {
-        String outFileName =
-            System.getProperty("ProfilingSecurityManager.output");
-        if (outFileName != null)
+        // ----------------------------------------------------------
+        public RuleWriter(String outFileName)
         {
+            super("ProfilingSecurityManager writer");
+            setDaemon(true);
+            this.outFileName = outFileName;
+        }
+
+
+        // ----------------------------------------------------------
+        public void add(String rule)
+        {
+            queue.add(rule);
+        }
+
+
+        // ----------------------------------------------------------
+        @Override
+        public void run()
+        {
+            OutputStream out = null;
+            if (outFileName != null)
+            {
+                try
+                {
+                    out = new FileOutputStream(new File(outFileName), true);
+                }
+                catch (IOException e)
+                {
+                    System.out.println(e);
+                }
+            }
+
+            List<String> batch = new ArrayList<String>();
+            boolean done = false;
+            while (!done)
+            {
+                try
+                {
+                    String rule = queue.take();
+                    if (rule == END)
+                    {
+                        done = true;
+                    }
+                    else
+                    {
+                        batch.add(rule);
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    continue;
+                }
+                queue.drainTo(batch, MAX_BATCH);
+                for (int i = batch.size() - 1; i >= 0; i--)
+                {
+                    if (batch.get(i) == END)
+                    {
+                        batch.remove(i);
+                        done = true;
+                    }
+                }
+                out = write(batch, out);
+                batch.clear();
+            }
+
+            if (out != null)
+            {
+                try
+                {
+                    out.close();
+                }
+                catch (IOException e)
+                {
+                    System.out.println(e);
+                }
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Write any queued rules, then stop the thread.  Waits for the
+         * thread to finish writing.
+         */
+        public void shutdown()
+        {
+            queue.add(END);
             try
             {
-                PrintStream out = new PrintStream(
-                    new FileOutputStream(new File(outFileName), true));
-                out.println(value);
-                out.close();
+                join();
             }
-            catch (IOException e)
+            catch (InterruptedException e)
             {
-                System.out.println(e);
+                // Give up waiting
             }
         }
-        System.out.println(value);
+
+
+        // ----------------------------------------------------------
+        /**
+         * Write one batch of rules.  The batch is appended to the output
+         * file in a single write, so batches from several JVMs sharing
+         * the same output file are never interleaved.
+         * @return the output file stream, or null if writing to the
+         *         file has failed
+         */
+        private OutputStream write(List<String> rules, OutputStream out)
+        {
+            if (rules.isEmpty())
+            {
+                return out;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (String rule : rules)
+            {
+                sb.append(rule);
+                sb.append(LINE_SEPARATOR);
+            }
+            if (out != null)
+            {
+                try
+                {
+                    out.write(sb.toString().getBytes());
+                }
+                catch (IOException e)
+                {
+                    System.out.println(e);
+                    out = null;
+                }
+            }
+            System.out.print(sb);
+            System.out.flush();
+            return out;
+        }
+
+
+        private final String outFileName;
+        private final BlockingQueue<String> queue =
+            new LinkedBlockingQueue<String>();
+
+        private static final int MAX_BATCH = 256;
+        /** Sentinel that marks the end of the queue. */
+        private static final String END = new String("END");
+        private static final String LINE_SEPARATOR =
+            System.getProperty("line.separator");
     }
 
 
     //~ Instance/static variables .............................................
 
     /* Variables of pure convenience */
-    final private String thisClassName;
     final private String thisCodeSourceURLString;
     final private String psmMsg = "ProfilingSecurityManager";
-    final private Set<String> cache = new HashSet<String>();
+    final private ConcurrentMap<String, Boolean> cache =
+        new ConcurrentHashMap<String, Boolean>();
+    private volatile RuleWriter writer;
+    private volatile PermissionProfile profile = new PermissionProfile();
+    private volatile String policyFileName;
+    private volatile String summaryFileName;
+
+    /** Pairs seen so far, when the fast path is enabled, mapped to their
+     *  profile entries (or IGNORED). */
+    final private ConcurrentMap<SeenKey, Object> seen =
+        new ConcurrentHashMap<SeenKey, Object>();
+    private static final Object IGNORED = new Object();
+    final private boolean fastPath = !"false".equalsIgnoreCase(
+        System.getProperty("ProfilingSecurityManager.fastPath"));
+
+    /** Set while this thread is inside buildRules(). */
+    final private ThreadLocal<Boolean> inBuildRules =
+        new ThreadLocal<Boolean>()
+        {
+            @Override
+            protected Boolean initialValue()
+            {
+                return Boolean.FALSE;
+            }
+        };
+
+    private static volatile Field   contextField;
+    private static volatile boolean contextFieldResolved = false;
 }
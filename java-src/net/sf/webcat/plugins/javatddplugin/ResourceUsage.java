@@ -0,0 +1,217 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+
+//-------------------------------------------------------------------------
+/**
+ *  A snapshot of the resources this VM has used so far: wall clock time,
+ *  CPU time, and time spent in garbage collection.  The difference
+ *  between two snapshots gives the resources used in between.  Also
+ *  reports the VM's peak resident set size.
+ *  <p>
+ *  CPU time comes from the platform's
+ *  <code>com.sun.management.OperatingSystemMXBean</code>, and peak RSS
+ *  from <code>/proc/self/status</code>, so either may be unavailable
+ *  (reported as -1) on other VMs or systems.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class ResourceUsage
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Take a snapshot of the resources used so far.
+     */
+    public ResourceUsage()
+    {
+        wallNanos = System.nanoTime();
+        cpuNanos  = processCpuNanos();
+        long gc = 0;
+        for (GarbageCollectorMXBean bean
+            : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            long time = bean.getCollectionTime();
+            if (time > 0)
+            {
+                gc += time;
+            }
+        }
+        gcMillis = gc;
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the wall clock time from an earlier snapshot to this one.
+     * @param start the earlier snapshot
+     * @return the time, in seconds
+     */
+    public double wallSecondsSince(ResourceUsage start)
+    {
+        return (wallNanos - start.wallNanos) / 1e9;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the CPU time this VM used from an earlier snapshot to this one.
+     * @param start the earlier snapshot
+     * @return the time, in seconds, or -1 if it is not available
+     */
+    public double cpuSecondsSince(ResourceUsage start)
+    {
+        if (cpuNanos < 0 || start.cpuNanos < 0)
+        {
+            return -1;
+        }
+        return (cpuNanos - start.cpuNanos) / 1e9;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the garbage collection time from an earlier snapshot to this
+     * one.
+     * @param start the earlier snapshot
+     * @return the time, in seconds
+     */
+    public double gcSecondsSince(ResourceUsage start)
+    {
+        return (gcMillis - start.gcMillis) / 1e3;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the largest resident set size this VM has had so far.
+     * @return the size in bytes, or -1 if it is not available
+     */
+    public static long peakRssBytes()
+    {
+        File status = new File("/proc/self/status");
+        if (!status.exists())
+        {
+            return -1;
+        }
+        try
+        {
+            BufferedReader in = new BufferedReader(new FileReader(status));
+            try
+            {
+                String line;
+                while ((line = in.readLine()) != null)
+                {
+                    if (line.startsWith("VmHWM:"))
+                    {
+                        // For example, "VmHWM:     123456 kB"
+                        String[] fields = line.trim().split("\\s+");
+                        return Long.parseLong(fields[1]) * 1024;
+                    }
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // Fall through
+        }
+        catch (RuntimeException e)
+        {
+            // Fall through
+        }
+        return -1;
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private static long processCpuNanos()
+    {
+        if (processCpuTime == null)
+        {
+            return -1;
+        }
+        try
+        {
+            return ((Number)processCpuTime.invoke(
+                ManagementFactory.getOperatingSystemMXBean())).longValue();
+        }
+        catch (Exception e)
+        {
+            return -1;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static Method findProcessCpuTime()
+    {
+        try
+        {
+            // Only the extended interface has this method
+            Class<?> extended =
+                Class.forName("com.sun.management.OperatingSystemMXBean");
+            OperatingSystemMXBean bean =
+                ManagementFactory.getOperatingSystemMXBean();
+            if (extended.isInstance(bean))
+            {
+                return extended.getMethod("getProcessCpuTime");
+            }
+        }
+        catch (Exception e)
+        {
+            // Not available on this VM
+        }
+        return null;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private long wallNanos;
+    private long cpuNanos;
+    private long gcMillis;
+
+    private static final Method processCpuTime = findProcessCpuTime();
+}
@@ -0,0 +1,147 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+//-------------------------------------------------------------------------
+/**
+ *  A simple, self-contained record of a single test outcome, as handed
+ *  to a {@link ResultSerializer}.  Unlike the formatter's internal
+ *  test result descriptor, it holds only plain values, so it can be
+ *  reconstructed from serialized form without any live JUnit objects.
+ *
+ *  @version $Id$
+ */
+public class ResultRecord
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Default constructor.
+     */
+    public ResultRecord()
+    {
+        // Nothing to construct
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Determine if this record carries a hint.
+     * @return true if a hint is present
+     */
+    public boolean hasHint()
+    {
+        return hint != null;
+    }
+
+
+    // ----------------------------------------------------------
+    public boolean equals(Object other)
+    {
+        if (this == other)
+        {
+            return true;
+        }
+        if (!(other instanceof ResultRecord))
+        {
+            return false;
+        }
+        ResultRecord r = (ResultRecord)other;
+        return level == r.level
+            && code == r.code
+            && priority == r.priority
+            && hintMandatory == r.hintMandatory
+            && same(suite, r.suite)
+            && same(test, r.test)
+            && same(message, r.message)
+            && same(exception, r.exception)
+            && same(trace, r.trace)
+            && same(hint, r.hint)
+            && same(hintTrace, r.hintTrace);
+    }
+
+
+    // ----------------------------------------------------------
+    public int hashCode()
+    {
+        int result = level;
+        result = 31 * result + code;
+        result = 31 * result + (suite == null ? 0 : suite.hashCode());
+        result = 31 * result + (test == null ? 0 : test.hashCode());
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    public String toString()
+    {
+        return "{suite=" + suite + "; test=" + test + "; level=" + level
+            + "; code=" + code + "; priority=" + priority
+            + "; message=" + message + "; exception=" + exception
+            + (hint == null
+                ? ""
+                : ("; hint(" + hintMandatory + ")=" + hint))
+            + "}";
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private static boolean same(String a, String b)
+    {
+        return (a == null) ? (b == null) : a.equals(b);
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    /** The name of the suite (test class) for this test case. */
+    public String suite;
+    /** The name of the test case (method name only). */
+    public String test;
+    /** The associated error level. */
+    public int    level;
+    /** The error code. */
+    public int    code;
+    /** A priority level (greater number == higher priority). */
+    public int    priority;
+    /** The (possibly rewritten) message for this outcome, or null. */
+    public String message;
+    /** The class name of the exception thrown, or null. */
+    public String exception;
+    /** The filtered stack trace for this outcome, or null. */
+    public String trace;
+    /** The hint's mandatory level (0, 1, or 2), if a hint is present. */
+    public int    hintMandatory;
+    /** The hint text generated for this outcome, or null. */
+    public String hint;
+    /** The student-visible "symptom" stack trace for the hint, or null. */
+    public String hintTrace;
+}
@@ -0,0 +1,83 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+//-------------------------------------------------------------------------
+/**
+ *  An output format for test results produced by the JUnit result
+ *  formatters.  A serializer receives one {@link ResultRecord} per test
+ *  outcome (with any hint already attached), followed by a summary of
+ *  the executed/failed totals at the end of each suite.  This allows
+ *  results to be written in forms that downstream consumers can parse
+ *  directly, rather than as Perl source to be evaluated.
+ *
+ *  @version $Id$
+ */
+public interface ResultSerializer
+{
+    // ----------------------------------------------------------
+    /**
+     * Set the stream this serializer writes to.
+     * @param out the output stream
+     * @throws IOException if the stream cannot be initialized
+     */
+    void setOutput(OutputStream out)
+        throws IOException;
+
+
+    // ----------------------------------------------------------
+    /**
+     * Write out a single test outcome.
+     * @param result the outcome to write
+     * @throws IOException if the result cannot be written
+     */
+    void writeResult(ResultRecord result)
+        throws IOException;
+
+
+    // ----------------------------------------------------------
+    /**
+     * Write out the totals for a completed test suite.
+     * @param suite the name of the suite
+     * @param executed the (weighted) number of tests executed
+     * @param failed the (weighted) number of tests failed
+     * @throws IOException if the summary cannot be written
+     */
+    void writeSuiteSummary(String suite, double executed, double failed)
+        throws IOException;
+
+
+    // ----------------------------------------------------------
+    /**
+     * Flush any buffered output to the underlying stream.
+     * @throws IOException if the output cannot be flushed
+     */
+    void flush()
+        throws IOException;
+}
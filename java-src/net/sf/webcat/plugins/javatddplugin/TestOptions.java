@@ -123,20 +123,8 @@ public class TestOptions
             return;
         }
 
-        java.lang.reflect.Method method = null;
-        try
-        {
-            method = suiteClass.getMethod( name, (Class[])null );
-        }
-        catch ( NoSuchMethodException e )
-        {
-            // Ignore this one
-        }
-
-        if ( method != null )
-        {
-            loadFromAnnotations( method );
-        }
+        // Annotation values are resolved once per method and shared
+        HintOptionsCache.loadFromAnnotations( this, suiteClass, name );
     }
 
 
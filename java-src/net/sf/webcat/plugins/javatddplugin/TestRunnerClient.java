@@ -0,0 +1,366 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Properties;
+import org.apache.tools.ant.DirectoryScanner;
+
+//-------------------------------------------------------------------------
+/**
+ *  Sends one test run to a {@link TestRunnerDaemon}.  This is meant to be
+ *  run inside ANT (with <code>&lt;java fork="no"&gt;</code>), so that
+ *  using the daemon costs no JVM start at all.  The arguments mirror
+ *  the parts of a <code>&lt;junit&gt;</code> task:
+ *  <pre>
+ *  -port <i>n</i>                    the daemon's port on this host
+ *  -todir <i>dir</i>                 where result files go
+ *  -classpath <i>path</i>            the test class path
+ *  -dir <i>dir</i>                   the directory holding test classes
+ *  -includes <i>patterns</i>         test class file patterns
+ *  -excludes <i>patterns</i>         test class file exclusion patterns
+ *  -formatter <i>class</i>:<i>ext</i>      a result formatter (repeatable)
+ *  -timeout <i>ms</i>                the time limit for the whole run
+ *  -assertions <i>option</i>         -ea, -da, or the like, for test classes
+ *  -jvmoption <i>option</i>          an option the daemon's JVM must have
+ *                               been started with (repeatable)
+ *  -marker <i>file</i>               created if the daemon ran the tests
+ *  -D<i>name</i>=<i>value</i>              a system property for the run
+ *  </pre>
+ *  <p>
+ *  Empty arguments are ignored.  The time limit is required, and the
+ *  client stops waiting for the daemon a little after it has passed.
+ *  The client never fails the build: if the daemon cannot be reached,
+ *  is busy, or does not finish the run, it just leaves the marker file
+ *  missing, so the build can run the tests in a forked JVM instead.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class TestRunnerClient
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * This class only provides a main program.
+     */
+    private TestRunnerClient()
+    {
+        // Nothing to construct
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Send a test run to the daemon, as described above.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        Properties request = new Properties();
+        int port = -1;
+        File dir = null;
+        String includes = "**/*.class";
+        String excludes = "";
+        File marker = null;
+        int formatters = 0;
+        long timeout = 0;
+        StringBuffer jvmOptions = new StringBuffer();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            String arg = args[i];
+            if (arg.length() == 0)
+            {
+                continue;
+            }
+            else if (arg.startsWith("-D"))
+            {
+                int pos = arg.indexOf('=');
+                if (pos > 2)
+                {
+                    request.setProperty(
+                        TestRunnerDaemon.PROPERTY_PREFIX
+                        + arg.substring(2, pos),
+                        arg.substring(pos + 1));
+                }
+                continue;
+            }
+            else if (i + 1 >= args.length)
+            {
+                System.err.println("Missing value for " + arg);
+                return;
+            }
+
+            String value = args[++i];
+            if ("-port".equals(arg))
+            {
+                port = Integer.parseInt(value);
+            }
+            else if ("-todir".equals(arg))
+            {
+                request.setProperty(TestRunnerDaemon.TODIR,
+                    new File(value).getAbsolutePath());
+            }
+            else if ("-classpath".equals(arg))
+            {
+                request.setProperty(TestRunnerDaemon.CLASSPATH, value);
+            }
+            else if ("-dir".equals(arg))
+            {
+                dir = new File(value);
+            }
+            else if ("-includes".equals(arg))
+            {
+                includes = value;
+            }
+            else if ("-excludes".equals(arg))
+            {
+                excludes = value;
+            }
+            else if ("-formatter".equals(arg))
+            {
+                int pos = value.indexOf(':');
+                String prefix = TestRunnerDaemon.FORMATTER_PREFIX
+                    + formatters++;
+                request.setProperty(prefix + ".classname",
+                    (pos < 0) ? value : value.substring(0, pos));
+                request.setProperty(prefix + ".extension",
+                    (pos < 0) ? ".txt" : value.substring(pos + 1));
+            }
+            else if ("-timeout".equals(arg))
+            {
+                try
+                {
+                    timeout = Long.parseLong(value.trim());
+                }
+                catch (NumberFormatException e)
+                {
+                    timeout = 0;
+                }
+                request.setProperty(TestRunnerDaemon.TIMEOUT, value);
+            }
+            else if ("-assertions".equals(arg))
+            {
+                request.setProperty(TestRunnerDaemon.ASSERTIONS, value);
+            }
+            else if ("-jvmoption".equals(arg))
+            {
+                if (jvmOptions.length() > 0)
+                {
+                    jvmOptions.append(' ');
+                }
+                jvmOptions.append(value.trim());
+            }
+            else if ("-marker".equals(arg))
+            {
+                marker = new File(value);
+            }
+            else
+            {
+                System.err.println("Unrecognized argument: " + arg);
+                return;
+            }
+        }
+
+        if (port < 0 || dir == null || marker == null)
+        {
+            System.err.println("The -port, -dir, and -marker arguments are "
+                + "required");
+            return;
+        }
+        marker.delete();
+        if (timeout <= 0)
+        {
+            System.out.println("No time limit given for the test runner "
+                + "daemon; using a forked JVM instead");
+            return;
+        }
+        request.setProperty(TestRunnerDaemon.JVM_OPTIONS,
+            jvmOptions.toString());
+        request.setProperty(TestRunnerDaemon.TESTS,
+            testClassNames(dir, includes, excludes));
+
+        Properties response = send(port, request, timeout + RESPONSE_GRACE);
+        if (response == null)
+        {
+            return;
+        }
+        String status = response.getProperty(TestRunnerDaemon.STATUS);
+        String message = response.getProperty(TestRunnerDaemon.MESSAGE);
+        if (!TestRunnerDaemon.STATUS_OK.equals(status))
+        {
+            System.out.println("Test runner daemon did not finish ("
+                + status + (message == null ? "" : ": " + message)
+                + "); using a forked JVM instead");
+            return;
+        }
+        if (message != null)
+        {
+            System.out.println(message);
+        }
+        System.out.println("Tests run: "
+            + response.getProperty(TestRunnerDaemon.TESTS)
+            + ", Failures: "
+            + response.getProperty(TestRunnerDaemon.FAILURES)
+            + ", Errors: "
+            + response.getProperty(TestRunnerDaemon.ERRORS)
+            + " (test runner daemon)");
+        try
+        {
+            new FileOutputStream(marker).close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Cannot create " + marker + ": " + e);
+        }
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Find the test classes to run, in the same way a
+     * &lt;batchtest&gt; fileset does.
+     */
+    private static String testClassNames(
+        File dir, String includes, String excludes)
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(dir);
+        scanner.setCaseSensitive(false);
+        scanner.setIncludes(patterns(includes));
+        scanner.setExcludes(patterns(excludes));
+        scanner.scan();
+        String[] files = scanner.getIncludedFiles();
+        Arrays.sort(files);
+
+        StringBuffer result = new StringBuffer();
+        for (String file : files)
+        {
+            if (!file.endsWith(".class"))
+            {
+                continue;
+            }
+            if (result.length() > 0)
+            {
+                result.append(',');
+            }
+            result.append(file.substring(0, file.length() - 6)
+                .replace(File.separatorChar, '.').replace('/', '.'));
+        }
+        return result.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    private static String[] patterns(String patterns)
+    {
+        String trimmed = patterns.trim();
+        return (trimmed.length() == 0)
+            ? new String[0]
+            : trimmed.split("[,\\s]+");
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Send a request and read the response, or return null if the
+     * daemon cannot be reached or does not answer within the given
+     * number of milliseconds.
+     */
+    private static Properties send(
+        int port, Properties request, long responseTimeout)
+    {
+        Socket socket = null;
+        try
+        {
+            socket = new Socket(InetAddress.getByName(null), port);
+            socket.setSoTimeout(
+                (int)Math.min(Integer.MAX_VALUE, responseTimeout));
+            OutputStream out = socket.getOutputStream();
+            request.store(out, null);
+            out.flush();
+            socket.shutdownOutput();
+
+            Properties response = new Properties();
+            response.load(socket.getInputStream());
+            if (response.getProperty(TestRunnerDaemon.STATUS) == null)
+            {
+                response.setProperty(TestRunnerDaemon.STATUS,
+                    TestRunnerDaemon.STATUS_ERROR);
+                response.setProperty(TestRunnerDaemon.MESSAGE,
+                    "the daemon closed the connection");
+            }
+            return response;
+        }
+        catch (SocketTimeoutException e)
+        {
+            System.out.println("Test runner daemon did not answer in time; "
+                + "using a forked JVM instead");
+            return null;
+        }
+        catch (IOException e)
+        {
+            System.out.println("Test runner daemon not available on port "
+                + port + " (" + e.getMessage()
+                + "); using a forked JVM instead");
+            return null;
+        }
+        finally
+        {
+            if (socket != null)
+            {
+                try
+                {
+                    socket.close();
+                }
+                catch (IOException e)
+                {
+                    // Ignore it
+                }
+            }
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    /** How long to wait for a response after the time limit has passed,
+     *  to let the daemon finish writing results, in milliseconds. */
+    private static final long RESPONSE_GRACE = 30000;
+}
@@ -0,0 +1,930 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.Policy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitResultFormatter;
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitTest;
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitTestRunner;
+
+//-------------------------------------------------------------------------
+/**
+ *  A long-lived JUnit test runner that accepts test runs over a local
+ *  socket, so that each submission does not have to pay for starting a
+ *  fresh JVM.  Start it once, with the same security manager and policy
+ *  settings the forked test JVMs use:
+ *  <pre>
+ *  java -Xmx512m -Djava.security.manager -Djava.security.policy==file:.../java.policy
+ *       -cp JavaTddPluginSupport.jar:ant.jar:ant-junit.jar
+ *       net.sf.webcat.plugins.javatddplugin.TestRunnerDaemon
+ *       -port 7070 -maxRuns 50
+ *  </pre>
+ *  <p>
+ *  The daemon only listens on the loopback interface.  Each connection
+ *  carries one request, written as a {@link Properties} file and ended by
+ *  closing the output side of the socket (see {@link TestRunnerClient}).
+ *  The request names the class path, the test classes, the result
+ *  formatters, and any system properties for the run.  The test classes
+ *  are loaded by a new class loader for every request, and each test
+ *  class writes its results through the same formatters, to the same
+ *  <code>TEST-<i>name</i><i>extension</i></code> files, that the
+ *  <code>&lt;junit&gt;</code> task would use.  The reply is also written
+ *  as a {@link Properties} file.
+ *  </p><p>
+ *  Runs share this JVM's system properties and standard streams, so only
+ *  one request runs at a time.  A request that arrives while another is
+ *  running is answered at once with a <code>busy</code> status rather
+ *  than queued, so its client can fork a JVM instead of waiting.
+ *  </p><p>
+ *  A run is set up like the forked JVM it replaces, as far as that is
+ *  possible in a shared JVM.  The test class loader gets the assertion
+ *  status the request asks for.  If the JVM's security manager is a
+ *  {@link ProfilingSecurityManager}, the permissions used by the run are
+ *  written to the <code>ProfilingSecurityManager.output</code>,
+ *  <code>.policy</code>, and <code>.summary</code> files named in the
+ *  request.  A request may only set the system properties the build
+ *  passes to forked test JVMs (see {@link #RUN_PROPERTIES}), since
+ *  anyone on this host can send one, and a property like
+ *  <code>java.security.policy</code> would loosen the sandbox for this
+ *  run and every later one.  All system properties are put back as they
+ *  were when the run ends.  Options that only apply at JVM start, like
+ *  the heap limit, cannot be changed per run, so the request lists the
+ *  ones it needs, and a request is refused if this JVM was not started
+ *  with all of them.  If the daemon crashes, its error log goes wherever its own
+ *  <code>-XX:ErrorFile</code> option says, and the client sees the
+ *  connection drop and runs the tests in a forked JVM.
+ *  </p><p>
+ *  Student code can leave state behind in classes the daemon shares
+ *  with it, so the daemon exits after <code>maxRuns</code> requests, or
+ *  as soon as a run leaves a non-daemon thread running or times out.
+ *  It is meant to be run under a supervisor that restarts it.  Clients
+ *  fall back on a forked JVM whenever the daemon cannot be reached,
+ *  is busy, or does not complete a run.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class TestRunnerDaemon
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new daemon.
+     * @param port    the local port to listen on
+     * @param maxRuns the number of requests to serve before exiting
+     */
+    public TestRunnerDaemon(int port, int maxRuns)
+    {
+        this.port = port;
+        this.maxRuns = maxRuns;
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Start a daemon from the command line.  The arguments are
+     * <code>-port <i>n</i></code> (required) and
+     * <code>-maxRuns <i>n</i></code> (default 50).  The JVM exits when
+     * the daemon recycles itself.
+     * @param args the command line arguments
+     * @throws IOException if the server socket cannot be opened
+     */
+    public static void main(String[] args)
+        throws IOException
+    {
+        int port = -1;
+        int maxRuns = DEFAULT_MAX_RUNS;
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            if ("-port".equals(args[i]))
+            {
+                port = Integer.parseInt(args[i + 1]);
+            }
+            else if ("-maxRuns".equals(args[i]))
+            {
+                maxRuns = Integer.parseInt(args[i + 1]);
+            }
+            else
+            {
+                System.err.println("Unrecognized argument: " + args[i]);
+            }
+        }
+        if (port < 0)
+        {
+            System.err.println("usage: TestRunnerDaemon -port <port> "
+                + "[-maxRuns <count>]");
+            System.exit(1);
+        }
+
+        new TestRunnerDaemon(port, maxRuns).serve();
+
+        // Leaked threads may still be running, so make sure the JVM goes
+        System.exit(0);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Accept and run requests until this daemon needs to be recycled.
+     * Each connection is handled on its own thread, so that requests
+     * arriving during a run can be turned away at once.
+     * @throws IOException if the server socket cannot be opened
+     */
+    public void serve()
+        throws IOException
+    {
+        server = new ServerSocket(port, BACKLOG, InetAddress.getByName(null));
+        serving = true;
+        try
+        {
+            while (!mustRecycle)
+            {
+                final Socket socket;
+                try
+                {
+                    socket = server.accept();
+                }
+                catch (IOException e)
+                {
+                    if (mustRecycle)
+                    {
+                        // The socket was closed to stop accepting
+                        break;
+                    }
+                    throw e;
+                }
+                Thread handler = new Thread("TestRunnerDaemon-connection")
+                {
+                    public void run()
+                    {
+                        handle(socket);
+                    }
+                };
+                handler.setDaemon(true);
+                handler.start();
+            }
+        }
+        finally
+        {
+            closeServer();
+        }
+
+        // Let the last run send its response
+        synchronized (this)
+        {
+            while (busy)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    break;
+                }
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Run one request.  This is the method {@link #serve()} uses for
+     * each connection.  If the run times out, or leaves threads behind,
+     * this daemon is marked for recycling.
+     * @param request the request
+     * @return the response to send back
+     */
+    public Properties run(Properties request)
+    {
+        Properties response = new Properties();
+        final File todir = new File(request.getProperty(TODIR, "."));
+        final String[] tests = split(request.getProperty(TESTS, ""), ",");
+        final List<String[]> formatters = formattersOf(request);
+        long timeout;
+        try
+        {
+            timeout = Long.parseLong(request.getProperty(TIMEOUT, "0").trim());
+        }
+        catch (NumberFormatException e)
+        {
+            timeout = 0;
+        }
+        if (timeout <= 0)
+        {
+            response.setProperty(STATUS, STATUS_ERROR);
+            response.setProperty(MESSAGE, "no time limit given for the run");
+            return response;
+        }
+        String refused = refusedProperty(request);
+        if (refused != null)
+        {
+            response.setProperty(STATUS, STATUS_ERROR);
+            response.setProperty(MESSAGE,
+                "a request may not set the system property " + refused);
+            return response;
+        }
+        String missing = missingJvmOption(request.getProperty(JVM_OPTIONS, ""));
+        if (missing != null)
+        {
+            response.setProperty(STATUS, STATUS_ERROR);
+            response.setProperty(MESSAGE,
+                "the daemon was not started with " + missing);
+            return response;
+        }
+
+        final ClassLoader loader;
+        try
+        {
+            loader = new URLClassLoader(
+                classPathOf(request.getProperty(CLASSPATH, "")),
+                TestRunnerDaemon.class.getClassLoader());
+        }
+        catch (MalformedURLException e)
+        {
+            response.setProperty(STATUS, STATUS_ERROR);
+            response.setProperty(MESSAGE, e.toString());
+            return response;
+        }
+        setAssertionStatus(loader, request.getProperty(ASSERTIONS, ""));
+        runs++;
+
+        Properties savedProperties =
+            (Properties)System.getProperties().clone();
+        Set<Thread> threadsBefore =
+            new HashSet<Thread>(Thread.getAllStackTraces().keySet());
+        final Outcome outcome = new Outcome();
+        Thread worker = new Thread("TestRunnerDaemon-run-" + runs)
+        {
+            public void run()
+            {
+                for (String test : tests)
+                {
+                    runTest(test, todir, formatters, loader, outcome);
+                }
+                outcome.finished = true;
+            }
+        };
+        try
+        {
+            for (Object key : request.keySet())
+            {
+                String name = key.toString();
+                if (name.startsWith(PROPERTY_PREFIX))
+                {
+                    System.setProperty(
+                        name.substring(PROPERTY_PREFIX.length()),
+                        request.getProperty(name));
+                }
+            }
+            refreshPolicy();
+            switchProfile();
+
+            worker.setContextClassLoader(loader);
+            worker.start();
+            worker.join(timeout);
+        }
+        catch (InterruptedException e)
+        {
+            // Treat it like a timeout
+        }
+        finally
+        {
+            System.setProperties(savedProperties);
+            switchProfile();
+            refreshPolicy();
+        }
+
+        if (!outcome.finished)
+        {
+            mustRecycle = true;
+            response.setProperty(STATUS, STATUS_TIMEOUT);
+            response.setProperty(MESSAGE, "Test run timed out after "
+                + timeout + " ms");
+        }
+        else
+        {
+            response.setProperty(STATUS, STATUS_OK);
+            if (outcome.message != null)
+            {
+                response.setProperty(MESSAGE, outcome.message);
+            }
+            if (hasLeakedThreads(threadsBefore, worker))
+            {
+                mustRecycle = true;
+            }
+            if (loader instanceof Closeable)
+            {
+                try
+                {
+                    ((Closeable)loader).close();
+                }
+                catch (IOException e)
+                {
+                    // Ignore it
+                }
+            }
+        }
+        response.setProperty(RETCODE, String.valueOf(outcome.retCode));
+        response.setProperty(TESTS, String.valueOf(outcome.tests));
+        response.setProperty(FAILURES, String.valueOf(outcome.failures));
+        response.setProperty(ERRORS, String.valueOf(outcome.errors));
+        return response;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Find out whether this daemon should exit instead of serving
+     * more requests.
+     * @return true if it should exit
+     */
+    public boolean mustRecycle()
+    {
+        return mustRecycle;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Find out whether this VM is serving as a test runner daemon, so that
+     * formatters can tell that VM-wide figures, like its peak RSS, cover
+     * earlier runs too.
+     * @return true if a daemon is serving requests in this VM
+     */
+    public static boolean isServing()
+    {
+        return serving;
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Read one request from a connection, run it unless another run is
+     * in progress, and send the response.
+     */
+    private void handle(Socket socket)
+    {
+        boolean claimed = false;
+        try
+        {
+            Properties request = new Properties();
+            request.load(socket.getInputStream());
+            Properties response;
+            synchronized (this)
+            {
+                claimed = !busy && !mustRecycle;
+                if (claimed)
+                {
+                    busy = true;
+                }
+            }
+            if (claimed)
+            {
+                response = run(request);
+                if (runs >= maxRuns)
+                {
+                    mustRecycle = true;
+                }
+            }
+            else
+            {
+                response = new Properties();
+                response.setProperty(STATUS, STATUS_BUSY);
+                response.setProperty(MESSAGE,
+                    "the daemon is running another test run");
+            }
+            response.setProperty(RECYCLE, String.valueOf(mustRecycle));
+            OutputStream out = socket.getOutputStream();
+            response.store(out, null);
+            out.flush();
+        }
+        catch (IOException e)
+        {
+            System.err.println("TestRunnerDaemon: " + e);
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                // Ignore it
+            }
+            if (claimed)
+            {
+                synchronized (this)
+                {
+                    busy = false;
+                    notifyAll();
+                }
+                if (mustRecycle)
+                {
+                    closeServer();
+                }
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Close the server socket, which stops {@link #serve()} accepting.
+     */
+    private synchronized void closeServer()
+    {
+        if (server != null)
+        {
+            try
+            {
+                server.close();
+            }
+            catch (IOException e)
+            {
+                // Ignore it
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Find the first system property the request asks for that is not
+     * one of the {@link #RUN_PROPERTIES}.
+     * @return the property's name, or null if all of them are allowed
+     */
+    private static String refusedProperty(Properties request)
+    {
+        for (Object key : request.keySet())
+        {
+            String name = key.toString();
+            if (name.startsWith(PROPERTY_PREFIX))
+            {
+                name = name.substring(PROPERTY_PREFIX.length());
+                if (name.startsWith("java.security.")
+                    || !RUN_PROPERTIES.contains(name))
+                {
+                    return name;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Find the first of the given JVM options (separated by spaces) that
+     * this JVM was not started with.
+     * @return the missing option, or null if there is none
+     */
+    private static String missingJvmOption(String options)
+    {
+        List<String> actual =
+            ManagementFactory.getRuntimeMXBean().getInputArguments();
+        for (String option : split(options, " "))
+        {
+            if (!actual.contains(option))
+            {
+                return option;
+            }
+        }
+        return null;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Give a test class loader the assertion status that the given JVM
+     * option (-ea, -da, -ea:<i>package</i>..., -da:<i>class</i>, and so
+     * on) would give it in a forked JVM.
+     */
+    private static void setAssertionStatus(ClassLoader loader, String option)
+    {
+        option = option.trim();
+        boolean enable;
+        if (option.startsWith("-ea") || option.startsWith("-enableassertions"))
+        {
+            enable = true;
+        }
+        else if (option.startsWith("-da")
+            || option.startsWith("-disableassertions"))
+        {
+            enable = false;
+        }
+        else
+        {
+            return;
+        }
+        int colon = option.indexOf(':');
+        if (colon < 0)
+        {
+            loader.setDefaultAssertionStatus(enable);
+        }
+        else if (option.endsWith("..."))
+        {
+            loader.setPackageAssertionStatus(
+                option.substring(colon + 1, option.length() - 3), enable);
+        }
+        else
+        {
+            loader.setClassAssertionStatus(option.substring(colon + 1), enable);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * If the security manager is a {@link ProfilingSecurityManager},
+     * point it at the profile files named by the current system
+     * properties.
+     */
+    private static void switchProfile()
+    {
+        SecurityManager manager = System.getSecurityManager();
+        if (manager instanceof ProfilingSecurityManager)
+        {
+            ((ProfilingSecurityManager)manager).switchProfile(
+                System.getProperty("ProfilingSecurityManager.output"),
+                System.getProperty("ProfilingSecurityManager.policy"),
+                System.getProperty("ProfilingSecurityManager.summary"));
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Run one test class, in the same way the &lt;junit&gt; task's
+     * forked JVM does.
+     */
+    private static void runTest(
+        String name,
+        File todir,
+        List<String[]> formatters,
+        ClassLoader loader,
+        Outcome outcome)
+    {
+        JUnitTest test = new JUnitTest(name);
+        test.setTodir(todir);
+        test.setOutfile("TEST-" + name);
+        test.setProperties(System.getProperties());
+        JUnitTestRunner runner =
+            new JUnitTestRunner(test, false, false, false, false, loader);
+
+        List<OutputStream> outputs = new ArrayList<OutputStream>();
+        PrintStream savedOut = System.out;
+        PrintStream savedErr = System.err;
+        try
+        {
+            for (String[] formatter : formatters)
+            {
+                JUnitResultFormatter instance = (JUnitResultFormatter)
+                    Class.forName(formatter[0])
+                    .getDeclaredConstructor().newInstance();
+                OutputStream out = new FileOutputStream(
+                    new File(todir, test.getOutfile() + formatter[1]));
+                outputs.add(out);
+                instance.setOutput(out);
+                runner.addFormatter(instance);
+            }
+            // Hand output to the runner, as the <junit> task does when it
+            // does not fork, so formatters see it
+            System.setOut(
+                new PrintStream(new RunnerOutput(runner, false), true));
+            System.setErr(
+                new PrintStream(new RunnerOutput(runner, true), true));
+            runner.run();
+            outcome.retCode = Math.max(outcome.retCode, runner.getRetCode());
+            outcome.tests += test.runCount();
+            outcome.failures += test.failureCount();
+            outcome.errors += test.errorCount();
+        }
+        catch (Exception e)
+        {
+            outcome.retCode = Math.max(
+                outcome.retCode, JUnitTestRunner.ERRORS);
+            outcome.message = name + ": " + e;
+        }
+        finally
+        {
+            System.setOut(savedOut);
+            System.setErr(savedErr);
+            for (OutputStream out : outputs)
+            {
+                try
+                {
+                    out.close();
+                }
+                catch (IOException e)
+                {
+                    // Ignore it
+                }
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Check for non-daemon threads started during a run that are still
+     * alive, after giving them a moment to finish.
+     */
+    private static boolean hasLeakedThreads(
+        Set<Thread> threadsBefore, Thread worker)
+    {
+        long deadline = System.currentTimeMillis() + LEAK_GRACE_PERIOD;
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            if (thread != worker
+                && !thread.isDaemon()
+                && !threadsBefore.contains(thread))
+            {
+                try
+                {
+                    thread.join(
+                        Math.max(1, deadline - System.currentTimeMillis()));
+                }
+                catch (InterruptedException e)
+                {
+                    // Fall through and check it
+                }
+                if (thread.isAlive())
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Re-read the security policy, since the standard policy file
+     * refers to system properties (like resultDir) that change from
+     * one run to the next.
+     */
+    private static void refreshPolicy()
+    {
+        if (System.getSecurityManager() != null)
+        {
+            Policy.getPolicy().refresh();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static List<String[]> formattersOf(Properties request)
+    {
+        List<String[]> result = new ArrayList<String[]>();
+        for (int i = 0; ; i++)
+        {
+            String className =
+                request.getProperty(FORMATTER_PREFIX + i + ".classname");
+            if (className == null)
+            {
+                break;
+            }
+            result.add(new String[] {
+                className,
+                request.getProperty(
+                    FORMATTER_PREFIX + i + ".extension", ".txt")
+            });
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    private static URL[] classPathOf(String classPath)
+        throws MalformedURLException
+    {
+        String[] entries = split(classPath, File.pathSeparator);
+        URL[] result = new URL[entries.length];
+        for (int i = 0; i < entries.length; i++)
+        {
+            result[i] = new File(entries[i]).toURI().toURL();
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    private static String[] split(String value, String separator)
+    {
+        List<String> result = new ArrayList<String>();
+        int start = 0;
+        while (start <= value.length())
+        {
+            int end = value.indexOf(separator, start);
+            if (end < 0)
+            {
+                end = value.length();
+            }
+            String item = value.substring(start, end).trim();
+            if (item.length() > 0)
+            {
+                result.add(item);
+            }
+            start = end + separator.length();
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * An output stream that passes everything written to it on to a
+     * test runner, as standard output or standard error.
+     */
+    private static class RunnerOutput
+        extends OutputStream
+    {
+        public RunnerOutput(JUnitTestRunner runner, boolean isError)
+        {
+            this.runner = runner;
+            this.isError = isError;
+        }
+
+        public void write(int b)
+        {
+            write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len)
+        {
+            String text = new String(b, off, len);
+            if (isError)
+            {
+                runner.handleErrorOutput(text);
+            }
+            else
+            {
+                runner.handleOutput(text);
+            }
+        }
+
+        private final JUnitTestRunner runner;
+        private final boolean isError;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The results of one request, filled in by the thread that runs it.
+     */
+    private static class Outcome
+    {
+        volatile boolean finished;
+        volatile String message;
+        int retCode = JUnitTestRunner.SUCCESS;
+        long tests;
+        long failures;
+        long errors;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    /** Request property: the class path, using the platform separator. */
+    public static final String CLASSPATH = "classpath";
+
+    /** Request property: the directory to write result files into. */
+    public static final String TODIR = "todir";
+
+    /** Request property: comma-separated test class names.  Also used
+     *  in the response, for the number of tests run. */
+    public static final String TESTS = "tests";
+
+    /** Request property: the time limit for the run, in milliseconds.
+     *  It must be greater than zero. */
+    public static final String TIMEOUT = "timeout";
+
+    /** Request property: the assertion option (like -ea or -da) for the
+     *  test classes. */
+    public static final String ASSERTIONS = "assertions";
+
+    /** Request property: space-separated options, like -Xmx512m, that
+     *  the daemon's JVM must have been started with. */
+    public static final String JVM_OPTIONS = "jvmoptions";
+
+    /** Request property prefix: formatter.<i>n</i>.classname and
+     *  formatter.<i>n</i>.extension, numbered from 0. */
+    public static final String FORMATTER_PREFIX = "formatter.";
+
+    /** Request property prefix: system properties for the run, which
+     *  must be among the {@link #RUN_PROPERTIES}. */
+    public static final String PROPERTY_PREFIX = "property.";
+
+    /** Response property: ok, busy, timeout, or error. */
+    public static final String STATUS = "status";
+
+    /** Response property: a message describing any problem. */
+    public static final String MESSAGE = "message";
+
+    /** Response property: the worst return code of any test class. */
+    public static final String RETCODE = "retcode";
+
+    /** Response property: the number of failures. */
+    public static final String FAILURES = "failures";
+
+    /** Response property: the number of errors. */
+    public static final String ERRORS = "errors";
+
+    /** Response property: true if the daemon is exiting after this run. */
+    public static final String RECYCLE = "recycle";
+
+    public static final String STATUS_OK      = "ok";
+    public static final String STATUS_BUSY    = "busy";
+    public static final String STATUS_TIMEOUT = "timeout";
+    public static final String STATUS_ERROR   = "error";
+
+    /** The system properties a request may set: the ones the build
+     *  passes to the forked JVMs that run the reference tests. */
+    public static final Set<String> RUN_PROPERTIES =
+        Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "ProfilingSecurityManager.output",
+            "ProfilingSecurityManager.policy",
+            "ProfilingSecurityManager.summary",
+            "ant.home",
+            "resultDir",
+            "scriptHome",
+            "pluginHome",
+            "workingDir",
+            "assignmentClassDir",
+            "instructorClassDir",
+            "student.TestCase.trimStackTraces",
+            "net.sf.webcat.plugins.javatddplugin.PlistJUnitResultFormatter"
+                + ".streaming",
+            "student.testingsupport.junit4.AdaptiveTimeout.ceiling",
+            "student.testingsupport.junit4.AdaptiveTimeout.maximum",
+            "student.testingsupport.junit4.AdaptiveTimeout.minimum",
+            "student.testingsupport.junit4.AdaptiveTimeout.threshold",
+            "student.testingsupport.junit4.AdaptiveTimeout.rampup",
+            "student.testingsupport.junit4.AdaptiveTimeout.rampdown",
+            "student.testingsupport.junit4.AdaptiveTimeout.logfile",
+            "student.testingsupport.junit4.AdaptiveTimeout.user")));
+
+    private static final int DEFAULT_MAX_RUNS = 50;
+    private static final int BACKLOG = 16;
+    private static final long LEAK_GRACE_PERIOD = 500;
+
+    private static volatile boolean serving;
+
+    private final int port;
+    private final int maxRuns;
+    private volatile int runs;
+    private volatile boolean mustRecycle;
+    private boolean busy;
+    private ServerSocket server;
+}
@@ -0,0 +1,238 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.Parameter;
+import org.apache.tools.ant.types.selectors.BaseExtendSelector;
+
+//-------------------------------------------------------------------------
+/**
+ *  An ANT file selector that splits a set of test class files into a
+ *  fixed number of shards, so that each shard can be run in its own
+ *  forked JVM.  The selector lists the files matching the same include
+ *  and exclude patterns as the fileset, sorts them by path, and deals
+ *  them out to the shards in turn, so the shards differ in size by at
+ *  most one file, and the same set of files always gives the same
+ *  shards.  Use it in a fileset like this:
+ *  <pre>
+ *  &lt;custom classname="net.sf.webcat.plugins.javatddplugin.TestShardSelector"
+ *          classpath="..."&gt;
+ *    &lt;param name="shard" value="0"/&gt;
+ *    &lt;param name="count" value="${testShards}"/&gt;
+ *    &lt;param name="slots" value="8"/&gt;
+ *    &lt;param name="includes" value="${refTestClassPattern}"/&gt;
+ *    &lt;param name="excludes" value="${refTestClassExclusionPattern}"/&gt;
+ *    &lt;param name="casesensitive" value="false"/&gt;
+ *  &lt;/custom&gt;
+ *  </pre>
+ *  <p>
+ *  The <code>slots</code> parameter gives the number of shards the build
+ *  file actually runs.  If <code>count</code> is larger, it is reduced to
+ *  <code>slots</code>, so no test is ever left out.  A file that does not
+ *  match the patterns goes in shard 0.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class TestShardSelector
+    extends BaseExtendSelector
+{
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    @Override
+    public void setParameters(Parameter... parameters)
+    {
+        super.setParameters(parameters);
+        if (parameters != null)
+        {
+            for (Parameter parameter : parameters)
+            {
+                String name = parameter.getName();
+                if ("shard".equalsIgnoreCase(name))
+                {
+                    shard = parseInt(name, parameter.getValue());
+                }
+                else if ("count".equalsIgnoreCase(name))
+                {
+                    count = parseInt(name, parameter.getValue());
+                }
+                else if ("slots".equalsIgnoreCase(name))
+                {
+                    slots = parseInt(name, parameter.getValue());
+                }
+                else if ("includes".equalsIgnoreCase(name))
+                {
+                    includes = parameter.getValue();
+                }
+                else if ("excludes".equalsIgnoreCase(name))
+                {
+                    excludes = parameter.getValue();
+                }
+                else if ("casesensitive".equalsIgnoreCase(name))
+                {
+                    caseSensitive = Project.toBoolean(parameter.getValue());
+                }
+                else
+                {
+                    setError("Invalid parameter " + name);
+                }
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public void verifySettings()
+    {
+        if (shard < 0)
+        {
+            setError("The shard parameter must be at least 0");
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public boolean isSelected(File basedir, String filename, File file)
+    {
+        validate();
+        if (positions == null || !basedir.equals(positionsBase))
+        {
+            positions = positionsOf(basedir);
+            positionsBase = basedir;
+        }
+        Integer position = positions.get(filename.replace('\\', '/'));
+        int shards = effectiveCount();
+        return (position == null)
+            ? (shard == 0)
+            : (shardOf(position.intValue(), shards) == shard);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determine which shard a file belongs to.
+     * @param position the file's position in the sorted file list
+     * @param shards   the number of shards
+     * @return the shard number, from 0 to shards - 1
+     */
+    public static int shardOf(int position, int shards)
+    {
+        if (shards <= 1)
+        {
+            return 0;
+        }
+        return position % shards;
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private int effectiveCount()
+    {
+        int result = (count < 1) ? 1 : count;
+        if (slots > 0 && result > slots)
+        {
+            result = slots;
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * List the files under basedir that match the patterns, sorted by
+     * path, and map each one to its position in the list.
+     */
+    private Map<String, Integer> positionsOf(File basedir)
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(basedir);
+        scanner.setIncludes(patterns(includes));
+        scanner.setExcludes(patterns(excludes));
+        scanner.setCaseSensitive(caseSensitive);
+        scanner.scan();
+        String[] files = scanner.getIncludedFiles();
+        for (int i = 0; i < files.length; i++)
+        {
+            files[i] = files[i].replace('\\', '/');
+        }
+        Arrays.sort(files);
+        Map<String, Integer> result = new HashMap<String, Integer>();
+        for (int i = 0; i < files.length; i++)
+        {
+            result.put(files[i], i);
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    private static String[] patterns(String list)
+    {
+        if (list == null || list.trim().length() == 0)
+        {
+            return null;
+        }
+        return list.trim().split("[,\\s]+");
+    }
+
+
+    // ----------------------------------------------------------
+    private int parseInt(String name, String value)
+    {
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            setError("Invalid " + name + " value: " + value);
+            return 0;
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private int shard = 0;
+    private int count = 1;
+    private int slots = 0;
+    private String includes;
+    private String excludes;
+    private boolean caseSensitive = true;
+    private Map<String, Integer> positions;
+    private File positionsBase;
+}
@@ -98,18 +98,24 @@ public class TestSuiteOptions
     // ----------------------------------------------------------
     private void loadFromAnnotations()
     {
-        try
+        suiteClass = HintOptionsCache.classForName(
+            suite.getName(), TestSuiteOptions.class.getClassLoader() );
+        if ( suiteClass == null )
         {
-            suiteClass = Class.forName(  suite.getName() );
-        }
-        catch ( ClassNotFoundException e )
-        {
-            // Ignore this one
+            // The test classes may live in a child class loader, as they
+            // do in the TestRunnerDaemon
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if ( loader != null
+                 && loader != TestSuiteOptions.class.getClassLoader() )
+            {
+                suiteClass = HintOptionsCache.classForName(
+                    suite.getName(), loader );
+            }
         }
 
         if ( suiteClass != null )
         {
-            loadFromAnnotations( suiteClass );
+            HintOptionsCache.loadFromAnnotations( this, suiteClass );
             setStackTraceStopFilters( new String[] { suite.getName() } );
         }
     }
@@ -0,0 +1,591 @@
+/*==========================================================================*\
+ |  $Id$
+ |*-------------------------------------------------------------------------*|
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU General Public License as published by
+ |  the Free Software Foundation; either version 2 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU General Public License
+ |  along with Web-CAT; if not, write to the Free Software
+ |  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ |
+ |  Project manager: Stephen Edwards <edwards@cs.vt.edu>
+ |  Virginia Tech CS Dept, 660 McBryde Hall (0106), Blacksburg, VA 24061 USA
+\*==========================================================================*/
+
+package net.sf.webcat.plugins.javatddplugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Task;
+
+//-------------------------------------------------------------------------
+/**
+ *  An ANT task that reads the Checkstyle and PMD XML reports in streaming
+ *  passes and merges them into one compact violation index, so that
+ *  execute.pl does not have to load either report into memory.  The
+ *  index looks like this:
+ *  <pre>
+ *  &lt;violations&gt;
+ *    &lt;file name="..."&gt;
+ *      &lt;violation rule="..." line="..." .../&gt;
+ *      &lt;violation rule="..." omitted="..."/&gt;
+ *    &lt;/file&gt;
+ *  &lt;/violations&gt;
+ *  </pre>
+ *  <p>
+ *  Violations are kept in the order execute.pl used to read them from the
+ *  reports: all of the Checkstyle files, then all of the PMD files, each
+ *  in report order, and the violations in each file in document order.
+ *  The order matters because execute.pl stops deducting points once a
+ *  group reaches <code>maxViolationsPerGroup</code>.  Each violation
+ *  keeps the attributes (and, for PMD, the message text) of the report
+ *  element it came from, except that the Checkstyle <code>source</code>
+ *  attribute is replaced by the short <code>rule</code> name used in the
+ *  markup properties.
+ *  </p><p>
+ *  Only the first violations of each rule in a file are kept.  The
+ *  limit is one more than the rule's <code>maxBeforeCollapsing</code>
+ *  setting in the markup properties, since beyond that execute.pl
+ *  collapses them into a single message anyway, and can be lowered
+ *  with <code>maxPerRule</code>.  <code>maxPerGroup</code> also limits
+ *  the violations kept for a whole group in a file.  Each run of
+ *  violations of one rule that are not kept is still counted, in the
+ *  <code>omitted</code> attribute of a violation that takes its place,
+ *  so that the scoring sees every one of them.
+ *  </p>
+ *
+ *  @version $Id$
+ */
+public class ViolationIndex
+    extends Task
+{
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Set the Checkstyle XML report to read.
+     * @param checkstyleFile the report
+     */
+    public void setCheckstyleFile(File checkstyleFile)
+    {
+        this.checkstyleFile = checkstyleFile;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the PMD XML report to read.
+     * @param pmdFile the report
+     */
+    public void setPmdFile(File pmdFile)
+    {
+        this.pmdFile = pmdFile;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the file to write the index to.
+     * @param destFile the index file
+     */
+    public void setDestFile(File destFile)
+    {
+        this.destFile = destFile;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the markup properties used to find each rule's group and
+     * collapsing limit.
+     * @param ruleProperties the markup properties file
+     */
+    public void setRuleProperties(File ruleProperties)
+    {
+        this.ruleProperties = ruleProperties;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the most violations of a single rule to keep for a file.
+     * @param maxPerRule the limit, or 0 for no limit beyond the rule's
+     * collapsing limit
+     */
+    public void setMaxPerRule(int maxPerRule)
+    {
+        this.maxPerRule = maxPerRule;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the most violations of a single group to keep for a file.
+     * @param maxPerGroup the limit, or 0 for no limit
+     */
+    public void setMaxPerGroup(int maxPerGroup)
+    {
+        this.maxPerGroup = maxPerGroup;
+    }
+
+
+    // ----------------------------------------------------------
+    public void execute()
+        throws BuildException
+    {
+        if (destFile == null)
+        {
+            throw new BuildException("destfile is required", getLocation());
+        }
+        Properties props = new Properties();
+        if (ruleProperties != null && ruleProperties.exists())
+        {
+            try
+            {
+                InputStream in = new FileInputStream(ruleProperties);
+                try
+                {
+                    props.load(in);
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            catch (IOException e)
+            {
+                throw new BuildException(e, getLocation());
+            }
+        }
+
+        List<FileEntry> files = new ArrayList<FileEntry>();
+        Map<String, FileLimits> limits = new HashMap<String, FileLimits>();
+        boolean found =
+            read(checkstyleFile, "error", props, files, limits);
+        found |= read(pmdFile, "violation", props, files, limits);
+        if (!found)
+        {
+            log("No Checkstyle or PMD report to index");
+            return;
+        }
+
+        try
+        {
+            OutputStream out =
+                new BufferedOutputStream(new FileOutputStream(destFile));
+            try
+            {
+                write(files, out);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BuildException(e, getLocation());
+        }
+        catch (XMLStreamException e)
+        {
+            throw new BuildException(e, getLocation());
+        }
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Add the violations from one report to the index.
+     * @param report the report, which may be null or missing
+     * @param element the name of the report's violation elements
+     * @param props the markup properties
+     * @param files the index, to which the report's files are added
+     * @param limits the violations kept so far, by file name
+     * @return true if the report exists
+     */
+    private boolean read(
+        File report,
+        String element,
+        Properties props,
+        List<FileEntry> files,
+        Map<String, FileLimits> limits)
+    {
+        if (report == null || !report.exists())
+        {
+            return false;
+        }
+        try
+        {
+            InputStream in =
+                new BufferedInputStream(new FileInputStream(report));
+            try
+            {
+                XMLInputFactory factory = XMLInputFactory.newInstance();
+                factory.setProperty(
+                    XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+                factory.setProperty(
+                    XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                    Boolean.FALSE);
+                XMLStreamReader reader = factory.createXMLStreamReader(in);
+                try
+                {
+                    FileEntry file = null;
+                    FileLimits fileLimits = null;
+                    while (reader.hasNext())
+                    {
+                        if (reader.next() != XMLStreamConstants.START_ELEMENT)
+                        {
+                            continue;
+                        }
+                        String name = reader.getLocalName();
+                        if ("file".equals(name))
+                        {
+                            file = null;
+                            String fileName =
+                                reader.getAttributeValue(null, "name");
+                            if (fileName != null)
+                            {
+                                fileName = fileName.replace('\\', '/');
+                                file = new FileEntry(fileName);
+                                files.add(file);
+                                fileLimits = limits.get(fileName);
+                                if (fileLimits == null)
+                                {
+                                    fileLimits = new FileLimits();
+                                    limits.put(fileName, fileLimits);
+                                }
+                            }
+                        }
+                        else if (element.equals(name) && file != null)
+                        {
+                            add(file, fileLimits, new Violation(reader),
+                                props);
+                        }
+                    }
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BuildException(e, getLocation());
+        }
+        catch (XMLStreamException e)
+        {
+            throw new BuildException(
+                "Cannot read " + report + ": " + e, e, getLocation());
+        }
+        return true;
+    }
+
+
+    // ----------------------------------------------------------
+    private void add(
+        FileEntry file,
+        FileLimits limits,
+        Violation violation,
+        Properties props)
+    {
+        RuleEntry rule = limits.rules.get(violation.rule);
+        if (rule == null)
+        {
+            rule = new RuleEntry();
+            rule.group =
+                ruleSetting(props, violation.rule, "group", "defaultGroup");
+            rule.limit = maxPerRule;
+            String collapse = ruleSetting(
+                props, violation.rule, "maxBeforeCollapsing", null);
+            if (collapse != null)
+            {
+                try
+                {
+                    int limit = Integer.parseInt(collapse.trim()) + 1;
+                    if (limit > 0 && (rule.limit <= 0 || limit < rule.limit))
+                    {
+                        rule.limit = limit;
+                    }
+                }
+                catch (NumberFormatException e)
+                {
+                    // Not a plain number, so no limit from it
+                }
+            }
+            limits.rules.put(violation.rule, rule);
+        }
+
+        Integer inGroup = limits.groups.get(rule.group);
+        int keptInGroup = (inGroup == null) ? 0 : inGroup.intValue();
+        if ((rule.limit > 0 && rule.kept >= rule.limit)
+            || (maxPerGroup > 0 && keptInGroup >= maxPerGroup))
+        {
+            Violation last = file.violations.isEmpty()
+                ? null
+                : file.violations.get(file.violations.size() - 1);
+            if (last != null && last.omitted > 0
+                && last.rule.equals(violation.rule))
+            {
+                last.omitted++;
+            }
+            else
+            {
+                file.violations.add(new Violation(violation.rule));
+            }
+        }
+        else
+        {
+            rule.kept++;
+            file.violations.add(violation);
+            limits.groups.put(rule.group, keptInGroup + 1);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Look up a rule setting in the markup properties, the same way
+     * execute.pl's ruleSetting() does.
+     * @param props the markup properties
+     * @param rule the rule name
+     * @param prop the setting to look up
+     * @param defaultValue the value to use if there is no setting
+     * @return the setting
+     */
+    private static String ruleSetting(
+        Properties props, String rule, String prop, String defaultValue)
+    {
+        String value = props.getProperty(rule + "." + prop);
+        if (value == null)
+        {
+            String group = props.getProperty(rule + ".group");
+            if (group == null)
+            {
+                group = props.getProperty("ruleDefault.group");
+            }
+            if (group != null)
+            {
+                value = props.getProperty(group + ".ruleDefault." + prop);
+            }
+            if (value == null)
+            {
+                value = props.getProperty("ruleDefault." + prop);
+            }
+            if (value == null)
+            {
+                value = defaultValue;
+            }
+        }
+        return value;
+    }
+
+
+    // ----------------------------------------------------------
+    private static void write(List<FileEntry> files, OutputStream out)
+        throws XMLStreamException
+    {
+        XMLStreamWriter writer =
+            XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeCharacters("\n");
+        writer.writeStartElement("violations");
+        for (FileEntry file : files)
+        {
+            writer.writeCharacters("\n  ");
+            writer.writeStartElement("file");
+            writer.writeAttribute("name", file.name);
+            for (Violation violation : file.violations)
+            {
+                writer.writeCharacters("\n    ");
+                violation.write(writer);
+            }
+            writer.writeCharacters("\n  ");
+            writer.writeEndElement();
+        }
+        writer.writeCharacters("\n");
+        writer.writeEndElement();
+        writer.writeCharacters("\n");
+        writer.writeEndDocument();
+        writer.close();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The violations one report lists for one file, in report order.
+     */
+    private static class FileEntry
+    {
+        // ----------------------------------------------------------
+        public FileEntry(String name)
+        {
+            this.name = name;
+        }
+
+
+        private String name;
+        private List<Violation> violations = new ArrayList<Violation>();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * How many violations of each rule and group have been kept for one
+     * file, across all of the reports.
+     */
+    private static class FileLimits
+    {
+        private Map<String, RuleEntry> rules =
+            new HashMap<String, RuleEntry>();
+        private Map<String, Integer> groups = new HashMap<String, Integer>();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The violations of one rule kept for one file.
+     */
+    private static class RuleEntry
+    {
+        private String group;
+        private int limit;
+        private int kept;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * One violation, as read from a report.
+     */
+    private static class Violation
+    {
+        // ----------------------------------------------------------
+        public Violation(XMLStreamReader reader)
+            throws XMLStreamException
+        {
+            int count = reader.getAttributeCount();
+            attributes = new String[2 * count];
+            for (int i = 0; i < count; i++)
+            {
+                String name = reader.getAttributeLocalName(i);
+                String value = reader.getAttributeValue(i);
+                if ("rule".equals(name))
+                {
+                    rule = value;
+                }
+                else if ("source".equals(name))
+                {
+                    // A Checkstyle check class name, which the markup
+                    // properties know by its short name
+                    name = "rule";
+                    value = value.replaceFirst(
+                        "^com\\.puppycrawl\\.tools\\.checkstyle\\.checks.*\\.",
+                        "");
+                    value = value.replaceFirst("Check$", "");
+                    rule = value;
+                }
+                attributes[2 * i] = name;
+                attributes[2 * i + 1] = value;
+            }
+            if (rule == null)
+            {
+                rule = "";
+            }
+            text = reader.getElementText().trim();
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Create a placeholder for one violation that was not kept.
+         * @param rule the rule violated
+         */
+        public Violation(String rule)
+        {
+            this.rule = rule;
+            attributes = new String[] { "rule", rule };
+            text = "";
+            omitted = 1;
+        }
+
+
+        // ----------------------------------------------------------
+        public void write(XMLStreamWriter writer)
+            throws XMLStreamException
+        {
+            if (text.length() == 0)
+            {
+                writer.writeEmptyElement("violation");
+            }
+            else
+            {
+                writer.writeStartElement("violation");
+            }
+            for (int i = 0; i < attributes.length; i += 2)
+            {
+                writer.writeAttribute(attributes[i], attributes[i + 1]);
+            }
+            if (omitted > 0)
+            {
+                writer.writeAttribute("omitted", Integer.toString(omitted));
+            }
+            if (text.length() > 0)
+            {
+                writer.writeCharacters(text);
+                writer.writeEndElement();
+            }
+        }
+
+
+        private String   rule;
+        private String[] attributes;
+        private String   text;
+        private int      omitted;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private File checkstyleFile;
+    private File pmdFile;
+    private File destFile;
+    private File ruleProperties;
+    private int  maxPerRule;
+    private int  maxPerGroup;
+}
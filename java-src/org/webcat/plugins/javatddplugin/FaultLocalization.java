@@ -0,0 +1,287 @@
+package org.webcat.plugins.javatddplugin;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+
+/**
+ * Spectrum-based fault localization over the per-test coverage that
+ * {@link SpectrumJUnitResultFormatter} records while the reference tests
+ * run, so the tests do not have to be run again under GZoltar.  Each
+ * executed line of a student class is a component of a
+ * {@link SpectrumMatrix}; its suspiciousness is computed with the Ochiai,
+ * Tarantula or DStar (with * = 2) formula from how many passing and
+ * failing tests executed it.  The results are
+ * written in the same gzoltar.csv and gzoltar.xml formats as
+ * {@link ZoltarTest}: the lines executed by the failing tests in the
+ * classes of the first gzoltar.test.depth failures (or all failures, if
+ * the depth is zero), scored against the whole suite.
+ */
+public class FaultLocalization
+{
+    private static Logger log = Logger.getLogger(FaultLocalization.class);
+    private static String gzXmlFile = System.getProperty("gzoltar.xml.output");
+    private static String gzCsvFile = System.getProperty("gzoltar.csv.output");
+    private static String gzStudentPid =
+        System.getProperty("gzoltar.student.pid");
+    private static String gzStudentBinDir =
+        System.getProperty("gzoltar.student.bin");
+    private static String gzSpectrumFile =
+        System.getProperty("gzoltar.spectrum.input");
+    private static String gzFormula =
+        System.getProperty("gzoltar.formula", "ochiai");
+    private static Integer gzTestDepth =
+        Integer.parseInt(System.getProperty("gzoltar.test.depth", "1"));
+
+    public static void main(String[] args)
+    {
+        BasicConfigurator.configure();
+        log.setLevel(Level.INFO);
+
+        try
+        {
+            FaultLocalization localizer =
+                new FaultLocalization(new File(gzStudentBinDir));
+            localizer.readSpectra(new File(gzSpectrumFile));
+            log.info(localizer.matrix.testCount() + " tests cover "
+                + localizer.matrix.componentCount() + " lines");
+            localizer.writeResults(gzFormula, gzTestDepth, gzCsvFile,
+                gzXmlFile, gzStudentPid);
+        }
+        catch (Exception e)
+        {
+            log.error(e);
+        }
+    }
+
+    /**
+     * Creates a new object.
+     * @param classDir the directory holding the student's (uninstrumented)
+     *     class files
+     */
+    public FaultLocalization(File classDir)
+    {
+        this.classDir = classDir;
+    }
+
+    /**
+     * Reads the test records written by
+     * {@link SpectrumJUnitResultFormatter} and adds them to the coverage
+     * matrix.
+     * @param spectrumFile the file to read
+     * @throws IOException if the file cannot be read
+     */
+    public void readSpectra(File spectrumFile)
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(spectrumFile)));
+        try
+        {
+            while (true)
+            {
+                String name;
+                try
+                {
+                    name = in.readUTF();
+                }
+                catch (EOFException e)
+                {
+                    break;
+                }
+                boolean passed = in.readBoolean();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                addTest(name, passed, data);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Adds one test to the coverage matrix.
+     * @param name the test name, as <code>Class#method</code>
+     * @param passed true if the test passed
+     * @param executionData the JaCoCo execution data for the test
+     * @throws IOException if the data or a class file cannot be read
+     */
+    public void addTest(String name, boolean passed, byte[] executionData)
+        throws IOException
+    {
+        int test = matrix.addTest(name, passed);
+
+        final List<ExecutionData> classes = new ArrayList<ExecutionData>();
+        ExecutionDataReader reader = new ExecutionDataReader(
+            new ByteArrayInputStream(executionData));
+        reader.setSessionInfoVisitor(new ISessionInfoVisitor() {
+            public void visitSessionInfo(SessionInfo info) {
+                // Not needed
+            }
+        });
+        reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+            public void visitClassExecution(ExecutionData data) {
+                if (data.hasHits())
+                {
+                    classes.add(data);
+                }
+            }
+        });
+        reader.read();
+
+        for (ExecutionData data : classes)
+        {
+            for (int component : coveredComponents(data))
+            {
+                matrix.setCovered(component, test);
+            }
+        }
+    }
+
+    /**
+     * Scores every line and writes the suspicious ones to the CSV and XML
+     * files read by the heatmap.
+     * @param formula "ochiai", "tarantula" or "dstar"
+     * @param testDepth how many failures to report lines for, or zero
+     *     for all of them
+     * @param csvFile the CSV file to append to, or null
+     * @param xmlFile the XML file to write, or null
+     * @param pid the submission identifier for the CSV file
+     * @throws Exception if the results cannot be written
+     */
+    public void writeResults(String formula, int testDepth, String csvFile,
+        String xmlFile, String pid)
+        throws Exception
+    {
+        double[] scores = matrix.scores(formula, matrix.allTests());
+
+        // Lines executed by failing tests in the classes of the first
+        // testDepth failures, as ZoltarTest reports them
+        List<String> failedClasses = new ArrayList<String>();
+        int failures = 0;
+        for (int test = 0; test < matrix.testCount()
+            && (testDepth == 0 || failures < testDepth); test++)
+        {
+            if (matrix.failed(test))
+            {
+                String name = ZoltarTest.testClassName(matrix.testName(test));
+                if (!failedClasses.contains(name))
+                {
+                    failedClasses.add(name);
+                }
+                failures++;
+            }
+        }
+        long[] failedRows = failedClasses.isEmpty()
+            ? null
+            : ZoltarTest.failedRows(matrix, failedClasses);
+
+        ZoltarTest.reportSuspects(matrix, scores, failedRows, "CLMS",
+            csvFile, xmlFile, pid);
+    }
+
+    /**
+     * Finds the lines executed in one class, as component ids.  Classes
+     * are only analyzed once for each distinct set of probes.
+     */
+    private int[] coveredComponents(ExecutionData data)
+        throws IOException
+    {
+        String vmName = data.getName();
+        String simpleName = vmName.substring(vmName.lastIndexOf('/') + 1);
+        if (simpleName.indexOf("Test") != -1)
+        {
+            // A test class, not student code
+            return new int[0];
+        }
+
+        boolean[] probes = data.getProbes();
+        char[] key = new char[probes.length];
+        for (int i = 0; i < probes.length; i++)
+        {
+            key[i] = probes[i] ? '1' : '0';
+        }
+        String cacheKey = vmName + ':' + new String(key);
+        int[] result = analyzed.get(cacheKey);
+        if (result != null)
+        {
+            return result;
+        }
+
+        List<Integer> covered = new ArrayList<Integer>();
+        File classFile = new File(classDir, vmName + ".class");
+        if (classFile.exists())
+        {
+            ExecutionDataStore store = new ExecutionDataStore();
+            store.put(data);
+            CoverageBuilder builder = new CoverageBuilder();
+            Analyzer analyzer = new Analyzer(store, builder);
+            InputStream in =
+                new BufferedInputStream(new FileInputStream(classFile));
+            try
+            {
+                analyzer.analyzeClass(in, classFile.getPath());
+            }
+            finally
+            {
+                in.close();
+            }
+            for (IClassCoverage cc : builder.getClasses())
+            {
+                String className = cc.getName().replace('/', '.');
+                for (IMethodCoverage mc : cc.getMethods())
+                {
+                    String desc = mc.getDesc();
+                    String method = mc.getName()
+                        + desc.substring(0, desc.indexOf(')') + 1);
+                    if (mc.getFirstLine() < 0)
+                    {
+                        // No debug information
+                        continue;
+                    }
+                    for (int line = mc.getFirstLine();
+                        line <= mc.getLastLine(); line++)
+                    {
+                        if (mc.getLine(line).getInstructionCounter()
+                            .getCoveredCount() > 0)
+                        {
+                            covered.add(
+                                matrix.component(className, line, method));
+                        }
+                    }
+                }
+            }
+        }
+        else
+        {
+            log.debug("no class file for " + vmName);
+        }
+
+        result = new int[covered.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = covered.get(i);
+        }
+        analyzed.put(cacheKey, result);
+        return result;
+    }
+
+    private File classDir;
+    private SpectrumMatrix matrix = new SpectrumMatrix();
+    private Map<String, int[]> analyzed = new HashMap<String, int[]>();
+}
@@ -0,0 +1,140 @@
+package org.webcat.plugins.javatddplugin;
+
+import java.io.*;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitResultFormatter;
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitTest;
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitVersionHelper;
+import org.jacoco.agent.rt.IAgent;
+import org.jacoco.agent.rt.RT;
+
+/**
+ * A formatter for the ANT junit task that records which code each test
+ * executes, so that {@link FaultLocalization} can rank suspicious lines
+ * without running the tests again under GZoltar.  The test JVM must be
+ * started with the JaCoCo agent (with output=none); its execution data is
+ * reset when each test starts and collected when it ends.
+ * <p>
+ * Each test is written as one record: the test name (as
+ * <code>Class#method</code>), whether it passed, and the JaCoCo execution
+ * data for the test in JaCoCo's exec format, preceded by its length.
+ * Records have no file header, so the output of several suites can simply
+ * be concatenated.  If the agent is not running, nothing is written.
+ */
+public class SpectrumJUnitResultFormatter
+    implements JUnitResultFormatter
+{
+    public void setOutput(OutputStream out)
+    {
+        this.out = out;
+        try
+        {
+            agent = RT.getAgent();
+            output = new DataOutputStream(new BufferedOutputStream(out));
+        }
+        catch (IllegalStateException e)
+        {
+            // JaCoCo agent is not running
+            agent = null;
+        }
+        catch (NoClassDefFoundError e)
+        {
+            // JaCoCo agent is not on the class path
+            agent = null;
+        }
+    }
+
+    public void setSystemOutput(String out)
+    {
+        // Not needed
+    }
+
+    public void setSystemError(String err)
+    {
+        // Not needed
+    }
+
+    public void startTestSuite(JUnitTest suite)
+    {
+        // Nothing to do
+    }
+
+    public void endTestSuite(JUnitTest suite)
+    {
+        try
+        {
+            if (output != null)
+            {
+                output.flush();
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("Unable to write test spectrum: " + e);
+        }
+        finally
+        {
+            if (out != System.out && out != System.err)
+            {
+                try
+                {
+                    out.close();
+                }
+                catch (IOException e)
+                {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    public void startTest(Test test)
+    {
+        passed = true;
+        if (agent != null)
+        {
+            // Drop anything executed between tests
+            agent.reset();
+        }
+    }
+
+    public void endTest(Test test)
+    {
+        if (agent == null)
+        {
+            return;
+        }
+        byte[] data = agent.getExecutionData(true);
+        try
+        {
+            output.writeUTF(JUnitVersionHelper.getTestCaseClassName(test)
+                + "#" + JUnitVersionHelper.getTestCaseName(test));
+            output.writeBoolean(passed);
+            output.writeInt(data.length);
+            output.write(data);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Unable to write test spectrum: " + e);
+            agent = null;
+        }
+    }
+
+    public void addFailure(Test test, AssertionFailedError t)
+    {
+        passed = false;
+    }
+
+    public void addError(Test test, Throwable error)
+    {
+        passed = false;
+    }
+
+    private OutputStream out;
+    private DataOutputStream output;
+    private IAgent agent;
+    private boolean passed;
+}
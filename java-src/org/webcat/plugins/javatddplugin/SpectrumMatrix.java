@@ -0,0 +1,475 @@
+package org.webcat.plugins.javatddplugin;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A coverage spectrum stored by column: for each component (a line of
+ * student code) a bitset of the tests that executed it, packed into a
+ * <code>long[]</code>.  Components and tests are identified by int ids,
+ * and class and method names are kept once each in an intern table, so
+ * scoring a large reference suite does not box a Double or build a
+ * label string per component.  Suspiciousness is computed with
+ * {@link Long#bitCount(long)} over the packed words, split across
+ * threads for large spectra.
+ */
+public class SpectrumMatrix
+{
+    /** Formula names accepted by {@link #scores(String, long[])}. */
+    public static final String OCHIAI = "ochiai";
+    public static final String TARANTULA = "tarantula";
+    public static final String DSTAR = "dstar";
+
+    /**
+     * Returns the id for the given string, adding it to the intern table
+     * if it is not already there.
+     * @param value the string
+     * @return its id
+     */
+    public int intern(String value)
+    {
+        Integer id = stringIds.get(value);
+        if (id == null)
+        {
+            id = strings.size();
+            strings.add(value);
+            stringIds.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the string with the given id.
+     * @param id the id
+     * @return the string
+     */
+    public String string(int id)
+    {
+        return strings.get(id);
+    }
+
+    /**
+     * Adds a test (a row of the matrix).
+     * @param name the test name, as <code>Class#method</code>
+     * @param passed true if the test passed
+     * @return the test's id
+     */
+    public int addTest(String name, boolean passed)
+    {
+        int test = testCount;
+        if (test == testNames.length)
+        {
+            testNames = Arrays.copyOf(testNames, test * 2);
+        }
+        testNames[test] = intern(name);
+        testCount++;
+        if (!passed)
+        {
+            failed = set(failed, test);
+        }
+        return test;
+    }
+
+    /**
+     * @return the number of tests
+     */
+    public int testCount()
+    {
+        return testCount;
+    }
+
+    /**
+     * @param test a test id
+     * @return the test's name
+     */
+    public String testName(int test)
+    {
+        return strings.get(testNames[test]);
+    }
+
+    /**
+     * @param test a test id
+     * @return true if the test failed
+     */
+    public boolean failed(int test)
+    {
+        return isSet(failed, test);
+    }
+
+    /**
+     * Returns the id of a component, adding it if it is not already
+     * there.
+     * @param className the class, with dots as separators
+     * @param line the line number
+     * @param method the method
+     * @return the component's id
+     */
+    public int component(String className, int line, String method)
+    {
+        int classId = intern(className);
+        int methodId = intern(className + "|" + method);
+        Long key = ((long)methodId << 32) | line;
+        Integer id = componentIds.get(key);
+        if (id == null)
+        {
+            id = componentCount;
+            if (id == lines.length)
+            {
+                int capacity = id * 2;
+                classIds = Arrays.copyOf(classIds, capacity);
+                methodIds = Arrays.copyOf(methodIds, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+                coverage = Arrays.copyOf(coverage, capacity);
+            }
+            classIds[id] = classId;
+            methodIds[id] = methodId;
+            lines[id] = line;
+            coverage[id] = EMPTY;
+            componentIds.put(key, id);
+            componentCount++;
+        }
+        return id;
+    }
+
+    /**
+     * @return the number of components
+     */
+    public int componentCount()
+    {
+        return componentCount;
+    }
+
+    /**
+     * @param component a component id
+     * @return the component's class
+     */
+    public String className(int component)
+    {
+        return strings.get(classIds[component]);
+    }
+
+    /**
+     * @param component a component id
+     * @return the component's line number
+     */
+    public int line(int component)
+    {
+        return lines[component];
+    }
+
+    /**
+     * @param component a component id
+     * @return the component's method
+     */
+    public String method(int component)
+    {
+        String classAndMethod = strings.get(methodIds[component]);
+        return classAndMethod.substring(classAndMethod.indexOf('|') + 1);
+    }
+
+    /**
+     * Records that a test executed a component.
+     * @param component the component id
+     * @param test the test id
+     */
+    public void setCovered(int component, int test)
+    {
+        coverage[component] = set(coverage[component], test);
+    }
+
+    /**
+     * @param component a component id
+     * @param rows a set of tests
+     * @return true if any of the tests executed the component
+     */
+    public boolean coveredByAny(int component, long[] rows)
+    {
+        long[] covered = coverage[component];
+        int words = Math.min(covered.length, rows.length);
+        for (int i = 0; i < words; i++)
+        {
+            if ((covered[i] & rows[i]) != 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a set containing every test
+     */
+    public long[] allTests()
+    {
+        long[] rows = new long[(testCount + 63) >>> 6];
+        for (int test = 0; test < testCount; test++)
+        {
+            rows[test >>> 6] |= 1L << test;
+        }
+        return rows;
+    }
+
+    /**
+     * Adds a test to a set of tests.
+     * @param rows the set, which may be null for an empty set
+     * @param test the test id
+     * @return the set, which may have been reallocated
+     */
+    public static long[] set(long[] rows, int test)
+    {
+        int word = test >>> 6;
+        if (rows == null || word >= rows.length)
+        {
+            rows = (rows == null)
+                ? new long[word + 1]
+                : Arrays.copyOf(rows, Math.max(word + 1, rows.length * 2));
+        }
+        rows[word] |= 1L << test;
+        return rows;
+    }
+
+    /**
+     * Computes the suspiciousness of every component over the given tests.
+     * DStar scores are divided by the largest one (and components that
+     * DStar scores as infinite get 1), so that all formulas give scores
+     * from 0 to 1, as the heatmap expects.
+     * @param formula {@link #OCHIAI}, {@link #TARANTULA} or {@link #DSTAR}
+     * @param rows the tests to use
+     * @return the scores, indexed by component id
+     */
+    public double[] scores(String formula, final long[] rows)
+    {
+        final int kind = formula(formula);
+        final long[] failedRows = new long[rows.length];
+        int totalFailed = 0;
+        int totalRows = 0;
+        for (int i = 0; i < rows.length; i++)
+        {
+            failedRows[i] = rows[i] & wordAt(failed, i);
+            totalFailed += Long.bitCount(failedRows[i]);
+            totalRows += Long.bitCount(rows[i]);
+        }
+        final int totalPassed = totalRows - totalFailed;
+        final int failedCount = totalFailed;
+        final double[] scores = new double[componentCount];
+
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(),
+            componentCount / COMPONENTS_PER_THREAD);
+        if (threads <= 1)
+        {
+            scoreRange(kind, rows, failedRows, failedCount, totalPassed,
+                scores, 0, componentCount);
+        }
+        else
+        {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try
+            {
+                List<Future<?>> parts = new ArrayList<Future<?>>();
+                int chunk = (componentCount + threads - 1) / threads;
+                for (int start = 0; start < componentCount; start += chunk)
+                {
+                    final int from = start;
+                    final int to = Math.min(componentCount, start + chunk);
+                    parts.add(pool.submit(new Runnable() {
+                        public void run()
+                        {
+                            scoreRange(kind, rows, failedRows, failedCount,
+                                totalPassed, scores, from, to);
+                        }
+                    }));
+                }
+                for (Future<?> part : parts)
+                {
+                    part.get();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            catch (ExecutionException e)
+            {
+                throw new IllegalStateException(e.getCause());
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+
+        if (kind == DSTAR_KIND)
+        {
+            double max = 0.0;
+            for (double score : scores)
+            {
+                if (score > max && !Double.isInfinite(score))
+                {
+                    max = score;
+                }
+            }
+            for (int component = 0; component < scores.length; component++)
+            {
+                scores[component] = Double.isInfinite(scores[component])
+                    ? 1.0
+                    : (max == 0.0 ? 0.0 : scores[component] / max);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Finds the methods containing the highest-scoring components.
+     * @param scores the component scores
+     * @param count the number of methods to return
+     * @return the components with the highest score in each of the top
+     *     methods, most suspicious first; methods whose components all
+     *     score zero are left out
+     */
+    public int[] topMethods(double[] scores, int count)
+    {
+        // Highest-scoring component in each method
+        int[] best = new int[strings.size()];
+        Arrays.fill(best, -1);
+        for (int component = 0; component < componentCount; component++)
+        {
+            int method = methodIds[component];
+            if (scores[component] != 0.0 && (best[method] == -1
+                || scores[best[method]] < scores[component]))
+            {
+                best[method] = component;
+            }
+        }
+
+        int[] top = new int[count];
+        int found = 0;
+        for (int component : best)
+        {
+            if (component == -1)
+            {
+                continue;
+            }
+            int pos = found;
+            while (pos > 0 && scores[top[pos - 1]] < scores[component])
+            {
+                pos--;
+            }
+            if (pos < count)
+            {
+                int moved = Math.min(found, count - 1) - pos;
+                System.arraycopy(top, pos, top, pos + 1, moved);
+                top[pos] = component;
+                found = Math.min(found + 1, count);
+            }
+        }
+        return Arrays.copyOf(top, found);
+    }
+
+    /**
+     * Computes the suspiciousness of a single component.
+     * @param formula {@link #OCHIAI}, {@link #TARANTULA} or {@link #DSTAR}
+     * @param ef the number of failing tests that executed it
+     * @param ep the number of passing tests that executed it
+     * @param totalFailed the number of failing tests
+     * @param totalPassed the number of passing tests
+     * @return the score, which is zero if no failing test executed it
+     */
+    public static double score(String formula, int ef, int ep,
+        int totalFailed, int totalPassed)
+    {
+        return score(formula(formula), ef, ep, totalFailed, totalPassed);
+    }
+
+    private static double score(int kind, int ef, int ep,
+        int totalFailed, int totalPassed)
+    {
+        if (ef == 0)
+        {
+            return 0.0;
+        }
+        switch (kind)
+        {
+            case OCHIAI_KIND:
+                return ef / Math.sqrt((double)totalFailed * (ef + ep));
+            case TARANTULA_KIND:
+                double failedRatio = (double)ef / totalFailed;
+                double passedRatio =
+                    (totalPassed == 0) ? 0.0 : (double)ep / totalPassed;
+                return failedRatio / (failedRatio + passedRatio);
+            default:
+                int notExecutedFailed = totalFailed - ef;
+                return (ep + notExecutedFailed == 0)
+                    ? Double.POSITIVE_INFINITY
+                    : (double)ef * ef / (ep + notExecutedFailed);
+        }
+    }
+
+    private void scoreRange(int kind, long[] rows, long[] failedRows,
+        int totalFailed, int totalPassed, double[] scores, int from, int to)
+    {
+        for (int component = from; component < to; component++)
+        {
+            long[] covered = coverage[component];
+            int words = Math.min(covered.length, rows.length);
+            int executed = 0;
+            int ef = 0;
+            for (int i = 0; i < words; i++)
+            {
+                executed += Long.bitCount(covered[i] & rows[i]);
+                ef += Long.bitCount(covered[i] & failedRows[i]);
+            }
+            scores[component] =
+                score(kind, ef, executed - ef, totalFailed, totalPassed);
+        }
+    }
+
+    private static int formula(String formula)
+    {
+        if (OCHIAI.equalsIgnoreCase(formula))
+        {
+            return OCHIAI_KIND;
+        }
+        else if (TARANTULA.equalsIgnoreCase(formula))
+        {
+            return TARANTULA_KIND;
+        }
+        else if (DSTAR.equalsIgnoreCase(formula))
+        {
+            return DSTAR_KIND;
+        }
+        throw new IllegalArgumentException("unknown formula: " + formula);
+    }
+
+    private static boolean isSet(long[] rows, int test)
+    {
+        return (wordAt(rows, test >>> 6) & (1L << test)) != 0;
+    }
+
+    private static long wordAt(long[] rows, int word)
+    {
+        return (word < rows.length) ? rows[word] : 0L;
+    }
+
+    private static final int OCHIAI_KIND = 0;
+    private static final int TARANTULA_KIND = 1;
+    private static final int DSTAR_KIND = 2;
+
+    // Below this many components per thread, scoring runs on one thread
+    private static final int COMPONENTS_PER_THREAD = 4096;
+    private static final long[] EMPTY = new long[0];
+
+    private List<String> strings = new ArrayList<String>();
+    private Map<String, Integer> stringIds = new HashMap<String, Integer>();
+
+    private int testCount;
+    private int[] testNames = new int[64];
+    private long[] failed = EMPTY;
+
+    private int componentCount;
+    private Map<Long, Integer> componentIds = new HashMap<Long, Integer>();
+    private int[] classIds = new int[256];
+    private int[] methodIds = new int[256];
+    private int[] lines = new int[256];
+    private long[][] coverage = new long[256][];
+}
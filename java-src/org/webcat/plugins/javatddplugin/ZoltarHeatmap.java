@@ -1,16 +1,17 @@
 package org.webcat.plugins.javatddplugin;
 
 import java.io.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.*;
 import java.text.DecimalFormat;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
-import org.w3c.dom.Node;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import com.github.javaparser.*;
 import com.github.javaparser.ast.*;
@@ -39,18 +40,13 @@ public class ZoltarHeatmap
         System.getProperty("gzoltar.html.title");
     private static String gzHtmlFooter =
         System.getProperty("gzoltar.html.footer");
-
-    static List<Integer> methodStartLocs = new ArrayList<Integer>();
-    static List<Integer> methodEndLocs = new ArrayList<Integer>();
-    static Map<String,Double> lineScores = new HashMap<String,Double>();
+    private static String gzCacheDir = System.getProperty("gzoltar.cache.dir");
 
     public static void main(String[] args)
     {
         BasicConfigurator.configure();
         log.setLevel(Level.DEBUG);
 
-        DecimalFormat df = new DecimalFormat("#.#####");
-
         try
         {
             /**********************************************************/
@@ -139,248 +135,65 @@ public class ZoltarHeatmap
             //Open the GZoltar results for this assignment
             /**********************************************************/
             log.info("Opening GZoltar results: " + gzXmlFile);
-            File fXmlFile = new File(gzXmlFile);
-            DocumentBuilderFactory dbFactory =
-                DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(fXmlFile);
-            doc.getDocumentElement().normalize();
 
             /**********************************************************/
             //Build a map of scores to locations in the files.
             /**********************************************************/
-
-            log.debug("Root element :"
-                + doc.getDocumentElement().getNodeName());
+            Map<String, ClassSuspects> allSuspects =
+                readSuspects(new File(gzXmlFile));
 
             /**********************************************************/
-            //Loop through the files, building the heatmap for each
+            //Render the files in parallel, then write them in order
             /**********************************************************/
 
-            for (File file: fileList)
+            List<Future<String>> fragments = new ArrayList<Future<String>>();
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,
+                Math.min(fileList.length,
+                Runtime.getRuntime().availableProcessors())));
+            try
             {
-                List<Integer> maxMethods = new ArrayList<Integer>();
-                String filename = file.getName();
-                String className =
-                    filename.substring(0, filename.lastIndexOf('.'));
-                if (filename.indexOf("Test") == -1)
+                for (File file: fileList)
                 {
-                    //File is not a student test file
-                    log.debug("+++ " + filename);
-                    writer.println("<div class=\"file\">");
-                    writer.println("<h2>" + filename + "</h2>");
-                    writer.println("<pre class=\"heat\">");
-
-                    /********************************************************/
-                    // Get all of the records for last evaluation of the
-                    // current file
-                    /********************************************************/
-
-                    try
+                    final String filename = file.getName();
+                    String className =
+                        filename.substring(0, filename.lastIndexOf('.'));
+                    if (filename.indexOf("Test") == -1)
                     {
-                        NodeList nList = doc.getElementsByTagName(className);
-
-                        log.debug("+++Looking for nodes for " + className );
-                        log.debug("+++Found " + nList.getLength() + " nodes");
-
-                        for (int temp = 0; temp < nList.getLength(); temp++)
-                        {
-                            Node nNode = nList.item(temp);
-                            log.debug("Current Element: "
-                                + nNode.getNodeName());
-
-                            if (nNode.hasChildNodes())
+                        //File is not a student test file
+                        ClassSuspects found = allSuspects.get(className);
+                        final ClassSuspects suspects = (found == null)
+                            ? new ClassSuspects()
+                            : found;
+                        fragments.add(pool.submit(new Callable<String>()
                             {
-                                NodeList tmpList = nNode.getChildNodes();
-                                log.debug("+++Found " + tmpList.getLength()
-                                    + " suspect nodes");
-
-                                for (int temp2 = 0; temp2 < tmpList.getLength();
-                                    temp2++)
+                                public String call()
+                                    throws Exception
                                 {
-                                    Node tempNode = tmpList.item(temp2);
-                                    if (tempNode.getNodeType() ==
-                                        Node.ELEMENT_NODE)
-                                    {
-                                        Element eElement = (Element) tempNode;
-
-                                        lineScores.put(eElement
-                                            .getElementsByTagName("line")
-                                            .item(0).getTextContent(),
-                                            Double.parseDouble(eElement
-                                                .getElementsByTagName("score")
-                                                .item(0)
-                                                .getTextContent()));
-
-                                        if ("yes".equals(eElement
-                                            .getElementsByTagName("most")
-                                            .item(0).getTextContent()))
-                                        {
-                                            maxMethods.add(Integer.parseInt(
-                                                eElement
-                                                .getElementsByTagName("line")
-                                                .item(0).getTextContent()));
-                                        }
-
-                                        if (log.isDebugEnabled())
-                                        {
-                                            log.debug("+++Method : "
-                                                + eElement
-                                                .getElementsByTagName("method")
-                                                .item(0).getTextContent());
-                                            log.debug("+++Line : "
-                                                + eElement
-                                                .getElementsByTagName("line")
-                                                .item(0).getTextContent());
-                                            log.debug("+++Score : "
-                                                + eElement
-                                                .getElementsByTagName("score")
-                                                .item(0).getTextContent());
-                                            log.debug("+++Most : "
-                                                + eElement
-                                                .getElementsByTagName("most")
-                                                .item(0).getTextContent());
-                                        }
-                                    }
+                                    return renderCached(filename, suspects);
                                 }
-                            }
-                        }
-                    }
-                    catch (Exception e)
-                    {
-                        log.error(e);
-                    }
-
-                    if (log.isDebugEnabled())
-                    {
-                        log.debug("**************  Line Scores  **************");
-                        printMap(lineScores);
-                        log.debug("**************  Max Methods  **************");
-                        log.debug(maxMethods);
-                    }
-                    /*******************************************************/
-                    // Parse the current file to get the locations of
-                    // constructors and methods
-                    /*******************************************************/
-                    double currScore = 0.0;
-                    int identifiedMaxMethods = 1;
-
-                    FileInputStream parserIn =
-                        new FileInputStream(new File(gzStudentDir, filename));
-                    CompilationUnit cu;
-                    try {
-                        // parse the file
-                        cu = JavaParser.parse(parserIn);
-                    }
-                    finally
-                    {
-                        parserIn.close();
-                    }
-                    new MethodVisitor().visit(cu, null);
-                    new ConstructorVisitor().visit(cu, null);
-
-                    Collections.sort(methodStartLocs);
-                    Collections.sort(methodEndLocs);
-
-                    if (log.isDebugEnabled())
-                    {
-                        log.debug("******Start of method locs******");
-                        log.debug(methodStartLocs.toString());
-                        log.debug("******End of method locs******");
-                        log.debug(methodEndLocs.toString());
+                            }));
                     }
-
-                    BufferedReader br = new BufferedReader(
-                        new FileReader(new File(gzStudentDir, filename)));
+                }
+                for (Future<String> fragment : fragments)
+                {
                     try
                     {
-                        int linenumber = 1;
-                        while ((line = br.readLine()) != null)
-                        {
-                           // System.out.println("Pre  [" + linenumber +  "]" + line);
-                           // Replace < and > with the correseponding HTML entities
-                           line = line.replace("<", "&lt;");
-                           line = line.replace(">", "&gt;");
-
-                           String lineNo = Integer.toString(linenumber);
-                           if (lineScores.containsKey(lineNo))
-                           {
-                               currScore = lineScores.get(lineNo);
-                               line = "<span style=\"background-color: hsl("
-                                   + getScoreColor(currScore)
-                                   + ", 100%, 50%)\"><a href=\"#\" data-toggle"
-                                   + "=\"tooltip\" data-html=\"true\" title=\""
-                                   + filename + ":" + linenumber
-                                   + "<br/>suspicion: " + df.format(currScore)
-                                   + "\">" + line + "</a></span>";
-                                   log.debug("Found score:" + currScore
-                                       + " at line: " + linenumber);
-                           }
-
-                           // See if the current line is the start or the end
-                           // of a method...
-                           if (methodStartLocs.indexOf(linenumber) != -1)
-                           {
-                               // Curr line has start of method
-                               Integer nextMethodLine = null;
-                               // See if the current method is a max suspicion
-                               // method
-                               if (methodStartLocs.indexOf(linenumber) + 1 <
-                                   methodStartLocs.size())
-                               {
-                                   nextMethodLine = methodStartLocs.get(
-                                       methodStartLocs.indexOf(linenumber) + 1);
-                               }
-                               else
-                               {
-                                   nextMethodLine = 1000;
-                               }
-                               log.debug("line: " + linenumber
-                                   + " nextMethodLine " + nextMethodLine );
-
-                               String divClass = "";
-                               for (int inx = linenumber; inx <= nextMethodLine;
-                                   inx++)
-                               {
-                                   if (maxMethods.contains(inx))
-                                   {
-                                       if (identifiedMaxMethods <=
-                                           gzLimitToMaxMethod)
-                                       {
-                                            log.debug("identifiedMaxMethod "
-                                                + identifiedMaxMethods
-                                                + " line: " + inx);
-                                            divClass = "method-suspect";
-                                            identifiedMaxMethods++;
-                                       }
-                                   }
-                               }
-
-                               line = "<div class=\"" + divClass + "\">" + line;
-                               log.debug("**********"+divClass+"***********");
-                           }
-                           if (methodEndLocs.indexOf(linenumber) != -1)
-                           {
-                               // Curr line has end of method
-                               line = line + "</div>";
-                           }
-
-                           writer.println(line);
-                           linenumber++;
-                        }
-                        linenumber = 1;
-                        methodStartLocs.clear();
-                        methodEndLocs.clear();
-                        lineScores.clear();
+                        writer.print(fragment.get());
                     }
-                    finally
+                    catch (ExecutionException e)
                     {
-                        br.close();
+                        log.error(e.getCause());
                     }
-                    writer.println("</pre>");
-                    writer.println("</div>");
                 }
             }
+            finally
+            {
+                pool.shutdown();
+            }
+            if (gzCacheDir != null && !gzCacheDir.isEmpty())
+            {
+                pruneCache(new File(gzCacheDir));
+            }
 
             /**********************************************************/
             // Get HTML footer template and write it to the new file
@@ -410,6 +223,173 @@ public class ZoltarHeatmap
         }
     }
 
+    /**
+     * Returns the heatmap for one source file, reusing the one rendered
+     * for an earlier submission if the file and its suspects are the
+     * same and gzoltar.cache.dir is set.
+     */
+    protected static String renderCached(String filename,
+        ClassSuspects suspects)
+        throws Exception
+    {
+        File source = new File(gzStudentDir, filename);
+        if (gzCacheDir == null || gzCacheDir.isEmpty())
+        {
+            return renderFile(source, suspects);
+        }
+
+        File cacheDir = new File(gzCacheDir);
+        File entry = new File(cacheDir, cacheKey(source, suspects) + ".html");
+        if (entry.exists())
+        {
+            log.debug("+++ " + filename + " unchanged, using " + entry);
+            entry.setLastModified(System.currentTimeMillis());
+            return readFile(entry);
+        }
+
+        String fragment = renderFile(source, suspects);
+        cacheDir.mkdirs();
+        File temp = File.createTempFile("fragment", TEMP_SUFFIX, cacheDir);
+        Writer out = new OutputStreamWriter(
+            new FileOutputStream(temp), "UTF-8");
+        try
+        {
+            out.write(fragment);
+        }
+        finally
+        {
+            out.close();
+        }
+        if (!temp.renameTo(entry))
+        {
+            // Another submission stored the same fragment first
+            temp.delete();
+        }
+        return fragment;
+    }
+
+    /**
+     * Renders the heatmap for one source file.
+     */
+    protected static String renderFile(File source, ClassSuspects suspects)
+        throws Exception
+    {
+        String filename = source.getName();
+        DecimalFormat df = new DecimalFormat("#.#####");
+        StringWriter result = new StringWriter();
+        PrintWriter writer = new PrintWriter(result);
+
+        log.debug("+++ " + filename);
+        log.debug("+++Found " + suspects.size() + " suspect lines");
+        writer.println("<div class=\"file\">");
+        writer.println("<h2>" + filename + "</h2>");
+        writer.println("<pre class=\"heat\">");
+
+        /*******************************************************/
+        // Parse the current file to get the locations of
+        // constructors and methods
+        /*******************************************************/
+        double currScore = 0.0;
+        int identifiedMaxMethods = 1;
+
+        FileInputStream parserIn = new FileInputStream(source);
+        CompilationUnit cu;
+        try {
+            // parse the file
+            cu = JavaParser.parse(parserIn);
+        }
+        finally
+        {
+            parserIn.close();
+        }
+        MethodBounds bounds = new MethodBounds();
+        new MethodVisitor().visit(cu, bounds);
+        new ConstructorVisitor().visit(cu, bounds);
+        bounds.sort();
+
+        if (log.isDebugEnabled())
+        {
+            log.debug("******Start of method locs******");
+            log.debug(Arrays.toString(bounds.starts));
+            log.debug("******End of method locs******");
+            log.debug(Arrays.toString(bounds.ends));
+        }
+
+        BufferedReader br = new BufferedReader(new FileReader(source));
+        try
+        {
+            String line;
+            int linenumber = 1;
+            while ((line = br.readLine()) != null)
+            {
+               // Replace < and > with the correseponding HTML entities
+               line = line.replace("<", "&lt;");
+               line = line.replace(">", "&gt;");
+
+               if (suspects.hasScore(linenumber))
+               {
+                   currScore = suspects.score(linenumber);
+                   line = "<span style=\"background-color: hsl("
+                       + getScoreColor(currScore)
+                       + ", 100%, 50%)\"><a href=\"#\" data-toggle"
+                       + "=\"tooltip\" data-html=\"true\" title=\""
+                       + filename + ":" + linenumber
+                       + "<br/>suspicion: " + df.format(currScore)
+                       + "\">" + line + "</a></span>";
+                       log.debug("Found score:" + currScore
+                           + " at line: " + linenumber);
+               }
+
+               // See if the current line is the start or the end
+               // of a method...
+               int start = bounds.firstStart(linenumber);
+               if (start != -1)
+               {
+                   // Curr line has start of method
+                   int nextMethodLine = (start + 1 < bounds.starts.length)
+                       ? bounds.starts[start + 1]
+                       : 1000;
+                   log.debug("line: " + linenumber
+                       + " nextMethodLine " + nextMethodLine );
+
+                   // See if the current method is a max suspicion
+                   // method
+                   String divClass = "";
+                   for (int inx = suspects.nextMostSuspect(linenumber);
+                       inx != -1 && inx <= nextMethodLine
+                       && identifiedMaxMethods <= gzLimitToMaxMethod;
+                       inx = suspects.nextMostSuspect(inx + 1))
+                   {
+                        log.debug("identifiedMaxMethod "
+                            + identifiedMaxMethods
+                            + " line: " + inx);
+                        divClass = "method-suspect";
+                        identifiedMaxMethods++;
+                   }
+
+                   line = "<div class=\"" + divClass + "\">" + line;
+                   log.debug("**********"+divClass+"***********");
+               }
+               if (bounds.isEnd(linenumber))
+               {
+                   // Curr line has end of method
+                   line = line + "</div>";
+               }
+
+               writer.println(line);
+               linenumber++;
+            }
+        }
+        finally
+        {
+            br.close();
+        }
+        writer.println("</pre>");
+        writer.println("</div>");
+        writer.flush();
+        return result.toString();
+    }
+
     protected static int getScoreColor(Double score)
     {
         Double scoreColor = 0.0;
@@ -420,11 +400,187 @@ public class ZoltarHeatmap
 
     }
 
+    /**
+     * Reads gzoltar.xml in a single streaming pass, collecting the
+     * suspicious lines of each class element (classes named more than
+     * once are merged).
+     */
+    protected static Map<String, ClassSuspects> readSuspects(File xmlFile)
+        throws IOException, XMLStreamException
+    {
+        Map<String, ClassSuspects> result =
+            new HashMap<String, ClassSuspects>();
+        InputStream in = new BufferedInputStream(new FileInputStream(xmlFile));
+        try
+        {
+            XMLStreamReader reader =
+                XMLInputFactory.newInstance().createXMLStreamReader(in);
+            // Depth 1 is <gzoltar>, 2 a class, 3 <suspect>, 4 its fields
+            int depth = 0;
+            ClassSuspects current = null;
+            StringBuilder text = new StringBuilder();
+            String method = null;
+            String line = null;
+            String score = null;
+            String most = null;
+            while (reader.hasNext())
+            {
+                switch (reader.next())
+                {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        text.setLength(0);
+                        if (depth == 2)
+                        {
+                            current = result.get(reader.getLocalName());
+                            if (current == null)
+                            {
+                                current = new ClassSuspects();
+                                result.put(reader.getLocalName(), current);
+                            }
+                        }
+                        else if (depth == 3)
+                        {
+                            method = line = score = most = null;
+                        }
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (depth == 4)
+                        {
+                            text.append(reader.getText());
+                        }
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth == 4)
+                        {
+                            String field = reader.getLocalName();
+                            if ("method".equals(field))
+                            {
+                                method = text.toString();
+                            }
+                            else if ("line".equals(field))
+                            {
+                                line = text.toString().trim();
+                            }
+                            else if ("score".equals(field))
+                            {
+                                score = text.toString().trim();
+                            }
+                            else if ("most".equals(field))
+                            {
+                                most = text.toString().trim();
+                            }
+                        }
+                        else if (depth == 3 && line != null && score != null)
+                        {
+                            if (log.isDebugEnabled())
+                            {
+                                log.debug("+++Method : " + method);
+                                log.debug("+++Line : " + line);
+                                log.debug("+++Score : " + score);
+                                log.debug("+++Most : " + most);
+                            }
+                            current.put(Integer.parseInt(line),
+                                Double.parseDouble(score), "yes".equals(most));
+                        }
+                        depth--;
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+            reader.close();
+        }
+        finally
+        {
+            in.close();
+        }
+        return result;
+    }
+
+    /**
+     * The suspicious lines of one class, indexed by line number.
+     */
+    protected static class ClassSuspects
+    {
+        public void put(int line, double score, boolean most)
+        {
+            if (line >= scores.length)
+            {
+                int oldLength = scores.length;
+                scores = Arrays.copyOf(scores,
+                    Math.max(line + 1, oldLength * 2));
+                Arrays.fill(scores, oldLength, scores.length, Double.NaN);
+            }
+            if (Double.isNaN(scores[line]))
+            {
+                size++;
+            }
+            scores[line] = score;
+            if (most)
+            {
+                mostSuspect.set(line);
+            }
+        }
+
+        public boolean hasScore(int line)
+        {
+            return line < scores.length && !Double.isNaN(scores[line]);
+        }
+
+        public double score(int line)
+        {
+            return scores[line];
+        }
+
+        public boolean isMostSuspect(int line)
+        {
+            return mostSuspect.get(line);
+        }
+
+        /**
+         * Returns the first most suspicious line at or after the given
+         * one, or -1 if there is none.
+         */
+        public int nextMostSuspect(int line)
+        {
+            return mostSuspect.nextSetBit(line);
+        }
+
+        public void writeTo(DataOutputStream out)
+            throws IOException
+        {
+            for (int line = 0; line < scores.length; line++)
+            {
+                if (!Double.isNaN(scores[line]))
+                {
+                    out.writeInt(line);
+                    out.writeDouble(scores[line]);
+                    out.writeBoolean(mostSuspect.get(line));
+                }
+            }
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        // NaN for lines without a score
+        private double[] scores = new double[0];
+        private BitSet mostSuspect = new BitSet();
+        private int size;
+    }
+
     private static class MethodVisitor
-        extends VoidVisitorAdapter<Object>
+        extends VoidVisitorAdapter<MethodBounds>
     {
         @Override
-        public void visit(MethodDeclaration n, Object arg)
+        public void visit(MethodDeclaration n, MethodBounds arg)
         {
             // here you can access the attributes of the method.
             // this method will be called for all methods in this
@@ -434,16 +590,15 @@ public class ZoltarHeatmap
                 log.debug("From [" + n.getBeginLine() + "] to ["
                     + n.getEndLine() + "] is method " + n.getName());
             }
-            methodStartLocs.add(n.getBeginLine());
-            methodEndLocs.add(n.getEndLine());
+            arg.add(n.getBeginLine(), n.getEndLine());
         }
     }
 
     private static class ConstructorVisitor
-        extends VoidVisitorAdapter<Object>
+        extends VoidVisitorAdapter<MethodBounds>
     {
         @Override
-        public void visit(ConstructorDeclaration n, Object arg)
+        public void visit(ConstructorDeclaration n, MethodBounds arg)
         {
             // here you can access the attributes of the method.
             // this method will be called for all methods in this
@@ -453,11 +608,177 @@ public class ZoltarHeatmap
                 log.debug("From [" + n.getBeginLine() + "] to ["
                     + n.getEndLine() + "] is constructor " + n.getName());
             }
-            methodStartLocs.add(n.getBeginLine());
-            methodEndLocs.add(n.getEndLine());
+            arg.add(n.getBeginLine(), n.getEndLine());
         }
     }
 
+    /**
+     * The first and last lines of the methods and constructors in one
+     * file, as sorted arrays.
+     */
+    private static class MethodBounds
+    {
+        public void add(int begin, int end)
+        {
+            if (count == starts.length)
+            {
+                starts = Arrays.copyOf(starts, count * 2 + 8);
+                ends = Arrays.copyOf(ends, count * 2 + 8);
+            }
+            starts[count] = begin;
+            ends[count] = end;
+            count++;
+        }
+
+        public void sort()
+        {
+            starts = Arrays.copyOf(starts, count);
+            ends = Arrays.copyOf(ends, count);
+            Arrays.sort(starts);
+            Arrays.sort(ends);
+        }
+
+        /**
+         * Returns the index of the first method starting on the given
+         * line, or -1 if none does.
+         */
+        public int firstStart(int line)
+        {
+            int index = Arrays.binarySearch(starts, line);
+            if (index < 0)
+            {
+                return -1;
+            }
+            while (index > 0 && starts[index - 1] == line)
+            {
+                index--;
+            }
+            return index;
+        }
+
+        public boolean isEnd(int line)
+        {
+            return Arrays.binarySearch(ends, line) >= 0;
+        }
+
+        int[] starts = new int[0];
+        int[] ends = new int[0];
+        private int count;
+    }
+
+    private static String cacheKey(File source, ClassSuspects suspects)
+        throws IOException, NoSuchAlgorithmException
+    {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        DataOutputStream out = new DataOutputStream(new DigestOutputStream(
+            new OutputStream()
+            {
+                public void write(int b)
+                {
+                    // Only the digest is needed
+                }
+            },
+            digest));
+        out.writeInt(CACHE_VERSION);
+        out.writeUTF(source.getName());
+        out.writeInt(gzLimitToMaxMethod);
+        suspects.writeTo(out);
+        InputStream in = new BufferedInputStream(new FileInputStream(source));
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0)
+            {
+                out.write(buffer, 0, count);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        out.flush();
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static String readFile(File file)
+        throws IOException
+    {
+        Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try
+        {
+            StringBuilder result = new StringBuilder();
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0)
+            {
+                result.append(buffer, 0, count);
+            }
+            return result.toString();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Removes the least recently used fragments, and any abandoned
+     * temporary files, once the cache holds more than
+     * MAX_CACHE_ENTRIES fragments.
+     */
+    private static void pruneCache(File cacheDir)
+    {
+        File[] files = cacheDir.listFiles();
+        if (files == null || files.length <= MAX_CACHE_ENTRIES)
+        {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<File> complete = new ArrayList<File>();
+        for (File file : files)
+        {
+            if (file.getName().endsWith(TEMP_SUFFIX))
+            {
+                if (now - file.lastModified() > STALE_TEMP_AGE)
+                {
+                    file.delete();
+                }
+            }
+            else
+            {
+                complete.add(file);
+            }
+        }
+        Collections.sort(complete, new Comparator<File>()
+            {
+                public int compare(File left, File right)
+                {
+                    long difference =
+                        left.lastModified() - right.lastModified();
+                    return (difference < 0) ? -1 : ((difference > 0) ? 1 : 0);
+                }
+            });
+        for (int i = 0; i < complete.size() - MAX_CACHE_ENTRIES; i++)
+        {
+            complete.get(i).delete();
+        }
+    }
+
+    // Change when the rendered HTML changes, so cached fragments are
+    // not reused
+    private static final int CACHE_VERSION = 1;
+    private static final int MAX_CACHE_ENTRIES = 5000;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long STALE_TEMP_AGE = 24 * 60 * 60 * 1000L;
+
     private static Map<String, Double> sortByValue(
         Map<String, Double> unsortMap)
     {
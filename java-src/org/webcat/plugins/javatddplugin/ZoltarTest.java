@@ -35,6 +35,8 @@ public class ZoltarTest
     private static String gzLibs = System.getProperty("gzoltar.libs");
     private static Integer gzTestDepth =
         Integer.parseInt(System.getProperty("gzoltar.test.depth", "1"));
+    /** The number of most suspicious methods to report. */
+    private static final int MOST_SUSPICIOUS_METHODS = 3;
 
     public static void main(String[] args)
     {
@@ -82,13 +84,8 @@ public class ZoltarTest
             }
 
             Spectra spectra = execGzoltar(allTestNames);
-
-            Thread.sleep(4000);
-
-            Spectra failedOnlySpectra = null;
-            List<Component> suspectStatesAllTests = null;
-            List<Component> suspectStatesFailedOnly = null;
-
+            SpectrumMatrix matrix = toMatrix(spectra);
+            long[] failedRows = null;
 
             // if gzTestDepth is non-zero, return the suspiciousness for the
             // first gzTestDepth-th failed cases
@@ -104,13 +101,13 @@ public class ZoltarTest
                 {
                     if (!result.wasSuccessful() && failedTests < gzTestDepth)
                     {
-                        String testname = result.getName();
-                        int dot = testname.lastIndexOf("#");
-                        String name = testname.substring(0, dot);
-                        failedTestNames.add(name);
+                        String name = testClassName(result.getName());
+                        if (!failedTestNames.contains(name))
+                        {
+                            failedTestNames.add(name);
+                        }
                         log.debug(result.getName() + "(" + name
                             + ")...FAILED!");
-                        //log.debug(result.getCoveredComponents().toString());
                         failedTests++;
                     }
                     else
@@ -128,371 +125,243 @@ public class ZoltarTest
                 }
                 if (failedTestNames.size() > 0)
                 {
-                    //rerun zoltar for the failed cases only.
-                    failedOnlySpectra = execGzoltar(failedTestNames);
-                }
-            }
-
-            suspectStatesAllTests = spectra.getComponentsBySuspiciousness();
-            if (failedOnlySpectra != null)
-            {
-                suspectStatesFailedOnly =
-                    failedOnlySpectra.getComponentsBySuspiciousness();
-                for (TestResult result : failedOnlySpectra.getTestResults())
-                {
-                    if (!result.wasSuccessful())
-                    {
-                        log.debug(result.getName() + "...FAILED!");
-                    }
-                    else
-                    {
-                        log.debug(result.getName() + "...passed");
-                    }
+                    // Score the failed test classes from the coverage
+                    // already collected, instead of running them again.
+                    failedRows = failedRows(matrix, failedTestNames);
                 }
             }
 
             System.out.println("");
             System.out.println("");
 
-            List<String> suspectsLines = new ArrayList<String>();
-//            List<String> failedOnlySuspectsLines = new ArrayList<String>();
-            String encodedLine = "";
-
-            Map<String, Double> maxMethods = new HashMap<String, Double>();
-            Map<String, Double> sortedMaxMethods =
-                new HashMap<String, Double>();
-            Map<String, Double> mostSuspectMethods =
-                new HashMap<String, Double>();
-            Map<String, Double> fullSuspectMap = new HashMap<String, Double>();
-
-            if (!suspectStatesAllTests.isEmpty())
-            {
-                for (Component statement : suspectStatesAllTests)
-                {
-                    fullSuspectMap.put(statement.getLabel(),
-                        statement.getSuspiciousness());
-                    if (statement.getSuspiciousness() != 0.0)
-                    {
-                        Map<String, String> splitResults =
-                            splitZoltarReportLineWithoutSize(
-                            statement.getLabel());
-                        String currMethodSig = splitResults.get("class") + "|"
-                            + splitResults.get("method");
-
-                        if (maxMethods.containsKey(currMethodSig))
-                        {
-                            if (maxMethods.get(currMethodSig) <
-                                statement.getSuspiciousness())
-                            {
-                                maxMethods.put(currMethodSig,
-                                    statement.getSuspiciousness());
-                            }
-                        }
-                        else
-                        {
-                            maxMethods.put(currMethodSig,
-                                statement.getSuspiciousness());
-                        }
-                    }
-                }
+            double[] scores =
+                matrix.scores(SpectrumMatrix.OCHIAI, matrix.allTests());
+            reportSuspects(matrix, scores, failedRows, paramSortOrder,
+                gzCsvFile, gzXmlFile, gzStudentPid);
+        }
+        catch (Exception e)
+        {
+            log.error(e);
+        }
+    }
 
+    /**
+     * Writes the suspicious lines, encoded in the given sort order, to the
+     * CSV file and the XML file that ZoltarHeatmap reads.  Either file
+     * name may be null or empty to skip that file.
+     */
+    protected static void writeSuspects(List<String> suspectsLines,
+        Map<String, Double> mostSuspectMethods, String paramSortOrder,
+        String csvFile, String xmlFile, String pid)
+        throws Exception
+    {
+        Collections.sort(suspectsLines);
+        if ((csvFile != null) && (!csvFile.isEmpty()))
+        {
+          log.info("Writing to file (" + csvFile + ")...");
+          FileWriter writer = new FileWriter(csvFile, true);
+          for (String s : suspectsLines)
+          {
+                Map<String, String> suspectMap =
+                    splitSuspectLineWithFormat(s, paramSortOrder);
+                writer.append(pid);
+                writer.append(',');
+                writer.append(suspectMap.get("class"));
+                writer.append(',');
+                writer.append(suspectMap.get("method"));
+                writer.append(',');
+                writer.append(suspectMap.get("line"));
+                writer.append(',');
+                writer.append(suspectMap.get("score"));
+                writer.append('\n');
                 if (log.isDebugEnabled())
                 {
-                    printMap(sortByValue(fullSuspectMap));
-                }
-
-                if (suspectStatesFailedOnly != null)
-                {
-                    for (Component component : suspectStatesFailedOnly)
-                    {
-                        Statement statement = (Statement)component;
-                        if (statement.getSuspiciousness() != 0.0)
-                        {
-                            log.debug(statement.getLabel() + ' '
-                                + statement.getSuspiciousness());
-                            Map<String, String> splitResults =
-                                splitZoltarReportLineWithoutSize(
-                                statement.getLabel());
- /*                       String currMethodSig = splitResults.get("class").toString() + "|" + splitResults.get("method").toString();
-
-
-                        if ( maxMethods.containsKey(currMethodSig)){
-                            if ( maxMethods.get(currMethodSig) < statement.getSuspiciousness() ){
-                                maxMethods.put(currMethodSig, statement.getSuspiciousness());
-                            }
-                        }else{
-                            maxMethods.put(currMethodSig, statement.getSuspiciousness());
-                        }
-*/
-
-                            if ("CLMS".equals(paramSortOrder))
-                            {
-                                encodedLine = splitResults.get("class")
-                                    + "|" + statement.getLineNumber()
-                                    + "|" + splitResults.get("method")
-                                    + "|"
-                                    + fullSuspectMap.get(statement.getLabel());
-                            }
-                            else if ("CSLM".equals(paramSortOrder))
-                            {
-                                encodedLine = splitResults.get("class")
-                                    + "|"
-                                    + fullSuspectMap.get(statement.getLabel())
-                                    + "|" + statement.getLineNumber()
-                                    + "|" + splitResults.get("method");
-                            }
-                            else if ("CMLS".equals(paramSortOrder))
-                            {
-                                encodedLine = splitResults.get("class")
-                                    + "|" + splitResults.get("method")
-                                    + "|" + statement.getLineNumber()
-                                    + "|"
-                                    + fullSuspectMap.get(statement.getLabel());
-                            }
-                            else
-                            {
-                                throw new IllegalStateException(" parameter "
-                                    + "sort order " + paramSortOrder + " is "
-                                    + "not supported.");
-                            }
-                            suspectsLines.add(encodedLine);
-                        }
-                    }
-                }
-                else
-                {
-                    log.info("No suspicious lines found for failed tests");
+                    log.debug("Class: " + suspectMap.get("class") +
+                        " Method: "  + suspectMap.get("method") +
+                        " Line: " + suspectMap.get("line")+
+                        " Suspect: " + suspectMap.get("score"));
                 }
-                log.info("..." + suspectsLines.size()
-                    + " suspicious lines found");
-            }
-            else
-            {
-                log.info("... 0 (zero) suspicious lines found");
-            }
-
-            sortedMaxMethods = sortByValue(maxMethods);
-
-            // @TODO remote the lastX value here
-            mostSuspectMethods = returnLastXFromMap(sortedMaxMethods, 3);
-            if (log.isDebugEnabled())
-            {
-                log.debug("Most suspicious methods...");
-                printMap(mostSuspectMethods);
             }
+            writer.flush();
+            writer.close();
+        }
 
-            Collections.sort(suspectsLines);
-            if ((gzCsvFile != null) && (!gzCsvFile.isEmpty()))
+        if ((xmlFile != null) && (!xmlFile.isEmpty()))
+        {
+            //We want to build an xml file with this format:
+            //<root>
+            //	<classname>
+            //		<suspect>
+            //			<method>
+            //			<line>
+            //			<score>
+            //          <most>
+            //		</suspect>
+            //		(repeat for all suspects in class)
+            //	</classname>
+            //	(repeat for all classes with suspects)
+            //</root>
+
+            //Initialize XML
+            DocumentBuilderFactory docFactory =
+                DocumentBuilderFactory.newInstance();
+            DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
+            // root elements
+            Document doc = docBuilder.newDocument();
+            Element rootElement = doc.createElement("gzoltar");
+            doc.appendChild(rootElement);
+
+            if (suspectsLines.size() > 0)
             {
-              log.info("Writing to file (" + gzCsvFile + ")...");
-              FileWriter writer = new FileWriter(gzCsvFile, true);
-              for (String s : suspectsLines)
-              {
+                String lastClass = "";
+                Element suspectsElement = null;
+                String mostSuspectFlag = "no";
+                for (String s : suspectsLines)
+                {
                     Map<String, String> suspectMap =
                         splitSuspectLineWithFormat(s, paramSortOrder);
-                    writer.append(gzStudentPid);
-                    writer.append(',');
-                    writer.append(suspectMap.get("class"));
-                    writer.append(',');
-                    writer.append(suspectMap.get("method"));
-                    writer.append(',');
-                    writer.append(suspectMap.get("line"));
-                    writer.append(',');
-                    writer.append(suspectMap.get("score"));
-                    writer.append('\n');
+
                     if (log.isDebugEnabled())
                     {
                         log.debug("Class: " + suspectMap.get("class") +
-                            " Method: "  + suspectMap.get("method") +
-                            " Line: " + suspectMap.get("line")+
-                            " Suspect: " + suspectMap.get("score"));
+                    		" Method: "  + suspectMap.get("method") +
+                    		" Line: " + suspectMap.get("line")+
+                    		" Suspect: " + suspectMap.get("score"));
                     }
-                }
-                writer.flush();
-                writer.close();
-            }
-
-            if ((gzXmlFile != null) && (!gzXmlFile.isEmpty()))
-            {
-                //We want to build an xml file with this format:
-                //<root>
-                //	<classname>
-                //		<suspect>
-                //			<method>
-                //			<line>
-                //			<score>
-                //          <most>
-                //		</suspect>
-                //		(repeat for all suspects in class)
-                //	</classname>
-                //	(repeat for all classes with suspects)
-                //</root>
-
-                //Initialize XML
-                DocumentBuilderFactory docFactory =
-                    DocumentBuilderFactory.newInstance();
-                DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-                // root elements
-                Document doc = docBuilder.newDocument();
-                Element rootElement = doc.createElement("gzoltar");
-                doc.appendChild(rootElement);
-
-                if (suspectsLines.size() > 0)
-                {
-                    String lastClass = "";
-                    Element suspectsElement = null;
-                    String mostSuspectFlag = "no";
-                    for (String s : suspectsLines)
-                    {
-                        Map<String, String> suspectMap =
-                            splitSuspectLineWithFormat(s, paramSortOrder);
-
-                        if (log.isDebugEnabled())
-                        {
-                            log.debug("Class: " + suspectMap.get("class") +
-                        		" Method: "  + suspectMap.get("method") +
-                        		" Line: " + suspectMap.get("line")+
-                        		" Suspect: " + suspectMap.get("score"));
-                        }
 
-                        // Get the name of the current class.
-                        String currentClass = suspectMap.get("class");
-                        String classname = "";
-                        // System.out.println("currentClass: " + suspectMap.get("class").toString());
+                    // Get the name of the current class.
+                    String currentClass = suspectMap.get("class");
+                    String classname = "";
+                    // System.out.println("currentClass: " + suspectMap.get("class").toString());
 
-                        // Is this one of the maxSuspect methods:
-                        // System.out.println("looking for " + suspectMap.get("class").toString() + "|" + suspectMap.get("method"));
-                        if (mostSuspectMethods.containsKey(
-                            suspectMap.get("class") + "|"
-                            + suspectMap.get("method")))
-                        {
-                            mostSuspectFlag = "yes";
-                            // System.out.println("...FOUND...");
-                        }
-                        else
-                        {
-                            mostSuspectFlag = "no";
-                        }
-                        // If it is a private helper class (ie
-                        // LinkedQueue$Node), we really care about the base
-                        // class name. Also the $ is not allowed as an XML
-                        // node name. So we test to see if we get the $, and
-                        // if we do, get the string in front of $ as the class
-                        // name.
-                        if (currentClass.indexOf("$") != -1)
-                        {
-                            // is a class within a class
-                            int dot = currentClass.lastIndexOf("$");
-                            classname = currentClass.substring(0, dot);
-                        }
-                        else
-                        {
-                            classname = currentClass;
-                        }
+                    // Is this one of the maxSuspect methods:
+                    // System.out.println("looking for " + suspectMap.get("class").toString() + "|" + suspectMap.get("method"));
+                    if (mostSuspectMethods.containsKey(
+                        suspectMap.get("class") + "|"
+                        + suspectMap.get("method")))
+                    {
+                        mostSuspectFlag = "yes";
+                        // System.out.println("...FOUND...");
+                    }
+                    else
+                    {
+                        mostSuspectFlag = "no";
+                    }
+                    // If it is a private helper class (ie
+                    // LinkedQueue$Node), we really care about the base
+                    // class name. Also the $ is not allowed as an XML
+                    // node name. So we test to see if we get the $, and
+                    // if we do, get the string in front of $ as the class
+                    // name.
+                    if (currentClass.indexOf("$") != -1)
+                    {
+                        // is a class within a class
+                        int dot = currentClass.lastIndexOf("$");
+                        classname = currentClass.substring(0, dot);
+                    }
+                    else
+                    {
+                        classname = currentClass;
+                    }
 
-                        // System.out.println("classname: " + classname);
+                    // System.out.println("classname: " + classname);
 
-                        // Now, see if the class is the same as the last one
-                        // we populated
-                        if (!lastClass.equals(classname))
-                        {
-                            // System.out.println("Creating new class node.
-                            // Was: " + lastClass +" now: " + classname);
-                            // new class, so update the lastClass flag, append
-                            // the current class node to root and create a new
-                            // class node for the new class to be processed.
-                            if (!lastClass.equals(""))
-                            {
-                                rootElement.appendChild(suspectsElement);
-                            }
-                            // suspectsElement = null;
-                            lastClass = classname;
-                            suspectsElement = doc.createElement(classname);
-                        }
-                        else
+                    // Now, see if the class is the same as the last one
+                    // we populated
+                    if (!lastClass.equals(classname))
+                    {
+                        // System.out.println("Creating new class node.
+                        // Was: " + lastClass +" now: " + classname);
+                        // new class, so update the lastClass flag, append
+                        // the current class node to root and create a new
+                        // class node for the new class to be processed.
+                        if (!lastClass.equals(""))
                         {
-                            // System.out.println("Using same class as before: " + lastClass);
+                            rootElement.appendChild(suspectsElement);
                         }
-
-                        Element suspiciousStatementElement =
-                            doc.createElement("suspect");
-
-                        // Element suspiciousStatementClassElement = doc.createElement("class");
-
-                        Element suspiciousStatementMethodElement =
-                            doc.createElement("method");
-                        Element suspiciousStatementLineElement =
-                            doc.createElement("line");
-                        Element suspiciousStatementScoreElement =
-                            doc.createElement("score");
-                        Element suspiciousStatementMostSuspectElement =
-                            doc.createElement("most");
-
-                        // suspiciousStatementClassElement.appendChild(doc.createTextNode(suspectMap.get("class").toString()));
-
-                        suspiciousStatementMethodElement.appendChild(
-                            doc.createTextNode(suspectMap.get("method")));
-                        suspiciousStatementLineElement.appendChild(
-                            doc.createTextNode(suspectMap.get("line")));
-                        suspiciousStatementScoreElement.appendChild(
-                            doc.createTextNode(suspectMap.get("score")));
-                        suspiciousStatementMostSuspectElement.appendChild(
-                            doc.createTextNode(mostSuspectFlag));
-
-                        // suspiciousStatementElement.appendChild(suspiciousStatementClassElement);
-                        suspiciousStatementElement.appendChild(
-                            suspiciousStatementMethodElement);
-                        suspiciousStatementElement.appendChild(
-                            suspiciousStatementLineElement);
-                        suspiciousStatementElement.appendChild(
-                            suspiciousStatementScoreElement);
-                        suspiciousStatementElement.appendChild(
-                            suspiciousStatementMostSuspectElement);
-
-                        suspectsElement.appendChild(
-                            suspiciousStatementElement);
+                        // suspectsElement = null;
+                        lastClass = classname;
+                        suspectsElement = doc.createElement(classname);
                     }
-                    // Need to have this here so that the last class node
-                    // is added to the root node.
-                    rootElement.appendChild(suspectsElement);
-                }
-
-                // write the content into xml file
-                TransformerFactory transformerFactory =
-                    TransformerFactory.newInstance();
-                Transformer transformer = transformerFactory.newTransformer();
-                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-                transformer.setOutputProperty(
-                    "{http://xml.apache.org/xslt}indent-amount", "2");
-                DOMSource source = new DOMSource(doc);
-                StreamResult resultStream = new StreamResult(
-                    new File(gzXmlFile));
-
-                // Output to console for testing
-                // StreamResult resultStream = new StreamResult(System.out);
-
-                transformer.transform(source, resultStream);
-                log.info("Data written to " + gzXmlFile);
-            }
-            else
-            {
-                for(String s : suspectsLines)
-                {
-                    Map<String, String> suspectMap =
-                        splitSuspectLineWithFormat(s, paramSortOrder);
-                    if (log.isDebugEnabled())
+                    else
                     {
-                        log.debug("Class: " + suspectMap.get("class") +
-                            " Method: "  + suspectMap.get("method") +
-                            " Line: " + suspectMap.get("line")+
-                            " Suspect: " + suspectMap.get("score"));
+                        // System.out.println("Using same class as before: " + lastClass);
                     }
+
+                    Element suspiciousStatementElement =
+                        doc.createElement("suspect");
+
+                    // Element suspiciousStatementClassElement = doc.createElement("class");
+
+                    Element suspiciousStatementMethodElement =
+                        doc.createElement("method");
+                    Element suspiciousStatementLineElement =
+                        doc.createElement("line");
+                    Element suspiciousStatementScoreElement =
+                        doc.createElement("score");
+                    Element suspiciousStatementMostSuspectElement =
+                        doc.createElement("most");
+
+                    // suspiciousStatementClassElement.appendChild(doc.createTextNode(suspectMap.get("class").toString()));
+
+                    suspiciousStatementMethodElement.appendChild(
+                        doc.createTextNode(suspectMap.get("method")));
+                    suspiciousStatementLineElement.appendChild(
+                        doc.createTextNode(suspectMap.get("line")));
+                    suspiciousStatementScoreElement.appendChild(
+                        doc.createTextNode(suspectMap.get("score")));
+                    suspiciousStatementMostSuspectElement.appendChild(
+                        doc.createTextNode(mostSuspectFlag));
+
+                    // suspiciousStatementElement.appendChild(suspiciousStatementClassElement);
+                    suspiciousStatementElement.appendChild(
+                        suspiciousStatementMethodElement);
+                    suspiciousStatementElement.appendChild(
+                        suspiciousStatementLineElement);
+                    suspiciousStatementElement.appendChild(
+                        suspiciousStatementScoreElement);
+                    suspiciousStatementElement.appendChild(
+                        suspiciousStatementMostSuspectElement);
+
+                    suspectsElement.appendChild(
+                        suspiciousStatementElement);
                 }
+                // Need to have this here so that the last class node
+                // is added to the root node.
+                rootElement.appendChild(suspectsElement);
             }
+
+            // write the content into xml file
+            TransformerFactory transformerFactory =
+                TransformerFactory.newInstance();
+            Transformer transformer = transformerFactory.newTransformer();
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.setOutputProperty(
+                "{http://xml.apache.org/xslt}indent-amount", "2");
+            DOMSource source = new DOMSource(doc);
+            StreamResult resultStream = new StreamResult(
+                new File(xmlFile));
+
+            // Output to console for testing
+            // StreamResult resultStream = new StreamResult(System.out);
+
+            transformer.transform(source, resultStream);
+            log.info("Data written to " + xmlFile);
         }
-        catch (Exception e)
+        else
         {
-            log.error(e);
+            for(String s : suspectsLines)
+            {
+                Map<String, String> suspectMap =
+                    splitSuspectLineWithFormat(s, paramSortOrder);
+                if (log.isDebugEnabled())
+                {
+                    log.debug("Class: " + suspectMap.get("class") +
+                        " Method: "  + suspectMap.get("method") +
+                        " Line: " + suspectMap.get("line")+
+                        " Suspect: " + suspectMap.get("score"));
+                }
+            }
         }
     }
 
@@ -575,32 +444,6 @@ public class ZoltarTest
         return reportItems;
     }
 
-    private static Map<String, Double> sortByValue(
-        Map<String, Double> unsortMap)
-    {
-        // 1. Convert Map to List of Map
-        List<Map.Entry<String, Double>> list =
-                new LinkedList<Map.Entry<String, Double>>(unsortMap.entrySet());
-
-        // 2. Sort list with Collections.sort(), provide a custom Comparator
-        //    Try switch the o1 o2 position for a different order
-        Collections.sort(list, new Comparator<Map.Entry<String, Double>>() {
-            public int compare(Map.Entry<String, Double> o1,
-                               Map.Entry<String, Double> o2) {
-                return (o1.getValue()).compareTo(o2.getValue());
-            }
-        });
-
-        // 3. Loop the sorted list and put it into a new insertion
-        //    order Map LinkedHashMap
-        Map<String, Double> sortedMap = new LinkedHashMap<String, Double>();
-        for (Map.Entry<String, Double> entry : list) {
-            sortedMap.put(entry.getKey(), entry.getValue());
-        }
-
-        return sortedMap;
-    }
-
     public static <K, V> void printMap(Map<K, V> map)
     {
         for (Map.Entry<K, V> entry : map.entrySet())
@@ -610,50 +453,130 @@ public class ZoltarTest
         }
     }
 
-    public static <K, V> Map<String, Double> returnLastXFromMap(
-        Map<String, Double> map, int lastX)
+    /**
+     * Builds a {@link SpectrumMatrix} from the statements and per-test
+     * coverage GZoltar collected.
+     */
+    protected static SpectrumMatrix toMatrix(Spectra spectra)
     {
-        int mapSize = map.size();
-        Map<String, Double> subMap = new LinkedHashMap<String, Double>();
-
-        int inx = 1;
-        for (Map.Entry<String, Double>entry : map.entrySet())
+        SpectrumMatrix matrix = new SpectrumMatrix();
+        for (TestResult result : spectra.getTestResults())
+        {
+            matrix.addTest(result.getName(), result.wasSuccessful());
+        }
+        for (Component component : spectra.getComponents())
         {
-            if (inx > mapSize - lastX)
+            if (!(component instanceof Statement))
+            {
+                continue;
+            }
+            Map<String, String> splitResults =
+                splitZoltarReportLineWithoutSize(component.getLabel());
+            int id = matrix.component(splitResults.get("class"),
+                ((Statement)component).getLineNumber(),
+                splitResults.get("method"));
+            BitSet covered = component.getCoverage();
+            for (int test = covered.nextSetBit(0); test >= 0;
+                test = covered.nextSetBit(test + 1))
             {
-                subMap.put(entry.getKey(),  entry.getValue());
-                //System.out.println("Inx: " +inx+ " Key : " + entry.getKey()
-                //	+ " Value : " + entry.getValue());
+                matrix.setCovered(id, test);
             }
-            inx++;
         }
-        return subMap;
+        return matrix;
     }
 
-    public static <K, V> void printLastXMap(Map<K, V> map, int lastX)
+    protected static String testClassName(String testName)
     {
-        int mapSize = map.size();
-        if (mapSize <= lastX)
+        int dot = testName.lastIndexOf("#");
+        return (dot == -1) ? testName : testName.substring(0, dot);
+    }
+
+    /**
+     * Returns the failing tests that belong to the given test classes.
+     */
+    protected static long[] failedRows(
+        SpectrumMatrix matrix, List<String> testClasses)
+    {
+        long[] rows = new long[0];
+        for (int test = 0; test < matrix.testCount(); test++)
         {
-            for (Map.Entry<K, V> entry : map.entrySet())
+            if (matrix.failed(test)
+                && testClasses.contains(testClassName(matrix.testName(test))))
             {
-                log.debug("Key : " + entry.getKey()
-                        + " Value : " + entry.getValue());
+                rows = SpectrumMatrix.set(rows, test);
             }
         }
-        else
+        return rows;
+    }
+
+    /**
+     * Reports the lines executed by the given failing tests, with their
+     * scores, and marks the three most suspicious methods, through
+     * {@link #writeSuspects}.
+     * @param failedRows the failing tests, or null to report no lines
+     */
+    protected static void reportSuspects(SpectrumMatrix matrix,
+        double[] scores, long[] failedRows, String paramSortOrder,
+        String csvFile, String xmlFile, String pid)
+        throws Exception
+    {
+        List<String> suspectsLines = new ArrayList<String>();
+        if (failedRows != null)
         {
-            int inx = 1;
-            for (Map.Entry<K, V> entry : map.entrySet())
+            for (int component = 0; component < matrix.componentCount();
+                component++)
             {
-                if (inx > mapSize - lastX)
+                if (scores[component] != 0.0
+                    && matrix.coveredByAny(component, failedRows))
                 {
-                    log.debug("Inx: " +inx+ " Key : " + entry.getKey()
-                        + " Value : " + entry.getValue());
+                    suspectsLines.add(encodeSuspectLine(
+                        matrix.className(component), matrix.line(component),
+                        matrix.method(component), scores[component],
+                        paramSortOrder));
                 }
-                inx++;
             }
         }
+        else
+        {
+            log.info("No suspicious lines found for failed tests");
+        }
+        log.info("..." + suspectsLines.size() + " suspicious lines found");
+
+        Map<String, Double> mostSuspectMethods =
+            new LinkedHashMap<String, Double>();
+        int[] top = matrix.topMethods(scores, MOST_SUSPICIOUS_METHODS);
+        for (int i = top.length - 1; i >= 0; i--)
+        {
+            mostSuspectMethods.put(matrix.className(top[i]) + "|"
+                + matrix.method(top[i]), scores[top[i]]);
+        }
+        if (log.isDebugEnabled())
+        {
+            log.debug("Most suspicious methods...");
+            printMap(mostSuspectMethods);
+        }
+
+        writeSuspects(suspectsLines, mostSuspectMethods, paramSortOrder,
+            csvFile, xmlFile, pid);
+    }
+
+    protected static String encodeSuspectLine(String className, int line,
+        String method, double score, String paramSortOrder)
+    {
+        if ("CLMS".equals(paramSortOrder))
+        {
+            return className + "|" + line + "|" + method + "|" + score;
+        }
+        else if ("CSLM".equals(paramSortOrder))
+        {
+            return className + "|" + score + "|" + line + "|" + method;
+        }
+        else if ("CMLS".equals(paramSortOrder))
+        {
+            return className + "|" + method + "|" + line + "|" + score;
+        }
+        throw new IllegalStateException(" parameter sort order "
+            + paramSortOrder + " is not supported.");
     }
 
     private static Spectra execGzoltar(ArrayList<String> testList)
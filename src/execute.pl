@@ -382,6 +382,9 @@ if ($useXvfb)
 {
     $ANT = 'xvfb-run -a -s "-c -screen 0 1280x1024x24" ' . $ANT;
 }
+my $collectMetrics =
+    $cfg->getProperty('collectMetrics', 0);
+$collectMetrics = ($collectMetrics =~ m/^(true|on|yes|y|1)$/i);
 my $allStudentTestsMustPass =
     $cfg->getProperty('allStudentTestsMustPass', 0);
 $allStudentTestsMustPass =
@@ -696,6 +699,7 @@ setClassPatternIfNeeded('staticAnalysisExclude',
     {
         $markupPropFile = confirmExists($scriptData, $markup);
     }
+    $cfg->setProperty('markupPropFile', $markupPropFile);
 }
 
 
@@ -821,6 +825,12 @@ if ($callAnt)
             $ANT .= " -logger org.apache.tools.ant.listener.ProfileLogger";
         }
     }
+    if ($collectMetrics)
+    {
+        # Writes per-stage timings to $resultDir/metrics.prom
+        $ANT .= " -lib \"$pluginHome/JavaTddPluginSupport.jar\""
+            . " -listener net.sf.webcat.plugins.javatddplugin.MetricsListener";
+    }
 
     my $cmdline = $Web_CAT::Utilities::SHELL
         . "$ANT -f \"$pluginHome/build.xml\" -l \"$antLog\" "
@@ -887,7 +897,6 @@ sub generateCompilerErrorWarningStruct
     my $messageString = shift;
     my $key = shift;
     my $splitString;
-    my $errorStruct;
 
     if (index(lc($key), 'error') != -1)
     {
@@ -901,25 +910,35 @@ sub generateCompilerErrorWarningStruct
     my @messageContents = split($splitString, $messageString);
 
     my @fileDetails = split(':', $messageContents[0]);
+
+    addCompilerErrorWarningStruct(
+        $key, $fileDetails[0], $fileDetails[1], $messageContents[1]);
+}
+
+# Add the struct for one compiler error or warning, given the file name,
+# line number, and (first line of the) message.
+sub addCompilerErrorWarningStruct
+{
+    my ($key, $fileName, $lineNum, $message) = @_;
+    my $errorStruct;
+
     #trim the message
-    $messageContents[1] =~ s/^\s+|\s+$//g;
+    $message =~ s/^\s+|\s+$//g;
 
-    my $fileName = $fileDetails[0];
     $fileName =~ s,\\,/,go;
-    my $lineNum = $fileDetails[1];
     my $codeLines = extractAboveBelowLinesOfCode($fileName, $lineNum);
     $fileName =~ s,^\Q$workingDir/\E,,i;
 
     # For compiler warning we dont have enhanced messages
     # For "cannot find symbol" errors, "addCannotFindSymbolStruct" computes
     # the enhaced message
-    if ($splitString eq 'warning:'
-        || $messageContents[1] eq 'cannot find symbol')
+    if (index(lc($key), 'error') == -1
+        || $message eq 'cannot find symbol')
     {
         $errorStruct = expandedMessage->new(
             entityName => $fileName,
             lineNum => $lineNum,
-            errorMessage => $messageContents[1],
+            errorMessage => $message,
             linesOfCode => $codeLines,
             enhancedMessage => '',
             );
@@ -929,10 +948,10 @@ sub generateCompilerErrorWarningStruct
         $errorStruct = expandedMessage->new(
             entityName => $fileName,
             lineNum => $lineNum,
-            errorMessage => $messageContents[1],
+            errorMessage => $message,
             linesOfCode => $codeLines,
             enhancedMessage =>
-                compilerErrorEnhancedMessage($messageContents[1]),
+                compilerErrorEnhancedMessage($message),
             );
     }
 
@@ -992,6 +1011,61 @@ sub addCannotFindSymbolStruct
     }
 }
 
+# When the student's code is compiled in-process (useInProcessCompiler),
+# the compiler also writes its errors and warnings to a tab-separated
+# file, with one diagnostic per line: kind, file, line, column, code, and
+# message (with \t, \n, and \\ escaped).  The structs are built from
+# that file instead of from the [javac] lines in the log.  Returns true
+# if the file was there.
+sub loadCompilerDiagnostics
+{
+    my $diagnosticsFile = shift;
+    open(DIAGNOSTICS, $diagnosticsFile) || return 0;
+    <DIAGNOSTICS>;    # column names
+    while (<DIAGNOSTICS>)
+    {
+        chomp;
+        my ($kind, $fileName, $lineNum, $column, $code, $message) =
+            map { unescapeTsv($_) } split(/\t/, $_, -1);
+        my $key;
+        if ($kind eq 'ERROR')
+        {
+            $key = 'compilerErrors';
+        }
+        elsif ($kind eq 'WARNING' || $kind eq 'MANDATORY_WARNING')
+        {
+            $key = 'compilerWarnings';
+        }
+        else
+        {
+            next;
+        }
+        next if (!defined $message || $fileName eq '' || $lineNum <= 0);
+
+        my @lines = split(/\n/, $message);
+        addCompilerErrorWarningStruct($key, $fileName, $lineNum, $lines[0]);
+        if (defined $cannotFindSymbolStruct)
+        {
+            my @symbol = grep { m/symbol:/o } @lines;
+            if (@symbol)
+            {
+                addCannotFindSymbolStruct($symbol[0]);
+            }
+            $cannotFindSymbolStruct = undef;
+        }
+    }
+    close(DIAGNOSTICS);
+    return 1;
+}
+
+sub unescapeTsv
+{
+    my $value = shift;
+    my %escapes = ('t' => "\t", 'n' => "\n", 'r' => "\r", '\\' => '\\');
+    $value =~ s/\\([tnr\\])/$escapes{$1}/g;
+    return $value;
+}
+
 #-----------------------------------------------
 my %suites = ();
 if ($can_proceed)
@@ -1036,6 +1110,8 @@ EOF
         my $compileWarnings = 0;
         my $firstFile      = "";
         my $collectingMsgs = 1;
+        my $diagnosticsLoaded =
+            loadCompilerDiagnostics("$resultDir/student-diagnostics.txt");
 
         print "projdir = '$projdir'\n" if $debug;
 
@@ -1087,7 +1163,7 @@ EOF
                 $codingSectionStatus{'compilerWarnings'} = 0;
             }
 
-            if (m/error:/o or m/warning:/o)
+            if (!$diagnosticsLoaded && (m/error:/o or m/warning:/o))
             {
                 if (m/error:/o)
                 {
@@ -1100,7 +1176,7 @@ EOF
                 }
             }
 
-            if (m/symbol:/o)
+            if (!$diagnosticsLoaded && m/symbol:/o)
             {
                 # This essentially contains the symbol name.
                 # Example: 'symbol symbol: food'
@@ -1612,9 +1688,6 @@ sub trackMessageInstance
     my $violation = shift;
 
     my $group     = ruleSetting($rule, 'group', 'defaultGroup');
-    my $deduction = ruleSetting($rule, 'deduction', 0)
-        * $toolDeductionScaleFactor;
-    my $overLimit = 0;
 
     if (!$violation->{line}->content
       && $violation->{endline}->content)
@@ -1639,6 +1712,105 @@ sub trackMessageInstance
         print "tracking $group, $rule, $fileName, ",
             $violation->{line}->content, "\n";
     }
+    my ($deduction, $overLimit) =
+        trackMessageStats($rule, $group, $fileName, $violation);
+
+    # print "before: ", $violation->data_pointer(noheader  => 1,
+    #                                           nometagen => 1);
+    $violation->{deduction} = $deduction;
+    $violation->{overLimit} = $overLimit;
+    $violation->{group}     = $group;
+    $violation->{category}  = ruleSetting($rule, 'category');
+    $violation->{url}       = ruleSetting($rule, 'URL'     );
+    if (!defined($codeMessages{$fileName}))
+    {
+        $codeMessages{$fileName} = {};
+    }
+    if (!defined($codeMessages{$fileName}{$violation->{line}->content}))
+    {
+        $codeMessages{$fileName}{$violation->{line}->content} = {};
+    }
+    if (!defined($codeMessages{$fileName}{$violation->{line}->content}{violations}))
+    {
+        $codeMessages{$fileName}{$violation->{line}->content}{violations} =
+            [ $violation ];
+    }
+    else
+    {
+        push(@{ $codeMessages{$fileName}{$violation->{line}->content}{violations} },
+            $violation);
+    }
+    # print "after: ", $violation->data_pointer(noheader  => 1,
+    #                                          nometagen => 1);
+    # print "messages for '$fileName' =\n\t",
+    #     join("\n\t", @{ $messages{$fileName} }), "\n";
+}
+
+
+#-----------------------------------------------
+# trackOmittedMessageInstances(rule, fileName, count, omitted)
+#
+# Updates the $messageStats structure for rule violations that the
+# violation index counted but did not keep, because they would only
+# have been collapsed away.  They are scored like any other violation,
+# but get no code markup of their own.
+#
+#     rule:      the name of the rule violated
+#     fileName:  the source file name where the violations occurred
+#                (relative to $workingDir)
+#     count:     the number of violations omitted
+#     omitted:   the XML::Smart structure referring to the omitted
+#                violations (used for error message printing only)
+#
+sub trackOmittedMessageInstances
+{
+    croak 'usage: trackOmittedMessageInstances(rule, fileName, count, '
+        . 'omitted)'
+        if ($#_ != 3);
+    my $rule     = shift;
+    my $fileName = shift;
+    my $count    = shift;
+    my $omitted  = shift;
+
+    my $group    = ruleSetting($rule, 'group', 'defaultGroup');
+    if ($debug > 1)
+    {
+        print "tracking $group, $rule, $fileName, $count omitted\n";
+    }
+    for (my $i = 0; $i < $count; $i++)
+    {
+        trackMessageStats($rule, $group, $fileName, $omitted);
+    }
+}
+
+
+#-----------------------------------------------
+# trackMessageStats(rule, group, fileName, violation)
+#
+# Charges one rule violation against every level of the $messageStats
+# structure, and returns the deduction actually taken for it (after
+# any limits are applied) and the number of limits it went over.
+#
+#     rule:      the name of the rule violated
+#     group:     the rule's group
+#     fileName:  the source file name where the violation occurred
+#                (relative to $workingDir)
+#     violation: the XML::Smart structure referring to the violation
+#                (used for error message printing only)
+#
+sub trackMessageStats
+{
+    croak 'usage: trackMessageStats(rule, group, fileName, violation)'
+        if ($#_ != 3);
+    my $rule      = shift;
+    my $group     = shift;
+    my $fileName  = shift;
+    my $violation = shift;
+
+    my $deduction = ruleSetting($rule, 'deduction', 0)
+        * $toolDeductionScaleFactor;
+    my $overLimit = 0;
+
     if ($group eq "testing")
     {
         $hasJUnitErrors++;
@@ -1750,35 +1922,7 @@ sub trackMessageInstance
     #     messageStats->{pts}
     $messageStats->{pts} += $deduction;
 
-    # print "before: ", $violation->data_pointer(noheader  => 1,
-    #                                           nometagen => 1);
-    $violation->{deduction} = $deduction;
-    $violation->{overLimit} = $overLimit;
-    $violation->{group}     = $group;
-    $violation->{category}  = ruleSetting($rule, 'category');
-    $violation->{url}       = ruleSetting($rule, 'URL'     );
-    if (!defined($codeMessages{$fileName}))
-    {
-        $codeMessages{$fileName} = {};
-    }
-    if (!defined($codeMessages{$fileName}{$violation->{line}->content}))
-    {
-        $codeMessages{$fileName}{$violation->{line}->content} = {};
-    }
-    if (!defined($codeMessages{$fileName}{$violation->{line}->content}{violations}))
-    {
-        $codeMessages{$fileName}{$violation->{line}->content}{violations} =
-            [ $violation ];
-    }
-    else
-    {
-        push(@{ $codeMessages{$fileName}{$violation->{line}->content}{violations} },
-            $violation);
-    }
-    # print "after: ", $violation->data_pointer(noheader  => 1,
-    #                                          nometagen => 1);
-    # print "messages for '$fileName' =\n\t",
-    #     join("\n\t", @{ $messages{$fileName} }), "\n";
+    return ($deduction, $overLimit);
 }
 
 
@@ -1835,46 +1979,16 @@ my %codeMarkupIds = ();
 # A useful subroutine for processing the ant log
 if (!$buildFailed) # $can_proceed)
 {
-    my $checkstyleLog = "$resultDir/checkstyle_report.xml";
-    if (-f $checkstyleLog)
+    # The Checkstyle and PMD reports, merged and trimmed down to the
+    # violations that can actually be shown (see ViolationIndex.java)
+    my $violationIndex = "$resultDir/violations.xml";
+    if (-f $violationIndex)
     {
-        my $cstyle = XML::Smart->new($checkstyleLog);
-        foreach my $file (@{ $cstyle->{checkstyle}->{file} })
+        my $index = XML::Smart->new($violationIndex);
+        foreach my $file (@{ $index->{violations}->{file} })
         {
             next if ($file->{name}->null);
             my $fileName = $file->{name}->content;
-            $fileName =~ s,\\,/,go;
-            $fileName =~ s,^\Q$workingDir/\E,,i;
-            if (!defined $codeMarkupIds{$fileName})
-            {
-                $codeMarkupIds{$fileName} = ++$numCodeMarkups;
-            }
-            if (exists $file->{error})
-            {
-                foreach my $violation (@{ $file->{error} })
-                {
-                    my $rule = $violation->{source}->content;
-                    $rule =~
-                        s/^com\.puppycrawl\.tools\.checkstyle\.checks.*\.//o;
-                    $rule =~ s/Check$//o;
-                    $violation->{rule} = $rule;
-                    delete $violation->{source};
-                    trackMessageInstance(
-                        $violation->{rule}->content, $fileName, $violation);
-                }
-            }
-        }
-    }
-
-    my $pmdLog = "$resultDir/pmd_report.xml";
-    if (-f $pmdLog)
-    {
-        my $pmd = XML::Smart->new($pmdLog);
-        foreach my $file (@{ $pmd->{pmd}->{file} })
-        {
-            next if ($file->{name}->null);
-            my $fileName = $file->{name}->content;
-            $fileName =~ s,\\,/,go;
             $fileName =~ s,^\Q$workingDir/\E,,i;
             if (!defined $codeMarkupIds{$fileName})
             {
@@ -1882,10 +1996,25 @@ if (!$buildFailed) # $can_proceed)
             }
             if (exists $file->{violation})
             {
+                # In report order, since the order decides which
+                # violations are charged once a group reaches its limit
                 foreach my $violation (@{ $file->{violation} })
                 {
-                    trackMessageInstance(
-                        $violation->{rule}->content, $fileName, $violation);
+                    if ($violation->{omitted}->null)
+                    {
+                        trackMessageInstance(
+                            $violation->{rule}->content,
+                            $fileName,
+                            $violation);
+                    }
+                    else
+                    {
+                        trackOmittedMessageInstances(
+                            $violation->{rule}->content,
+                            $fileName,
+                            $violation->{omitted}->content,
+                            $violation);
+                    }
                 }
             }
         }
@@ -2241,8 +2370,9 @@ sub extractExemptLines
 #=============================================================================
 # post-process generated HTML files
 #=============================================================================
-my $jacoco  = (-f "$resultDir/jacoco.xml")
-    ? XML::Smart->new("$resultDir/jacoco.xml")
+# The JaCoCo report, as digested by the coveragedigest task in build.xml
+my $jacocoDigest = (-f "$resultDir/jacoco-digest.txt")
+    ? "$resultDir/jacoco-digest.txt"
     : undef;
 
 ### FIXME: BUG: %codeMarkupIds won't be populated at this point if static
@@ -2256,6 +2386,117 @@ if ($debug)
     print "\n", ($time6 - $time5), " seconds\n";
 }
 
+# Read the coverage digest written by the coveragedigest task, which has
+# one tab-separated record per line: "package", followed by the
+# "class" and "sourcefile" records in it, each followed by its "method"
+# or "line" records, and finally the "report" record.  Counters are six
+# missed/covered columns, for INSTRUCTION, BRANCH, LINE, COMPLEXITY,
+# METHOD, and CLASS.  Each class is passed to $onClass, and each source
+# file to $onSourceFile, along with its package name, as a hash like
+# those XML::Smart would give for the XML report, but with plain values:
+#     { name => ..., counter => { LINE => { missed => m, covered => c },
+#       ... }, method => [ { name => ..., line => ..., counter => ... },
+#       ... ] }     (for classes)
+#     { name => ..., counter => ..., line => [ { nr => ..., mi => ...,
+#       ci => ..., mb => ..., cb => ... }, ... ] }     (for source files)
+# Either callback may be undef.  Only one class or source file is held in
+# memory at a time.  Returns the report's counters.
+sub readCoverageDigest
+{
+    my ($digestFile, $onClass, $onSourceFile) = @_;
+    my @counterTypes =
+        ('INSTRUCTION', 'BRANCH', 'LINE', 'COMPLEXITY', 'METHOD', 'CLASS');
+    my $counters = sub
+    {
+        my %result = ();
+        for my $type (@counterTypes)
+        {
+            my ($missed, $covered) = split(m,/,, shift || '0/0');
+            $result{$type} = { missed => 0 + $missed, covered => 0 + $covered };
+        }
+        return \%result;
+    };
+
+    my $report = $counters->();
+    my $pkgName = '';
+    my $current = undef;
+    my $handler = undef;
+    my $finish = sub
+    {
+        if (defined $current && defined $handler)
+        {
+            $handler->($pkgName, $current);
+        }
+        $current = undef;
+    };
+
+    open(DIGEST, $digestFile) ||
+        die "Cannot open file for input '$digestFile': $!";
+    while (<DIGEST>)
+    {
+        chomp;
+        my @fields = split(/\t/, $_, -1);
+        my $kind = shift @fields;
+        if ($kind eq 'method')
+        {
+            if (defined $current && defined $handler)
+            {
+                push(@{$current->{method}}, {
+                    name    => $fields[0],
+                    line    => 0 + $fields[2],
+                    counter => $counters->(@fields[3 .. 8])
+                    });
+            }
+        }
+        elsif ($kind eq 'line')
+        {
+            if (defined $current && defined $handler)
+            {
+                push(@{$current->{line}}, {
+                    nr => 0 + $fields[0],
+                    mi => 0 + $fields[1],
+                    ci => 0 + $fields[2],
+                    mb => 0 + $fields[3],
+                    cb => 0 + $fields[4]
+                    });
+            }
+        }
+        else
+        {
+            $finish->();
+            if ($kind eq 'package')
+            {
+                $pkgName = $fields[0];
+            }
+            elsif ($kind eq 'class')
+            {
+                $handler = $onClass;
+                $current = {
+                    name    => $fields[0],
+                    counter => $counters->(@fields[2 .. 7]),
+                    method  => []
+                    };
+            }
+            elsif ($kind eq 'sourcefile')
+            {
+                $handler = $onSourceFile;
+                $current = {
+                    name    => $fields[0],
+                    counter => $counters->(@fields[1 .. 6]),
+                    line    => []
+                    };
+            }
+            elsif ($kind eq 'report')
+            {
+                $report = $counters->(@fields[0 .. 5]);
+            }
+        }
+    }
+    $finish->();
+    close(DIGEST);
+    return $report;
+}
+
 # Compute FileName of the Class (even for inner level classes)
 sub computeFileNameUsingClassName
 {
@@ -2322,7 +2563,7 @@ sub computeMethodsUncovered
 
     foreach my $method (@{ $class->{method} })
     {
-        my $counter = $method->{counter}('type', 'eq', 'INSTRUCTION');
+        my $counter = $method->{counter}{INSTRUCTION};
 
         # print("method: ", $method->{name}->content, "\n");
         if ($counter->{covered} != 0)
@@ -2330,8 +2571,7 @@ sub computeMethodsUncovered
             next;
         }
 
-        my $numLines =
-            $method->{counter}('type', 'eq', 'LINE')->{missed};
+        my $numLines = $method->{counter}{LINE}{missed};
         # Add the lines in the method uncovered to the hash
         addTofileLineMethodUncoveredHash(
             $fileName, $method->{line}, $numLines);
@@ -2559,37 +2799,25 @@ sub processStatementsUncovered
 
 if (!$buildFailed) # $can_proceed)
 {
-    if (defined $jacoco)
+    if (defined $jacocoDigest)
     {
-    my $counter = $jacoco->{report}{counter}('type', 'eq', 'METHOD');
-    my $methods = 0 + $counter->{missed}->content
-        + $counter->{covered}->content;
-    my $methodsCovered = 0 + $counter->{covered}->content;
-    my $lines = 0;
-    my $linesCovered = 0;
-    my $instructions = 0;
-    my $instructionsCovered = 0;
-    my $complexity = 0;
-    my $complexityCovered = 0;
-    my $branches = 0;
-    my $branchesCovered = 0;
-
-        my @suiteNodes = ();
-        for my $pkg (@{$jacoco->{report}{package}})
-        {
-            my $pkgName = $pkg->{name};
-            $pkgName =~ s,/,.,go;
-            print "package = " . $pkg->{name} . " ($pkgName)\n" if ($debug > 3);
-            for my $cls (@{$pkg->{class}})
+        # First pass over the digest: classes and methods
+        my @suiteCounters = ();
+        my $report = readCoverageDigest($jacocoDigest, sub
             {
+                my $pkgName = shift;
+                my $cls = shift;
+                my $pkgPath = $pkgName;
+                $pkgName =~ s,/,.,go;
                 my $clsName = $cls->{name};
                 $clsName =~ s,^.*/([^/]+)$,\1,o;
-                print "    class = " . $cls->{name} . " ($clsName)\n"
+                print "package = $pkgPath ($pkgName), class = "
+                    . $cls->{name} . " ($clsName)\n"
                     if ($debug > 3);
                 if (defined $suites{$pkgName}
                     && defined $suites{$pkgName}->{$clsName})
                 {
-                    push(@suiteNodes, $cls);
+                    push(@suiteCounters, $cls->{counter});
                     print "        suite found\n" if ($debug > 3);
 
                     if ($includeTestSuitesInCoverage)
@@ -2602,72 +2830,75 @@ if (!$buildFailed) # $can_proceed)
                     computeMethodsUncovered($cls);
                 }
                 addMethodBeginLineNum($cls);
-            }
-        }
+            },
+            undef);
+
+    my $counter = $report->{METHOD};
+    my $methods = $counter->{missed} + $counter->{covered};
+    my $methodsCovered = $counter->{covered};
+    my $lines = 0;
+    my $linesCovered = 0;
+    my $instructions = 0;
+    my $instructionsCovered = 0;
+    my $complexity = 0;
+    my $complexityCovered = 0;
+    my $branches = 0;
+    my $branchesCovered = 0;
 
         # Initialize counter based on top-level accumulators in jacoco.xml
-        $counter = $jacoco->{report}{counter}('type', 'eq', 'LINE');
-        $lines += 0 + $counter->{missed}->content
-            + $counter->{covered}->content;
-        $linesCovered += 0 + $counter->{covered}->content;
-        $counter = $jacoco->{report}{counter}('type', 'eq', 'INSTRUCTION');
-        $instructions += 0 + $counter->{missed}->content
-            + $counter->{covered}->content;
-        $instructionsCovered += 0 + $counter->{covered}->content;
-        $counter = $jacoco->{report}{counter}('type', 'eq', 'COMPLEXITY');
-        $complexity += 0 + $counter->{missed}->content
-            + $counter->{covered}->content;
-        $complexityCovered += 0 + $counter->{covered}->content;
-        $counter = $jacoco->{report}{counter}('type', 'eq', 'BRANCH');
-        $branches += 0 + $counter->{missed}->content
-            + $counter->{covered}->content;
-        $branchesCovered += 0 + $counter->{covered}->content;
+        $counter = $report->{LINE};
+        $lines += $counter->{missed} + $counter->{covered};
+        $linesCovered += $counter->{covered};
+        $counter = $report->{INSTRUCTION};
+        $instructions += $counter->{missed} + $counter->{covered};
+        $instructionsCovered += $counter->{covered};
+        $counter = $report->{COMPLEXITY};
+        $complexity += $counter->{missed} + $counter->{covered};
+        $complexityCovered += $counter->{covered};
+        $counter = $report->{BRANCH};
+        $branches += $counter->{missed} + $counter->{covered};
+        $branchesCovered += $counter->{covered};
         if (!$includeTestSuitesInCoverage)
         {
-            for my $cls (@suiteNodes)
+            for my $clsCounter (@suiteCounters)
             {
-                $counter = $cls->{counter}('type', 'eq', 'LINE');
-                $lines -= 0 + $counter->{missed}->content
-                    + $counter->{covered}->content;
-                $linesCovered -= 0 + $counter->{covered}->content;
-                $counter = $cls->{counter}('type', 'eq', 'INSTRUCTION');
-                $instructions -= 0 + $counter->{missed}->content
-                    + $counter->{covered}->content;
-                $instructionsCovered -= 0 + $counter->{covered}->content;
-                $counter = $cls->{counter}('type', 'eq', 'COMPLEXITY');
-                $complexity -= 0 + $counter->{missed}->content
-                    + $counter->{covered}->content;
-                $complexityCovered -= 0 + $counter->{covered}->content;
-                $counter = $cls->{counter}('type', 'eq', 'BRANCH');
-                $branches -= 0 + $counter->{missed}->content
-                    + $counter->{covered}->content;
-                $branchesCovered -= 0 + $counter->{covered}->content;
-                $counter = $cls->{counter}('type', 'eq', 'METHOD');
-                $methods -= 0 + $counter->{missed}->content
-                    + $counter->{covered}->content;
-                $methodsCovered -= 0 + $counter->{covered}->content;
+                $counter = $clsCounter->{LINE};
+                $lines -= $counter->{missed} + $counter->{covered};
+                $linesCovered -= $counter->{covered};
+                $counter = $clsCounter->{INSTRUCTION};
+                $instructions -= $counter->{missed} + $counter->{covered};
+                $instructionsCovered -= $counter->{covered};
+                $counter = $clsCounter->{COMPLEXITY};
+                $complexity -= $counter->{missed} + $counter->{covered};
+                $complexityCovered -= $counter->{covered};
+                $counter = $clsCounter->{BRANCH};
+                $branches -= $counter->{missed} + $counter->{covered};
+                $branchesCovered -= $counter->{covered};
+                $counter = $clsCounter->{METHOD};
+                $methods -= $counter->{missed} + $counter->{covered};
+                $methodsCovered -= $counter->{covered};
             }
         }
 
     my $Uprojdir = $workingDir . "/";
     my %exemptLines = ();
     my %fileDeductionProperties = ();
-    foreach my $pkg (@{ $jacoco->{report}{package} })
-    {
-        my $pkgName = $pkg->{name}->content;
-        # print "package: ", $pkg->{name}->content, "\n";
-        if ($pkgName ne '')
-        {
-            $pkgName =~ s,\\,/,go;
-            $pkgName .= '/';
-        }
-        my $javaPackageName = $pkg->{name}->content;
-        $javaPackageName =~ s,[/\\],.,go;
-        foreach my $file (@{ $pkg->{sourcefile} })
-        {
-            my $fileName = $pkgName . $file->{name}->content;
+    # Second pass over the digest: source files and lines
+    readCoverageDigest($jacocoDigest, undef, sub
+        {
+            my $pkgName = shift;
+            my $file = shift;
+            # print "package: ", $pkgName, "\n";
+            my $javaPackageName = $pkgName;
+            $javaPackageName =~ s,[/\\],.,go;
+            if ($pkgName ne '')
+            {
+                $pkgName =~ s,\\,/,go;
+                $pkgName .= '/';
+            }
+            my $fileName = $pkgName . $file->{name};
 
-            my $className = $file->{name}->content;
+            my $className = $file->{name};
             $className =~ s,\..*$,,o;
             # print "\tclass: ", $file->{class}->{name}->content, "\n";
             my $fqClassName = $fileName;
@@ -2733,11 +2964,11 @@ if (!$buildFailed) # $can_proceed)
             foreach my $line (@{ $file->{line} })
             {
 
-                my $num = 0 + $line->{nr}->content;
-                my $ci = 0 + $line->{ci}->content;
-                my $mi = 0 + $line->{mi}->content;
-                my $cb = 0 + $line->{cb}->content;
-                my $mb = 0 + $line->{mb}->content;
+                my $num = $line->{nr};
+                my $ci = $line->{ci};
+                my $mi = $line->{mi};
+                my $cb = $line->{cb};
+                my $mb = $line->{mb};
                 if (defined $exemptLines{$fileName})
                 {
                      if (defined $exemptLines{$fileName}->{$num})
@@ -2901,15 +3132,15 @@ if (!$buildFailed) # $can_proceed)
 #                              $metrics->{loc}->content);
 #            $cfg->setProperty("codeMarkup${numCodeMarkups}.ncloc",
 #                              $metrics->{ncloc}->content);
-            $counter = $file->{counter}('type', 'eq', 'LINE');
-            my $myElementsCovered = 0 + $counter->{covered}->content;
-            my $myElements = $myElementsCovered + $counter->{missed}->content;
+            $counter = $file->{counter}{LINE};
+            my $myElementsCovered = $counter->{covered};
+            my $myElements = $myElementsCovered + $counter->{missed};
             if ($myElements == 0)
             {
-                $counter = $file->{counter}('type', 'eq', 'INSTRUCTION');
-                $myElementsCovered = 0 + $counter->{covered}->content
+                $counter = $file->{counter}{INSTRUCTION};
+                $myElementsCovered = $counter->{covered}
                     - $exemptInstructionsCovered;
-                $myElements = $myElementsCovered + $counter->{missed}->content
+                $myElements = $myElementsCovered + $counter->{missed}
                     - $exemptInstructionsMissed;
             }
             else
@@ -2922,55 +3153,55 @@ if (!$buildFailed) # $can_proceed)
             $cfg->setProperty("codeMarkup${codeMarkupNo}.statementsCovered",
                               $myElementsCovered);
 
-            $counter = $file->{counter}('type', 'eq', 'METHOD');
+            $counter = $file->{counter}{METHOD};
             if ($coverageMetric == 0
                 || $coverageMetric == 2
                 || $coverageMetric > 4)
             {
-                $myElementsCovered = 0 + $counter->{covered}->content
+                $myElementsCovered = $counter->{covered}
                     - $exemptMethodsCovered;
-                $myElements = $myElementsCovered + $counter->{missed}->content
+                $myElements = $myElementsCovered + $counter->{missed}
                     - $exemptMethodsMissed;
             }
             elsif ($coverageMetric == 4)
             {
                 my $complexityCounter =
-                    $file->{counter}('type', 'eq', 'COMPLEXITY');
+                    $file->{counter}{COMPLEXITY};
                 $myElementsCovered += 0
-                    + $complexityCounter->{covered}->content
+                    + $complexityCounter->{covered}
                     - $exemptComplexityCovered;
-                $myElements += 0 + $complexityCounter->{missed}->content
-                    + $complexityCounter->{covered}->content
+                $myElements += 0 + $complexityCounter->{missed}
+                    + $complexityCounter->{covered}
                     - $exemptComplexityMissed
                     - $exemptComplexityCovered;
             }
             $cfg->setProperty("codeMarkup${codeMarkupNo}.methods",
-                              0 + $counter->{missed}->content
+                              0 + $counter->{missed}
                               - $exemptMethodsMissed
-                              + $counter->{covered}->content
+                              + $counter->{covered}
                               - $exemptMethodsCovered);
             $cfg->setProperty("codeMarkup${codeMarkupNo}.methodsCovered",
-                              0 + $counter->{covered}->content
+                              $counter->{covered}
                               - $exemptMethodsCovered);
 
-            $counter = $file->{counter}('type', 'eq', 'BRANCH');
+            $counter = $file->{counter}{BRANCH};
             if ($coverageMetric > 1 && $coverageMetric < 4)
             {
-                $myElementsCovered += 0 + $counter->{covered}->content
+                $myElementsCovered += $counter->{covered}
                     - $exemptBranchesCovered;
-                $myElements += 0 + $counter->{missed}->content
-                    + $counter->{covered}->content
+                $myElements += 0 + $counter->{missed}
+                    + $counter->{covered}
                     - $exemptBranchesMissed
                     - $exemptBranchesCovered;
             }
             $cfg->setProperty("codeMarkup${codeMarkupNo}.conditionals",
-                              0 + $counter->{missed}->content
+                              0 + $counter->{missed}
                               - $exemptBranchesMissed
-                              + $counter->{covered}->content
+                              + $counter->{covered}
                               - $exemptBranchesCovered);
             $cfg->setProperty(
                 "codeMarkup${codeMarkupNo}.conditionalsCovered",
-                0 + $counter->{covered}->content
+                $counter->{covered}
                 - $exemptBranchesCovered);
 
             if (!$includeCvg)
@@ -2994,8 +3225,7 @@ if (!$buildFailed) # $can_proceed)
                 $myElements - $myElementsCovered;
             $cfg->setProperty("codeMarkup${codeMarkupNo}.remarks",
                 (0 + $messageStats->{file}->{$fileName}->{remarks}->content));
-        }
-    }
+        });
         my $ptsPerUncovered = 0.0;
         my $label = '';
 
@@ -5942,6 +6172,23 @@ if (-f $scriptLog && stat($scriptLog)->size > 0)
     addReportFileWithStyle($cfg, $antLogRelative,    "text/plain", 0, "admin");
 }
 
+# Stage metrics
+# ----------
+if ($collectMetrics && -f "$resultDir/metrics.prom")
+{
+    # Add the post-processing time to the metrics the build wrote
+    if (open(METRICS, ">>$resultDir/metrics.prom"))
+    {
+        print METRICS
+            "# HELP webcat_postprocess_wall_seconds Wall clock time spent ",
+            "in execute.pl after the build\n",
+            "# TYPE webcat_postprocess_wall_seconds gauge\n",
+            "webcat_postprocess_wall_seconds ", (time - $time2), "\n";
+        close(METRICS);
+    }
+    addReportFileWithStyle($cfg, "metrics.prom", "text/plain", 0, "admin");
+}
+
 $cfg->setProperty('score.correctness', $runtimeScore);
 $cfg->setProperty('score.tools',       $staticScore );
 $cfg->setProperty('expSectionId',      $expSectionId);